@@ -0,0 +1,94 @@
+package com.alphagir.bigdata.benchmark;
+
+import com.alphagir.bigdata.helper.HdfsApi;
+import com.alphagir.bigdata.helper.HdfsAppender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 追加小记录的吞吐量（条/秒）：HdfsAppender 批量写出，每次调用写 RECORDS 条后 flush 一次；
+ * appendStringToFile 每条记录打开、追加、关闭一次；putStringToFile 每条记录覆盖写入一次
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AppenderBenchmark {
+
+    private static final int RECORDS = 100;
+
+    @Param({BenchmarkBackend.LOCAL, BenchmarkBackend.MINIDFS})
+    public String backend;
+
+    @Param({"100", "1000"})
+    public int recordSize;
+
+    private BenchmarkBackend env;
+    private HdfsApi api;
+    private HdfsAppender appender;
+    private String record;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        env = BenchmarkBackend.start(backend);
+        api = env.getApi();
+        api.mkdir("bench/append");
+        char[] chars = new char[recordSize - 1];
+        Arrays.fill(chars, 'x');
+        record = new String(chars) + "\n";
+        api.putStringToFile("bench/append/append-string.log", "");
+        appender = api.openAppender("bench/append/appender.log");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try {
+            appender.close();
+        } finally {
+            env.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void appender() throws IOException, InterruptedException {
+        for (int i = 0; i < RECORDS; i++) {
+            appender.append(record);
+        }
+        appender.flush();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void appendStringToFile() {
+        for (int i = 0; i < RECORDS; i++) {
+            api.appendStringToFile("bench/append/append-string.log", record);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void putStringToFile() {
+        for (int i = 0; i < RECORDS; i++) {
+            api.putStringToFile("bench/append/put-string.log", record);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.alphagir.bigdata.benchmark;
+
+import com.alphagir.bigdata.helper.HdfsApi;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * 基准测试使用的文件系统：local 为本地文件系统，minidfs 为进程内启动的单 DataNode MiniDFSCluster
+ */
+public final class BenchmarkBackend implements Closeable {
+
+    public static final String LOCAL = "local";
+    public static final String MINIDFS = "minidfs";
+
+    private final File baseDir;
+    private final MiniDFSCluster cluster;
+    private final HdfsApi api;
+
+    private BenchmarkBackend(File baseDir, MiniDFSCluster cluster, HdfsApi api) {
+        this.baseDir = baseDir;
+        this.cluster = cluster;
+        this.api = api;
+    }
+
+    public static BenchmarkBackend start(String type) throws IOException, InterruptedException {
+        File baseDir = Files.createTempDirectory("hdfs-bench-").toFile();
+        MiniDFSCluster cluster = null;
+        String uri;
+        if (MINIDFS.equals(type)) {
+            Configuration conf = new Configuration();
+            conf.set(MiniDFSCluster.HDFS_MINIDFS_BASEDIR, new File(baseDir, "dfs").getAbsolutePath());
+            cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+            cluster.waitActive();
+            uri = cluster.getURI().toString();
+        } else if (LOCAL.equals(type)) {
+            File root = new File(baseDir, "fs");
+            if (!root.mkdirs()) {
+                throw new IOException("无法创建目录：" + root);
+            }
+            uri = "file://" + root.getAbsolutePath();
+        } else {
+            throw new IllegalArgumentException("未知的 backend：" + type);
+        }
+        try {
+            return new BenchmarkBackend(baseDir, cluster, new HdfsApi(uri, System.getProperty("user.name")));
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            if (cluster != null) {
+                cluster.shutdown();
+            }
+            FileUtil.fullyDelete(baseDir);
+            throw e;
+        }
+    }
+
+    public HdfsApi getApi() {
+        return api;
+    }
+
+    /**
+     * 本地临时目录，用于存放上传的源文件和下载的结果
+     */
+    public File newLocalDir(String name) throws IOException {
+        File dir = new File(baseDir, name);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("无法创建目录：" + dir);
+        }
+        return dir;
+    }
+
+    /**
+     * 写入固定种子的随机字节，几乎不可压缩
+     */
+    public static void writeRandomFile(File file, long size) throws IOException {
+        Random random = new Random(42);
+        byte[] buffer = new byte[1024 * 1024];
+        try (OutputStream out = new FileOutputStream(file)) {
+            long remaining = size;
+            while (remaining > 0) {
+                random.nextBytes(buffer);
+                int n = (int) Math.min(buffer.length, remaining);
+                out.write(buffer, 0, n);
+                remaining -= n;
+            }
+        }
+    }
+
+    /**
+     * 写入类似日志的文本行，压缩率接近真实的日志文件
+     */
+    public static void writeTextFile(File file, long size) throws IOException {
+        Random random = new Random(42);
+        String[] levels = {"INFO", "WARN", "ERROR", "DEBUG"};
+        try (OutputStream out = new FileOutputStream(file)) {
+            long remaining = size;
+            long line = 0;
+            while (remaining > 0) {
+                byte[] bytes = String.format("2020-01-01 00:%02d:%02d.%03d %s [worker-%d] request %d took %dms, user=%s%n",
+                        line / 60000 % 60, line / 1000 % 60, line % 1000, levels[random.nextInt(levels.length)],
+                        random.nextInt(16), line, random.nextInt(5000), "user" + random.nextInt(100))
+                        .getBytes(StandardCharsets.UTF_8);
+                int n = (int) Math.min(bytes.length, remaining);
+                out.write(bytes, 0, n);
+                remaining -= n;
+                line++;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            api.close();
+        } finally {
+            if (cluster != null) {
+                cluster.shutdown();
+            }
+            FileUtil.fullyDelete(baseDir);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.alphagir.bigdata.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 基准测试入口，参数与 JMH 命令行相同。未指定时默认启用 GC profiler 统计分配速率，
+ * 并把结果以 JSON 格式写入 jmh-result-时间.json，便于在版本之间比较
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(cli);
+        if (cli.getProfilers().isEmpty()) {
+            builder.addProfiler(GCProfiler.class);
+        }
+        if (!cli.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cli.getResult().hasValue()) {
+            builder.result("jmh-result-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"))
+                    + ".json");
+        }
+        new Runner(builder.build()).run();
+    }
+}
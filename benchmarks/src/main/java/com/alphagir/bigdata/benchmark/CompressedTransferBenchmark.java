@@ -0,0 +1,107 @@
+package com.alphagir.bigdata.benchmark;
+
+import com.alphagir.bigdata.helper.HdfsApi;
+import com.alphagir.bigdata.model.HdfsFileStatus;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 压缩上传、解压下载的耗时，源文件是类似日志的文本。
+ * 原始字节数和压缩后字节数作为辅助计数器输出，两者之比即压缩率，结束时也会打印出来
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompressedTransferBenchmark {
+
+    private static final String SOURCE = "bench/compressed/source.txt";
+
+    /**
+     * 每次调用累加，压缩率 = compressedBytes / originalBytes，与 JMH 如何汇总各轮结果无关
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Sizes {
+        public long originalBytes;
+        public long compressedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            originalBytes = 0;
+            compressedBytes = 0;
+        }
+    }
+
+    @Param({BenchmarkBackend.LOCAL, BenchmarkBackend.MINIDFS})
+    public String backend;
+
+    @Param({"gzip", "bzip2", "default"})
+    public String codec;
+
+    @Param({"67108864"})
+    public long fileSize;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private BenchmarkBackend env;
+    private HdfsApi api;
+    private File source;
+    private File downloadDir;
+    private String compressedPath;
+    private long compressedLen;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        env = BenchmarkBackend.start(backend);
+        api = env.getApi();
+        source = new File(env.newLocalDir("src"), "source.txt");
+        BenchmarkBackend.writeTextFile(source, fileSize);
+        downloadDir = env.newLocalDir("download");
+        compressedPath = SOURCE + new CompressionCodecFactory(api.getConf()).getCodecByName(codec).getDefaultExtension();
+        compressedLen = api.uploadFileCompressed(source, SOURCE, codec, parallelism).getLen();
+        System.out.println("codec=" + codec + "，压缩率："
+                + String.format("%.4f", fileSize == 0 ? 1.0 : (double) compressedLen / fileSize));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        env.close();
+    }
+
+    @Benchmark
+    public HdfsFileStatus uploadCompressed(Sizes sizes) throws IOException, InterruptedException {
+        HdfsFileStatus status = api.uploadFileCompressed(source, "bench/compressed/upload.txt", codec, parallelism);
+        sizes.originalBytes += fileSize;
+        sizes.compressedBytes += status.getLen();
+        return status;
+    }
+
+    @Benchmark
+    public File downloadDecompressed(Sizes sizes) throws IOException, InterruptedException {
+        File target = api.downloadFile(compressedPath, new File(downloadDir, "download.txt"), parallelism, false);
+        sizes.originalBytes += target.length();
+        sizes.compressedBytes += compressedLen;
+        return target;
+    }
+}
@@ -0,0 +1,88 @@
+package com.alphagir.bigdata.benchmark;
+
+import com.alphagir.bigdata.helper.CloseableRemoteIterator;
+import com.alphagir.bigdata.helper.CompactFileStatusList;
+import com.alphagir.bigdata.helper.HdfsApi;
+import com.alphagir.bigdata.model.HdfsFileStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 列目录的耗时，目录宽度可调；每个条目都会经过 fileStatusToModel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ListingBenchmark {
+
+    private static final String DIR = "bench/list";
+
+    @Param({BenchmarkBackend.LOCAL, BenchmarkBackend.MINIDFS})
+    public String backend;
+
+    @Param({"10", "1000", "10000"})
+    public int width;
+
+    private BenchmarkBackend env;
+    private HdfsApi api;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        env = BenchmarkBackend.start(backend);
+        api = env.getApi();
+        api.mkdir(DIR);
+        for (int i = 0; i < width; i++) {
+            api.createFile(String.format("%s/file-%06d", DIR, i), true).close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        env.close();
+    }
+
+    @Benchmark
+    public List<HdfsFileStatus> getFileList() throws IOException, InterruptedException {
+        return api.getFileList(DIR, null);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<HdfsFileStatus> getFileListConcurrent() throws IOException, InterruptedException {
+        return api.getFileList(DIR, null);
+    }
+
+    @Benchmark
+    public CompactFileStatusList getCompactFileList() throws IOException, InterruptedException {
+        return api.getCompactFileList(DIR, null);
+    }
+
+    @Benchmark
+    public void listFilesStreaming(Blackhole blackhole) throws IOException {
+        try (CloseableRemoteIterator<HdfsFileStatus> it = api.listFiles(DIR, null, 1)) {
+            while (it.hasNext()) {
+                blackhole.consume(it.next());
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.alphagir.bigdata.benchmark;
+
+import com.alphagir.bigdata.helper.HdfsApi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * move 的耗时随文件大小的变化：同一文件系统内 move 只做 rename，耗时应与文件大小无关；
+ * copyThenDelete 是先复制再删除源文件的对照组
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MoveBenchmark {
+
+    private static final String A = "bench/move/a.bin";
+    private static final String B = "bench/move/b.bin";
+
+    @Param({BenchmarkBackend.LOCAL, BenchmarkBackend.MINIDFS})
+    public String backend;
+
+    @Param({"1048576", "67108864", "268435456"})
+    public long fileSize;
+
+    private BenchmarkBackend env;
+    private HdfsApi api;
+    // 文件在 A、B 之间来回移动，每次调用后交换
+    private String current = A;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        env = BenchmarkBackend.start(backend);
+        api = env.getApi();
+        File source = new File(env.newLocalDir("src"), "source.bin");
+        BenchmarkBackend.writeRandomFile(source, fileSize);
+        api.uploadFile(source, A, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        env.close();
+    }
+
+    @Benchmark
+    public String move() throws Exception {
+        String target = other();
+        api.move(current, target);
+        current = target;
+        return current;
+    }
+
+    @Benchmark
+    public String copyThenDelete() throws Exception {
+        String target = other();
+        api.copy(current, target);
+        api.rmdir(current, false, true);
+        current = target;
+        return current;
+    }
+
+    private String other() {
+        return A.equals(current) ? B : A;
+    }
+}
@@ -0,0 +1,90 @@
+package com.alphagir.bigdata.benchmark;
+
+import com.alphagir.bigdata.helper.HdfsApi;
+import com.alphagir.bigdata.model.HdfsFileStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传、下载单个文件的耗时，文件大小和传输并发数可调
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransferBenchmark {
+
+    @Param({BenchmarkBackend.LOCAL, BenchmarkBackend.MINIDFS})
+    public String backend;
+
+    @Param({"1048576", "67108864", "268435456"})
+    public long fileSize;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private BenchmarkBackend env;
+    private HdfsApi api;
+    private File source;
+    private File downloadDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        env = BenchmarkBackend.start(backend);
+        api = env.getApi();
+        source = new File(env.newLocalDir("src"), "source.bin");
+        BenchmarkBackend.writeRandomFile(source, fileSize);
+        downloadDir = env.newLocalDir("download");
+        api.uploadFile(source, "bench/source.bin", 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        env.close();
+    }
+
+    @Benchmark
+    public HdfsFileStatus uploadStream() throws IOException, InterruptedException {
+        return api.uploadFile(new FileInputStream(source), "bench/upload-stream.bin");
+    }
+
+    @Benchmark
+    public HdfsFileStatus uploadParallel() throws IOException, InterruptedException {
+        return api.uploadFile(source, "bench/upload-parallel.bin", parallelism);
+    }
+
+    @Benchmark
+    public File downloadCopyToLocal() throws IOException, InterruptedException {
+        File target = new File(downloadDir, "copy-to-local.bin");
+        api.downloadFile("bench/source.bin", target.getPath());
+        return target;
+    }
+
+    @Benchmark
+    public File downloadParallel() throws IOException, InterruptedException {
+        return api.downloadFile("bench/source.bin", new File(downloadDir, "parallel.bin"), parallelism, false);
+    }
+
+    @Benchmark
+    public File downloadParallelVerified() throws IOException, InterruptedException {
+        return api.downloadFile("bench/source.bin", new File(downloadDir, "verified.bin"), parallelism, true);
+    }
+}
@@ -0,0 +1,93 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.benchmark.BenchmarkBackend;
+import com.alphagir.bigdata.model.HdfsFileStatus;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HdfsApi 内部热点的开销：execute 的 doAs、重试和指标包装，fileStatusToModel 以及 getByteToSize。
+ * 放在 helper 包下以便直接调用包内可见的方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HdfsApiInternalBenchmark {
+
+    private static final long[] SIZES = {0L, 512L, 3L * 1024, 5L * 1024 * 1024, 7L * 1024 * 1024 * 1024};
+
+    @Param({BenchmarkBackend.LOCAL, BenchmarkBackend.MINIDFS})
+    public String backend;
+
+    private BenchmarkBackend env;
+    private HdfsApi api;
+    private Path path;
+    private FileStatus status;
+    private int sizeIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        env = BenchmarkBackend.start(backend);
+        api = env.getApi();
+        api.createFile("bench/status.bin", true).close();
+        path = api.resolvePath("bench/status.bin");
+        status = api.getFs().getFileStatus(path);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        env.close();
+    }
+
+    @Benchmark
+    public Boolean executeNoop() throws IOException, InterruptedException {
+        return api.execute("bench", () -> Boolean.TRUE);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Boolean executeNoopConcurrent() throws IOException, InterruptedException {
+        return api.execute("bench", () -> Boolean.TRUE);
+    }
+
+    @Benchmark
+    public FileStatus getFileStatusRaw() throws IOException {
+        return api.getFs().getFileStatus(path);
+    }
+
+    @Benchmark
+    public FileStatus getFileStatusExecute() throws IOException, InterruptedException {
+        return api.execute("bench", () -> api.getFs().getFileStatus(path));
+    }
+
+    @Benchmark
+    public HdfsFileStatus fileStatusToModel() {
+        return api.fileStatusToModel(status);
+    }
+
+    @Benchmark
+    public String getByteToSize() {
+        sizeIndex = (sizeIndex + 1) % SIZES.length;
+        return HdfsApi.getByteToSize(SIZES[sizeIndex]);
+    }
+}
@@ -0,0 +1,80 @@
+package com.alphagir.bigdata.helper;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.permission.FsAction;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.security.UserGroupInformation;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 按用户预先计算的访问权限判断器。用户组解析结果缓存为 Set 并按间隔刷新，
+ * 一次判断即可得到读、写、执行三种权限
+ */
+public class AccessEvaluator {
+
+    private final UserGroupInformation ugi;
+    private final String user;
+    private final long refreshMillis;
+
+    private volatile Set<String> groups;
+    private volatile long loadedAt;
+
+    AccessEvaluator(UserGroupInformation ugi, long refreshMillis) {
+        this.ugi = ugi;
+        this.user = ugi.getShortUserName();
+        this.refreshMillis = refreshMillis;
+    }
+
+    /**
+     * 返回当前用户对该文件的有效权限（owner / group / other 三者之一）
+     */
+    public FsAction evaluate(FileStatus stat) {
+        return evaluate(stat, groups());
+    }
+
+    /**
+     * 批量判断，整批只解析一次用户组
+     */
+    public FsAction[] evaluate(FileStatus[] stats) {
+        Set<String> current = groups();
+        FsAction[] actions = new FsAction[stats.length];
+        for (int i = 0; i < stats.length; i++) {
+            actions[i] = evaluate(stats[i], current);
+        }
+        return actions;
+    }
+
+    public boolean check(FileStatus stat, FsAction mode) {
+        return evaluate(stat).implies(mode);
+    }
+
+    public UserGroupInformation getUgi() {
+        return ugi;
+    }
+
+    private FsAction evaluate(FileStatus stat, Set<String> current) {
+        FsPermission perm = stat.getPermission();
+        if (user.equals(stat.getOwner())) {
+            return perm.getUserAction();
+        } else if (current.contains(stat.getGroup())) {
+            return perm.getGroupAction();
+        } else {
+            return perm.getOtherAction();
+        }
+    }
+
+    private Set<String> groups() {
+        long now = System.currentTimeMillis();
+        Set<String> current = groups;
+        if (current == null || now - loadedAt > refreshMillis) {
+            current = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(ugi.getGroupNames())));
+            groups = current;
+            loadedAt = now;
+        }
+        return current;
+    }
+}
@@ -0,0 +1,68 @@
+package com.alphagir.bigdata.helper;
+
+import lombok.Data;
+import org.apache.hadoop.conf.Configuration;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HdfsApi.openAppender 的可选项
+ */
+@Data
+public class AppenderOptions {
+
+    /** 记录的编码，与 readRecords 的默认值一致 */
+    private Charset charset = StandardCharsets.UTF_8;
+
+    /** 等待写入的最大记录数，队列满时 append 阻塞 */
+    private int queueCapacity = HdfsApiConfigKeys.APPENDER_QUEUE_CAPACITY_DEFAULT;
+
+    /** 写线程单次最多取出的记录数 */
+    private int maxBatchRecords = HdfsApiConfigKeys.APPENDER_MAX_BATCH_RECORDS_DEFAULT;
+
+    /** 未刷新的字节数达到该值时刷新 */
+    private long flushBytes = HdfsApiConfigKeys.APPENDER_FLUSH_BYTES_DEFAULT;
+
+    /** 最早一条未刷新的记录写入后最多等待多久刷新（毫秒） */
+    private long flushIntervalMillis = HdfsApiConfigKeys.APPENDER_FLUSH_INTERVAL_MS_DEFAULT;
+
+    /** 为 true 时用 hsync 落盘，否则用 hflush 只保证对读者可见 */
+    private boolean sync = HdfsApiConfigKeys.APPENDER_SYNC_DEFAULT;
+
+    /** 文件达到该大小（字节）后滚动，小于等于0表示不滚动 */
+    private long rollBytes = HdfsApiConfigKeys.APPENDER_ROLL_BYTES_DEFAULT;
+
+    /**
+     * 打开文件时租约被占用是否收回租约后再追加。客户端无法区分崩溃的写入者和仍在写入的写入者，
+     * 收回正在写入的租约会破坏对方的输出流，只有调用方保证该文件只有一个写入者时才能开启
+     */
+    private boolean recoverLease = HdfsApiConfigKeys.APPENDER_RECOVER_LEASE_DEFAULT;
+
+    /** 文件租约被崩溃的写入者占用时，等待租约恢复的最长时间（毫秒） */
+    private long leaseRecoveryTimeoutMillis = HdfsApiConfigKeys.APPENDER_LEASE_RECOVERY_TIMEOUT_MS_DEFAULT;
+
+    public static AppenderOptions fromConf(Configuration conf) {
+        AppenderOptions options = new AppenderOptions();
+        options.setCharset(Charset.forName(conf.get(HdfsApiConfigKeys.APPENDER_CHARSET_KEY,
+                HdfsApiConfigKeys.APPENDER_CHARSET_DEFAULT)));
+        options.setQueueCapacity(conf.getInt(HdfsApiConfigKeys.APPENDER_QUEUE_CAPACITY_KEY,
+                HdfsApiConfigKeys.APPENDER_QUEUE_CAPACITY_DEFAULT));
+        options.setMaxBatchRecords(conf.getInt(HdfsApiConfigKeys.APPENDER_MAX_BATCH_RECORDS_KEY,
+                HdfsApiConfigKeys.APPENDER_MAX_BATCH_RECORDS_DEFAULT));
+        options.setFlushBytes(conf.getLong(HdfsApiConfigKeys.APPENDER_FLUSH_BYTES_KEY,
+                HdfsApiConfigKeys.APPENDER_FLUSH_BYTES_DEFAULT));
+        options.setFlushIntervalMillis(conf.getLong(HdfsApiConfigKeys.APPENDER_FLUSH_INTERVAL_MS_KEY,
+                HdfsApiConfigKeys.APPENDER_FLUSH_INTERVAL_MS_DEFAULT));
+        options.setSync(conf.getBoolean(HdfsApiConfigKeys.APPENDER_SYNC_KEY,
+                HdfsApiConfigKeys.APPENDER_SYNC_DEFAULT));
+        options.setRollBytes(conf.getLong(HdfsApiConfigKeys.APPENDER_ROLL_BYTES_KEY,
+                HdfsApiConfigKeys.APPENDER_ROLL_BYTES_DEFAULT));
+        options.setRecoverLease(conf.getBoolean(HdfsApiConfigKeys.APPENDER_RECOVER_LEASE_KEY,
+                HdfsApiConfigKeys.APPENDER_RECOVER_LEASE_DEFAULT));
+        options.setLeaseRecoveryTimeoutMillis(conf.getLong(HdfsApiConfigKeys.APPENDER_LEASE_RECOVERY_TIMEOUT_MS_KEY,
+                HdfsApiConfigKeys.APPENDER_LEASE_RECOVERY_TIMEOUT_MS_DEFAULT));
+        return options;
+    }
+
+}
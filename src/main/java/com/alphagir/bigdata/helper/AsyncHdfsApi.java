@@ -0,0 +1,374 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.FileRange;
+import com.alphagir.bigdata.model.HdfsFileStatus;
+import com.alphagir.bigdata.model.TransferReport;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.nio.ByteBuffer;
+import java.security.PrivilegedExceptionAction;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HdfsApi 的异步门面：方法与 HdfsApi 一一对应，返回 CompletableFuture。
+ * 任务在独立的有界线程池中以 HdfsApi 的用户身份执行，支持取消和单次调用超时。
+ * <p>
+ * 取消和超时是协作式的：future 立即结束，尚未开始的任务不再执行；正在执行的任务不会被中断，
+ * 因为中断 Hadoop IPC 或 DFS 流会关闭同一个缓存 FileSystem 上其他调用方共用的连接。
+ * 任务执行完后结果被丢弃，结果是 Closeable（如 open 返回的输入流）时会被关闭
+ */
+@Slf4j
+public class AsyncHdfsApi implements Closeable {
+
+    /**
+     * 可以抛出任意异常的调用
+     */
+    public interface Call<T> {
+        T call() throws Exception;
+    }
+
+    private final HdfsApi api;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService timer;
+    private final long defaultTimeoutMillis;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong totalQueueMillis = new AtomicLong();
+    private final AtomicLong totalRunMillis = new AtomicLong();
+
+    public AsyncHdfsApi(HdfsApi api) {
+        this(api, api.getConf());
+    }
+
+    private AsyncHdfsApi(HdfsApi api, Configuration conf) {
+        this(api, conf.getInt(HdfsApiConfigKeys.ASYNC_THREADS_KEY, HdfsApiConfigKeys.ASYNC_THREADS_DEFAULT),
+                conf.getInt(HdfsApiConfigKeys.ASYNC_QUEUE_CAPACITY_KEY, HdfsApiConfigKeys.ASYNC_QUEUE_CAPACITY_DEFAULT),
+                conf.getLong(HdfsApiConfigKeys.ASYNC_TIMEOUT_MS_KEY, HdfsApiConfigKeys.ASYNC_TIMEOUT_MS_DEFAULT));
+    }
+
+    /**
+     * @param defaultTimeoutMillis 默认超时时间，小于等于0表示不超时
+     */
+    public AsyncHdfsApi(HdfsApi api, int threads, int queueCapacity, long defaultTimeoutMillis) {
+        this.api = api;
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+        // 队列满时直接拒绝，不能让调用线程自己执行，否则就失去了异步的意义
+        this.executor = HdfsThreadPools.newBoundedPool("hdfs-async", threads, queueCapacity,
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timer = Executors.newSingleThreadScheduledExecutor(HdfsThreadPools.daemonFactory("hdfs-async-timer"));
+    }
+
+    public <T> CompletableFuture<T> submit(String operation, Call<T> call) {
+        return submit(operation, call, defaultTimeoutMillis);
+    }
+
+    /**
+     * 提交任意调用。返回的 future 被取消或超时后任务不再开始，已经开始的任务执行完后丢弃并关闭结果
+     */
+    public <T> CompletableFuture<T> submit(final String operation, final Call<T> call, long timeoutMillis) {
+        submitted.incrementAndGet();
+        final long enqueuedAt = System.currentTimeMillis();
+        final TaskFuture<T> result = new TaskFuture<>();
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            long startedAt = System.currentTimeMillis();
+            totalQueueMillis.addAndGet(startedAt - enqueuedAt);
+            try {
+                // future 已被取消或超时则不再执行
+                if (!result.isDone()) {
+                    // 在 HdfsApi 的用户身份下执行，保证线程池中的调用与同步调用的权限一致
+                    T value = api.getUgi().doAs((PrivilegedExceptionAction<T>) call::call);
+                    if (result.complete(value)) {
+                        succeeded.incrementAndGet();
+                    } else {
+                        discard(operation, value);
+                    }
+                }
+            } catch (Throwable t) {
+                Throwable cause = t instanceof UndeclaredThrowableException ? t.getCause() : t;
+                if (result.completeExceptionally(cause)) {
+                    failed.incrementAndGet();
+                    log.debug("异步操作 " + operation + " 失败：" + cause);
+                }
+            } finally {
+                totalRunMillis.addAndGet(System.currentTimeMillis() - startedAt);
+            }
+            return null;
+        });
+        result.task = task;
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            result.completeExceptionally(e);
+            return result;
+        }
+        if (timeoutMillis > 0) {
+            final ScheduledFuture<?> timeout = timer.schedule(() -> {
+                if (result.completeExceptionally(
+                        new TimeoutException("异步操作 " + operation + " 超时（" + timeoutMillis + "ms）"))) {
+                    timedOut.incrementAndGet();
+                    task.cancel(false);
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+            result.whenComplete((v, t) -> timeout.cancel(false));
+        }
+        return result;
+    }
+
+    /**
+     * future 已经结束后才得到的结果没有人会使用，持有资源的要关闭，否则会泄漏
+     */
+    private static void discard(String operation, Object value) {
+        if (value instanceof Closeable) {
+            try {
+                ((Closeable) value).close();
+            } catch (IOException e) {
+                log.warn("关闭异步操作 " + operation + " 被丢弃的结果失败：" + e.getMessage());
+            }
+        }
+    }
+
+    public CompletableFuture<Boolean> mkdir(final String path) {
+        return submit("mkdir", () -> api.mkdir(path));
+    }
+
+    public CompletableFuture<Boolean> rmdir(final String path, boolean recursive, boolean skiptrash) {
+        return submit("rmdir", () -> api.rmdir(path, recursive, skiptrash));
+    }
+
+    public CompletableFuture<Boolean> rename(final String srcPath, final String dstPath) {
+        return submit("rename", () -> api.rename(srcPath, dstPath));
+    }
+
+    public CompletableFuture<Boolean> exists(final String srcPath) {
+        return submit("exists", () -> api.exists(srcPath));
+    }
+
+    public CompletableFuture<Boolean> existFile(final String filePath) {
+        return submit("existFile", () -> api.existFile(filePath));
+    }
+
+    public CompletableFuture<Boolean> existDir(final String dirPath, boolean create) {
+        return submit("existDir", () -> api.existDir(dirPath, create));
+    }
+
+    public CompletableFuture<List<HdfsFileStatus>> getFileList(final String path, PathFilter pathFilter) {
+        return submit("getFileList", () -> api.getFileList(path, pathFilter));
+    }
+
+    public CompletableFuture<CompactFileStatusList> getCompactFileList(final String path, PathFilter pathFilter) {
+        return submit("getCompactFileList", () -> api.getCompactFileList(path, pathFilter));
+    }
+
+    public CompletableFuture<HdfsFileStatus> getOneFileStatus(final Path filePath) {
+        return submit("getOneFileStatus", () -> api.getOneFileStatus(filePath));
+    }
+
+    public CompletableFuture<Void> uploadFile(final String srcFile, final String destPath, boolean delSrc,
+                                              boolean overwrite) {
+        return submit("uploadFile", () -> {
+            api.uploadFile(srcFile, destPath, delSrc, overwrite);
+            return null;
+        });
+    }
+
+    public CompletableFuture<HdfsFileStatus> uploadFile(final InputStream in, final String destPath) {
+        return submit("uploadFile", () -> api.uploadFile(in, destPath));
+    }
+
+    public CompletableFuture<HdfsFileStatus> uploadFile(final File srcFile, final String destPath) {
+        return submit("uploadFile", () -> api.uploadFile(srcFile, destPath));
+    }
+
+    public CompletableFuture<HdfsFileStatus> uploadFileResumable(final ResumableSource source, final String destPath) {
+        return submit("uploadFileResumable", () -> api.uploadFileResumable(source, destPath));
+    }
+
+    public CompletableFuture<TransferReport> uploadDirectory(final File localDir, final String destPath,
+                                                             boolean overwrite) {
+        return submit("uploadDirectory", () -> api.uploadDirectory(localDir, destPath, overwrite));
+    }
+
+    public CompletableFuture<TransferReport> sync(final File localDir, final String destPath, SyncOptions options) {
+        return submit("sync", () -> api.sync(localDir, destPath, options));
+    }
+
+    public CompletableFuture<Void> downloadFile(final String srcFile, final String destPath) {
+        return submit("downloadFile", () -> {
+            api.downloadFile(srcFile, destPath);
+            return null;
+        });
+    }
+
+    public CompletableFuture<File> downloadFile(final String srcFile, final File dest) {
+        return submit("downloadFile", () -> api.downloadFile(srcFile, dest));
+    }
+
+    public CompletableFuture<FSDataInputStream> open(final String path) {
+        return submit("open", () -> api.open(path));
+    }
+
+    public CompletableFuture<List<ByteBuffer>> readRanges(final String path, final List<FileRange> ranges) {
+        return submit("readRanges", () -> api.readRanges(path, ranges));
+    }
+
+    public CompletableFuture<Boolean> chmod(final String path, final String permissions) {
+        return submit("chmod", () -> api.chmod(path, permissions));
+    }
+
+    public CompletableFuture<Void> copy(final String src, final String dest) {
+        return submit("copy", () -> {
+            api.copy(src, dest);
+            return null;
+        });
+    }
+
+    public CompletableFuture<TransferReport> copy(final String src, final String dest, CopyOptions options) {
+        return submit("copy", () -> api.copy(src, dest, options));
+    }
+
+    public CompletableFuture<Void> move(final String src, final String dest) {
+        return submit("move", () -> {
+            api.move(src, dest);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Boolean> moveToTrash(final String path) {
+        return submit("moveToTrash", () -> api.moveToTrash(path));
+    }
+
+    public CompletableFuture<Boolean> restoreFromTrash(final String srcPath, final String destPath) {
+        return submit("restoreFromTrash", () -> api.restoreFromTrash(srcPath, destPath));
+    }
+
+    public CompletableFuture<String> readFileToString(final String filePath) {
+        return submit("readFileToString", () -> api.readFileToString(filePath));
+    }
+
+    public CompletableFuture<Void> putStringToFile(final String filePath, final String content) {
+        return submit("putStringToFile", () -> {
+            api.putStringToFile(filePath, content);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> appendStringToFile(final String filePath, final String content) {
+        return submit("appendStringToFile", () -> {
+            api.appendStringToFile(filePath, content);
+            return null;
+        });
+    }
+
+    public HdfsApi getApi() {
+        return api;
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getSucceededCount() {
+        return succeeded.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getTimedOutCount() {
+        return timedOut.get();
+    }
+
+    public long getCancelledCount() {
+        return cancelled.get();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 平均排队时间（毫秒）
+     */
+    public double getAverageQueueMillis() {
+        long done = executor.getCompletedTaskCount();
+        return done == 0 ? 0 : (double) totalQueueMillis.get() / done;
+    }
+
+    /**
+     * 平均执行时间（毫秒）
+     */
+    public double getAverageRunMillis() {
+        long done = executor.getCompletedTaskCount();
+        return done == 0 ? 0 : (double) totalRunMillis.get() / done;
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncHdfsApi{submitted=" + getSubmittedCount() + ", succeeded=" + getSucceededCount()
+                + ", failed=" + getFailedCount() + ", rejected=" + getRejectedCount()
+                + ", timedOut=" + getTimedOutCount() + ", cancelled=" + getCancelledCount()
+                + ", active=" + getActiveCount() + ", queued=" + getQueueSize() + "}";
+    }
+
+    /**
+     * 关闭线程池，不会关闭底层的 HdfsApi。排队中的任务被丢弃，正在执行的任务不会被中断
+     */
+    @Override
+    public void close() {
+        executor.getQueue().clear();
+        executor.shutdown();
+        timer.shutdownNow();
+    }
+
+    private final class TaskFuture<T> extends CompletableFuture<T> {
+
+        private volatile FutureTask<Void> task;
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean result = super.cancel(mayInterruptIfRunning);
+            if (result) {
+                cancelled.incrementAndGet();
+                FutureTask<Void> current = task;
+                if (current != null) {
+                    current.cancel(false);
+                }
+            }
+            return result;
+        }
+    }
+}
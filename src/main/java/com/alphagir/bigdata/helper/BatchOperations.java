@@ -0,0 +1,308 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.BatchItemResult;
+import com.alphagir.bigdata.model.BatchResult;
+import com.alphagir.bigdata.model.HdfsPermissionEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.Trash;
+import org.apache.hadoop.fs.permission.FsPermission;
+
+import java.io.FileNotFoundException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 批量元数据操作：按配置的并发数和速率执行，返回逐项结果而不是吞掉异常。
+ * 删除时被上级目录覆盖的路径折叠到上级目录的那一次调用中
+ */
+@Slf4j
+public class BatchOperations {
+
+    private interface ItemAction {
+        void apply(BatchItemResult item) throws Exception;
+    }
+
+    private final HdfsApi api;
+    private final FileSystem fs;
+    private final int parallelism;
+    private final TokenBucket limiter;
+
+    /**
+     * @param opsPerSecond 每秒最多发起的调用数，小于等于0表示不限速
+     */
+    BatchOperations(HdfsApi api, int parallelism, double opsPerSecond) {
+        this.api = api;
+        this.fs = api.getFs();
+        this.parallelism = Math.max(1, parallelism);
+        this.limiter = new TokenBucket(opsPerSecond, Math.max(1, opsPerSecond));
+    }
+
+    public BatchResult delete(Collection<String> paths, final boolean recursive, final boolean skipTrash) {
+        long start = System.currentTimeMillis();
+        List<BatchItemResult> items = new ArrayList<>();
+        List<BatchItemResult> pending = new ArrayList<>();
+        Map<Path, BatchItemResult> roots = new HashMap<>();
+        Map<BatchItemResult, Path> covered = new LinkedHashMap<>();
+        List<String> sorted = new ArrayList<>(paths);
+        // 按路径排序后上级目录一定排在子路径之前
+        sorted.sort(null);
+        for (String path : sorted) {
+            BatchItemResult item = new BatchItemResult(path, null);
+            items.add(item);
+            Path ancestor = recursive ? coveredBy(api.resolvePath(path), roots.keySet()) : null;
+            if (ancestor != null) {
+                covered.put(item, ancestor);
+            } else {
+                roots.put(api.resolvePath(path), item);
+                pending.add(item);
+            }
+        }
+        // 删除或移动到回收站已生效但响应丢失时，重试会返回 false 而报告假失败，因此不重试
+        run("rmdir", false, pending, item -> {
+            Path dPath = api.resolvePath(item.getPath());
+            api.invalidateTree(dPath);
+            boolean deleted = skipTrash ? fs.delete(dPath, recursive) : new Trash(fs, api.getConf()).moveToTrash(dPath);
+            if (!deleted) {
+                throw new IllegalStateException(skipTrash ? "删除失败" : "移动到回收站失败");
+            }
+        });
+        // 被覆盖的路径只有在上级目录真正删除之后才能确定结果
+        for (Map.Entry<BatchItemResult, Path> entry : covered.entrySet()) {
+            BatchItemResult item = entry.getKey();
+            BatchItemResult root = roots.get(entry.getValue());
+            item.setSuccess(root.getSuccess());
+            item.setCause(root.getCause());
+            item.setMessage(Boolean.TRUE.equals(root.getSuccess())
+                    ? "已由上级目录 " + entry.getValue() + " 的删除覆盖"
+                    : "上级目录 " + entry.getValue() + " 删除失败：" + root.getMessage());
+        }
+        return result("rmdir", items, start);
+    }
+
+    /**
+     * 批量重命名，key 为源路径，value 为目标路径
+     */
+    public BatchResult rename(Map<String, String> renames) {
+        long start = System.currentTimeMillis();
+        List<BatchItemResult> items = new ArrayList<>();
+        for (Map.Entry<String, String> entry : renames.entrySet()) {
+            items.add(new BatchItemResult(entry.getKey(), entry.getValue()));
+        }
+        // 逐项 rename：把整个父目录重命名再重建源目录会丢失源目录的存储策略、配额、inode 等，并且源目录会短暂不存在
+        run("rename", false, items, item -> {
+            Path sPath = api.resolvePath(item.getPath());
+            Path dPath = api.resolvePath(item.getTarget());
+            try {
+                if (!fs.rename(sPath, dPath)) {
+                    throw new IllegalStateException("rename 返回 false");
+                }
+            } finally {
+                api.invalidateTree(sPath);
+                api.invalidateTree(dPath);
+            }
+        });
+        return result("rename", items, start);
+    }
+
+    public BatchResult chmod(Collection<String> paths, final String permissions) {
+        final FsPermission fp = FsPermission.valueOf(permissions);
+        return run("chmod", paths, path -> fs.setPermission(path, fp));
+    }
+
+    public BatchResult updatePermission(Collection<String> paths, HdfsPermissionEnum owner, HdfsPermissionEnum group,
+                                        HdfsPermissionEnum other, boolean sb) {
+        final FsPermission permission = new FsPermission(api.getFsAction(owner), api.getFsAction(group),
+                api.getFsAction(other), sb);
+        return run("updatePermission", paths, path -> fs.setPermission(path, permission));
+    }
+
+    public BatchResult updateOwner(Collection<String> paths, final String username, final String group) {
+        return run("updateOwner", paths, path -> fs.setOwner(path, username, group));
+    }
+
+    public BatchResult mkdir(Collection<String> paths) {
+        return run("mkdir", paths, path -> {
+            if (!fs.mkdirs(path)) {
+                throw new IllegalStateException("mkdirs 返回 false");
+            }
+        });
+    }
+
+    /**
+     * 在回收站的各个检查点中查找原始路径（Current 优先，其余按时间倒序），
+     * 每个检查点下的每个父目录只列一次，然后 rename 回原位置
+     */
+    BatchResult restoreFromTrash(final Path trashRoot, Collection<String> originalPaths) {
+        long start = System.currentTimeMillis();
+        List<BatchItemResult> items = new ArrayList<>();
+        Map<Path, List<BatchItemResult>> byParent = new LinkedHashMap<>();
+        for (String original : originalPaths) {
+            BatchItemResult item = new BatchItemResult(null, original);
+            items.add(item);
+            Path target = Path.getPathWithoutSchemeAndAuthority(api.resolvePath(original));
+            byParent.computeIfAbsent(target.getParent(), k -> new ArrayList<>()).add(item);
+        }
+
+        List<BatchItemResult> pending = new ArrayList<>();
+        try {
+            api.execute("restoreFromTrash", () -> {
+                List<Path> checkpoints = new ArrayList<>();
+                for (FileStatus status : fs.listStatus(trashRoot)) {
+                    if (status.isDirectory()) {
+                        checkpoints.add(status.getPath());
+                    }
+                }
+                // Current 是最新的，其余检查点目录名是时间戳，倒序即由新到旧
+                checkpoints.sort((a, b) -> "Current".equals(a.getName()) ? -1
+                        : "Current".equals(b.getName()) ? 1 : b.getName().compareTo(a.getName()));
+                for (Map.Entry<Path, List<BatchItemResult>> entry : byParent.entrySet()) {
+                    for (Path checkpoint : checkpoints) {
+                        Path parentInTrash = Path.mergePaths(checkpoint, entry.getKey());
+                        Set<String> names = new HashSet<>();
+                        try {
+                            for (FileStatus status : fs.listStatus(parentInTrash)) {
+                                names.add(status.getPath().getName());
+                            }
+                        } catch (FileNotFoundException e) {
+                            continue;
+                        }
+                        for (BatchItemResult item : entry.getValue()) {
+                            String name = new Path(item.getTarget()).getName();
+                            if (item.getPath() == null && names.contains(name)) {
+                                item.setPath(new Path(parentInTrash, name).toString());
+                            }
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            for (BatchItemResult item : items) {
+                item.setSuccess(false);
+                item.setMessage("查找回收站检查点失败：" + e.getMessage());
+                item.setCause(e);
+            }
+            return result("restoreFromTrash", items, start);
+        }
+
+        for (BatchItemResult item : items) {
+            if (item.getPath() == null) {
+                item.setSuccess(false);
+                item.setMessage("回收站中不存在该路径");
+            } else {
+                pending.add(item);
+            }
+        }
+        run("restoreFromTrash", false, pending, item -> {
+            Path sPath = new Path(item.getPath());
+            Path dPath = api.resolvePath(item.getTarget());
+            try {
+                fs.mkdirs(dPath.getParent());
+                if (!fs.rename(sPath, dPath)) {
+                    throw new IllegalStateException("rename 返回 false，目标可能已存在");
+                }
+            } finally {
+                api.invalidateTree(dPath);
+            }
+        });
+        return result("restoreFromTrash", items, start);
+    }
+
+    private interface PathAction {
+        void apply(Path path) throws Exception;
+    }
+
+    private BatchResult run(String operation, Collection<String> paths, final PathAction action) {
+        long start = System.currentTimeMillis();
+        List<BatchItemResult> items = new ArrayList<>();
+        for (String path : paths) {
+            items.add(new BatchItemResult(path, null));
+        }
+        run(operation, true, items, item -> {
+            Path path = api.resolvePath(item.getPath());
+            try {
+                action.apply(path);
+            } finally {
+                api.invalidate(path);
+            }
+        });
+        return result(operation, items, start);
+    }
+
+    /**
+     * @param idempotent 为 false 时通过 executeOnce 执行，失败后不重试
+     */
+    private void run(final String operation, boolean idempotent, List<BatchItemResult> items, final ItemAction action) {
+        if (items.isEmpty()) {
+            return;
+        }
+        ThreadPoolExecutor pool = HdfsThreadPools.newBoundedPool("hdfs-batch", parallelism, parallelism * 2);
+        try {
+            List<Future<?>> futures = new ArrayList<>(items.size());
+            for (final BatchItemResult item : items) {
+                futures.add(pool.submit(() -> {
+                    try {
+                        limiter.acquire(1);
+                        PrivilegedExceptionAction<Void> call = () -> {
+                            action.apply(item);
+                            return null;
+                        };
+                        if (idempotent) {
+                            api.execute(operation, call);
+                        } else {
+                            api.executeOnce(operation, call);
+                        }
+                        item.setSuccess(true);
+                    } catch (Exception e) {
+                        if (e instanceof InterruptedException) {
+                            Thread.currentThread().interrupt();
+                        }
+                        item.setSuccess(false);
+                        item.setMessage(e.getClass().getSimpleName() + "：" + e.getMessage());
+                        item.setCause(e);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (Exception e) {
+                    log.error("批量操作 " + operation + " 等待结果失败：" + e.getMessage());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Path coveredBy(Path path, Set<Path> roots) {
+        for (Path parent = path.getParent(); parent != null; parent = parent.getParent()) {
+            if (roots.contains(parent)) {
+                return parent;
+            }
+        }
+        return null;
+    }
+
+    private static BatchResult result(String operation, List<BatchItemResult> items, long start) {
+        BatchResult result = new BatchResult();
+        result.setOperation(operation);
+        result.setItems(items);
+        result.setElapsedMillis(System.currentTimeMillis() - start);
+        log.info("批量操作 " + operation + " 完成：成功 " + result.getSuccessCount() + "，失败 " + result.getFailureCount()
+                + "，耗时 " + result.getElapsedMillis() + "ms");
+        return result;
+    }
+}
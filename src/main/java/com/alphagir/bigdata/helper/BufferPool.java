@@ -0,0 +1,45 @@
+package com.alphagir.bigdata.helper;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 固定大小的 ByteBuffer 池，最多缓存 capacity 个空闲缓冲区，池空时临时分配
+ */
+class BufferPool {
+
+    private final int bufferSize;
+    private final boolean direct;
+    private final BlockingQueue<ByteBuffer> free;
+
+    BufferPool(int bufferSize, int capacity, boolean direct) {
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+        this.free = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            buffer = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    void release(ByteBuffer buffer) {
+        // 只回收本池分配出去的同规格缓冲区，池满时交给GC
+        if (buffer != null && buffer.capacity() == bufferSize && buffer.isDirect() == direct) {
+            free.offer(buffer);
+        }
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    boolean isDirect() {
+        return direct;
+    }
+}
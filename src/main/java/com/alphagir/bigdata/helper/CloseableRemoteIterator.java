@@ -0,0 +1,11 @@
+package com.alphagir.bigdata.helper;
+
+import org.apache.hadoop.fs.RemoteIterator;
+
+import java.io.Closeable;
+
+/**
+ * 需要显式释放后台资源的 RemoteIterator，提前放弃迭代时必须调用 close
+ */
+public interface CloseableRemoteIterator<T> extends RemoteIterator<T>, Closeable {
+}
@@ -0,0 +1,75 @@
+package com.alphagir.bigdata.helper;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * 以基本类型数组保存的紧凑文件列表，只保留路径、长度、修改时间和目录标记。
+ * 去掉 scheme、时间转换、大小格式化等操作都在读取对应字段时才进行
+ */
+public class CompactFileStatusList {
+
+    private Path[] paths = new Path[16];
+    private long[] lengths = new long[16];
+    private long[] modificationTimes = new long[16];
+    private boolean[] directories = new boolean[16];
+    private int size;
+
+    void add(FileStatus status) {
+        if (size == paths.length) {
+            int capacity = size * 2;
+            paths = Arrays.copyOf(paths, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            modificationTimes = Arrays.copyOf(modificationTimes, capacity);
+            directories = Arrays.copyOf(directories, capacity);
+        }
+        paths[size] = status.getPath();
+        lengths[size] = status.getLen();
+        modificationTimes[size] = status.getModificationTime();
+        directories[size] = status.isDirectory();
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getPath(int index) {
+        checkIndex(index);
+        return Path.getPathWithoutSchemeAndAuthority(paths[index]).toString();
+    }
+
+    public long getLen(int index) {
+        checkIndex(index);
+        return lengths[index];
+    }
+
+    public long getModificationTime(int index) {
+        checkIndex(index);
+        return modificationTimes[index];
+    }
+
+    public boolean isDirectory(int index) {
+        checkIndex(index);
+        return directories[index];
+    }
+
+    public LocalDateTime getUpdatedAt(int index) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(getModificationTime(index)), ZoneId.systemDefault());
+    }
+
+    public String getSize(int index) {
+        return isDirectory(index) ? "--" : HdfsApi.getByteToSize(getLen(index));
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
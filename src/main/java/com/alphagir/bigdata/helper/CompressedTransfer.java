@@ -0,0 +1,277 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.HdfsFileStatus;
+import com.alphagir.bigdata.model.TransferPriorityEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.BZip2Codec;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.GzipCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 上传时压缩、下载时按扩展名自动解压。
+ * <p>
+ * gzip 和 bzip2 支持把多个独立压缩的数据段直接拼接成一个合法文件，因此上传时把本地文件切成固定大小的数据块，
+ * 由线程池各自独立压缩，再按顺序写入 HDFS；其他格式退化为单线程流式压缩
+ */
+@Slf4j
+class CompressedTransfer {
+
+    private final HdfsApi api;
+    private final FileSystem fs;
+    private final HdfsCopyEngine copyEngine;
+    private final CompressionCodecFactory codecs;
+
+    CompressedTransfer(HdfsApi api) {
+        this.api = api;
+        this.fs = api.getFs();
+        this.copyEngine = api.getCopyEngine();
+        this.codecs = api.getCodecFactory();
+    }
+
+    /**
+     * 按名称（如 gzip、bzip2、default）或类名查找压缩格式
+     */
+    CompressionCodec codec(String name) {
+        CompressionCodec codec = codecs.getCodecByName(name);
+        if (codec == null) {
+            throw new IllegalArgumentException("不支持的压缩格式：" + name);
+        }
+        return codec;
+    }
+
+    /**
+     * 目标路径没有该压缩格式的扩展名时自动加上，便于下载和读取时识别
+     */
+    static Path withExtension(Path dPath, CompressionCodec codec) {
+        String extension = codec.getDefaultExtension();
+        return dPath.getName().endsWith(extension) ? dPath : dPath.suffix(extension);
+    }
+
+    HdfsFileStatus upload(final File srcFile, Path dPath, final CompressionCodec codec, int parallelism, int chunkSize)
+            throws IOException, InterruptedException {
+        final Path target = withExtension(dPath, codec);
+        // 先写入同目录下的临时文件再覆盖 rename，失败时不会破坏已有的目标文件，读者也看不到写了一半的压缩文件
+        final Path tmp = new Path(target.getParent(), "." + target.getName() + "._COPYING_" + UUID.randomUUID());
+        long start = System.currentTimeMillis();
+        long compressed;
+        try {
+            compressed = api.execute("uploadFile.compress", () -> {
+                try (InputStream in = new FileInputStream(srcFile);
+                     OutputStream os = api.throttle(TransferPriorityEnum.BULK).wrap(fs.create(tmp, true))) {
+                    if (parallelism <= 1 || !(codec instanceof GzipCodec || codec instanceof BZip2Codec)) {
+                        return compressSequential(in, os, codec);
+                    }
+                    return compressParallel(in, os, codec, parallelism, Math.max(64 * 1024, chunkSize));
+                }
+            });
+            api.executeOnce("uploadFile.compress.rename", () -> {
+                try {
+                    api.rename(tmp, target, Options.Rename.OVERWRITE);
+                } finally {
+                    api.invalidate(target);
+                }
+                return null;
+            });
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            try {
+                fs.delete(tmp, false);
+            } catch (IOException ex) {
+                log.warn("清理临时文件 " + tmp + " 失败：" + ex.getMessage());
+            }
+            throw e;
+        }
+
+        api.getMetrics().bytesWritten("uploadFile.compress", compressed);
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        long len = srcFile.length();
+        log.info(target + " 压缩上传成功！格式：" + codec.getDefaultExtension() + "，原始大小：" + len
+                + "，压缩后：" + compressed + "，压缩率：" + String.format("%.2f", len == 0 ? 1.0 : (double) compressed / len)
+                + "，并发数：" + parallelism
+                + "，吞吐量：" + String.format("%.2f", len / 1024.0 / 1024.0 / (elapsed / 1000.0)) + "MiB/s");
+        return api.execute("uploadFile", () -> api.getOneFileStatus(target));
+    }
+
+    private long compressSequential(InputStream in, OutputStream os, CompressionCodec codec) throws IOException {
+        Compressor compressor = CodecPool.getCompressor(codec);
+        CountingOutputStream counter = new CountingOutputStream(os);
+        try {
+            CompressionOutputStream out = codec.createOutputStream(counter, compressor);
+            copyEngine.copy(in, out);
+            out.finish();
+            out.flush();
+        } finally {
+            CodecPool.returnCompressor(compressor);
+        }
+        return counter.count;
+    }
+
+    /**
+     * 读入下一个数据块的同时，最多有 2 * parallelism 个数据块在压缩或等待写出，内存占用与文件大小无关
+     */
+    private long compressParallel(InputStream in, OutputStream os, final CompressionCodec codec,
+                                  int parallelism, int chunkSize) throws IOException, InterruptedException {
+        int maxInFlight = parallelism * 2;
+        final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(maxInFlight + 1);
+        Deque<Future<byte[]>> inFlight = new ArrayDeque<>(maxInFlight);
+        ThreadPoolExecutor pool = HdfsThreadPools.newBoundedPool("hdfs-compress", parallelism, maxInFlight);
+        long written = 0;
+        try {
+            while (true) {
+                byte[] chunk = chunks.poll();
+                if (chunk == null) {
+                    chunk = new byte[chunkSize];
+                }
+                final int n = readFully(in, chunk);
+                if (n <= 0) {
+                    break;
+                }
+                final byte[] data = chunk;
+                inFlight.add(pool.submit(() -> {
+                    byte[] result = compress(codec, data, n);
+                    chunks.offer(data);
+                    return result;
+                }));
+                if (inFlight.size() >= maxInFlight) {
+                    written += writeNext(inFlight, os);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                written += writeNext(inFlight, os);
+            }
+            if (written == 0) {
+                // 空文件也要写出一个合法的压缩文件
+                byte[] empty = compress(codec, new byte[0], 0);
+                os.write(empty);
+                written = empty.length;
+            }
+            return written;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            HdfsThreadPools.cancelAll(inFlight);
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static int writeNext(Deque<Future<byte[]>> inFlight, OutputStream os)
+            throws IOException, InterruptedException {
+        byte[] compressed;
+        try {
+            compressed = inFlight.poll().get();
+        } catch (ExecutionException e) {
+            throw HdfsThreadPools.unwrap(e);
+        }
+        os.write(compressed);
+        return compressed.length;
+    }
+
+    private static byte[] compress(CompressionCodec codec, byte[] data, int len) throws IOException {
+        Compressor compressor = CodecPool.getCompressor(codec);
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(64, len / 2));
+            CompressionOutputStream out = codec.createOutputStream(bos, compressor);
+            out.write(data, 0, len);
+            out.finish();
+            out.close();
+            return bos.toByteArray();
+        } finally {
+            CodecPool.returnCompressor(compressor);
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int n = in.read(buffer, total, buffer.length - total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * 下载并解压，本地文件名去掉压缩扩展名；dest 为已存在的目录时下载到该目录下
+     */
+    File download(final Path sPath, final CompressionCodec codec, File dest) throws IOException, InterruptedException {
+        String name = CompressionCodecFactory.removeSuffix(sPath.getName(), codec.getDefaultExtension());
+        final File target = dest.isDirectory() ? new File(dest, name) : dest;
+        final File tmp = new File(target.getAbsoluteFile().getParentFile(), "." + target.getName() + ".downloading");
+        long start = System.currentTimeMillis();
+        final FileStatus status = api.execute("downloadFile", () -> fs.getFileStatus(sPath));
+        long len = api.execute("downloadFile.decompress", () -> {
+            // createInputStream(in) 从 CodecPool 借用解压器，关闭时归还
+            try (InputStream raw = fs.open(sPath); InputStream in = codec.createInputStream(raw);
+                 OutputStream os = api.throttle(TransferPriorityEnum.BULK).wrap(new FileOutputStream(tmp))) {
+                return copyEngine.copy(in, os);
+            } catch (IOException e) {
+                Files.deleteIfExists(tmp.toPath());
+                throw e;
+            }
+        });
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        api.getMetrics().bytesRead("downloadFile.decompress", status.getLen());
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        log.info("文件解压下载至：" + target + "，压缩后大小：" + status.getLen() + "，解压后：" + len
+                + "，压缩率：" + String.format("%.2f", len == 0 ? 1.0 : (double) status.getLen() / len)
+                + "，吞吐量：" + String.format("%.2f", len / 1024.0 / 1024.0 / (elapsed / 1000.0)) + "MiB/s");
+        return target;
+    }
+
+    /**
+     * 统计写出的字节数，不关闭底层流
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+}
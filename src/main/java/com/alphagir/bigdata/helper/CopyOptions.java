@@ -0,0 +1,38 @@
+package com.alphagir.bigdata.helper;
+
+import lombok.Data;
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * HdfsApi.copy 的可选项
+ */
+@Data
+public class CopyOptions {
+
+    /** 同时复制的文件数 */
+    private int parallelism = HdfsApiConfigKeys.COPY_PARALLELISM_DEFAULT;
+
+    /** 超过该大小（字节）的文件按块切分后并发复制，小于等于0表示不切分 */
+    private long chunkThreshold = HdfsApiConfigKeys.COPY_CHUNK_THRESHOLD_DEFAULT;
+
+    private boolean preservePermission;
+
+    private boolean preserveOwner;
+
+    private boolean preserveReplication;
+
+    /** 目标文件长度和 FileChecksum 都与源文件一致时跳过 */
+    private boolean skipUnchanged;
+
+    private TransferProgressListener listener;
+
+    public static CopyOptions fromConf(Configuration conf) {
+        CopyOptions options = new CopyOptions();
+        options.setParallelism(conf.getInt(HdfsApiConfigKeys.COPY_PARALLELISM_KEY,
+                HdfsApiConfigKeys.COPY_PARALLELISM_DEFAULT));
+        options.setChunkThreshold(conf.getLong(HdfsApiConfigKeys.COPY_CHUNK_THRESHOLD_KEY,
+                HdfsApiConfigKeys.COPY_CHUNK_THRESHOLD_DEFAULT));
+        return options;
+    }
+
+}
@@ -0,0 +1,322 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.SyncActionEnum;
+import com.alphagir.bigdata.model.SyncPlanItem;
+import com.alphagir.bigdata.model.TransferReport;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.Trash;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 增量同步本地目录到 HDFS 目录：先按长度和修改时间判断文件是否变化，可选再比较校验和，只上传新增或变化的文件。
+ * 上传后把目标文件的修改时间设置为本地文件的修改时间，下次同步时未变化的文件只需比较元数据。
+ * <p>
+ * dryRun 时只生成差异计划并打印，不做任何修改，报告中的传输数表示计划传输的文件数；
+ * 单个文件失败不会中断整个同步，失败原因汇总在 TransferReport 中
+ */
+@Slf4j
+class DirectorySync {
+
+    private final HdfsApi api;
+    private final FileSystem fs;
+    private final SyncOptions options;
+
+    DirectorySync(HdfsApi api, SyncOptions options) {
+        this.api = api;
+        this.fs = api.getFs();
+        this.options = options;
+    }
+
+    TransferReport sync(final File localDir, final Path dPath) throws IOException, InterruptedException {
+        if (!localDir.isDirectory()) {
+            throw new IOException("本地目录不存在：" + localDir);
+        }
+        final java.nio.file.Path root = localDir.toPath();
+        final int parallelism = Math.max(1, options.getParallelism());
+        final TransferTracker tracker = new TransferTracker(options.isDryRun() ? "sync(dry-run)" : "sync",
+                options.getListener());
+        final Map<String, SyncPlanItem> plan = new ConcurrentHashMap<>();
+
+        // 目标目录中已有的文件和目录，按相对路径索引
+        final Map<String, FileStatus> remote = new ConcurrentHashMap<>();
+        FileStatus rootStatus = api.lookupStatus(dPath);
+        if (rootStatus != null && !rootStatus.isDirectory()) {
+            throw new IOException(dPath + " 不是目录");
+        }
+        if (rootStatus != null) {
+            final String rootPrefix = fs.makeQualified(dPath).toUri().getPath();
+            new RecursiveLister(api, parallelism).list(dPath, null, RecursiveLister.UNLIMITED_DEPTH,
+                    status -> remote.put(relativize(rootPrefix, status.getPath()), status));
+        }
+
+        final Set<String> localPaths = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        final DirectoryUploader uploader = new DirectoryUploader(api);
+        final ThreadPoolExecutor pool = HdfsThreadPools.newBoundedPool("hdfs-sync", parallelism, parallelism * 2);
+        final List<Future<?>> futures = new ArrayList<>();
+        try {
+            if (rootStatus == null && !options.isDryRun()) {
+                api.execute("sync.mkdir", () -> fs.mkdirs(dPath));
+            }
+            Files.walkFileTree(root, new SimpleFileVisitor<java.nio.file.Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(java.nio.file.Path dir, BasicFileAttributes attrs)
+                        throws IOException {
+                    if (!dir.equals(root)) {
+                        String relative = DirectoryUploader.relativize(root, dir);
+                        localPaths.add(relative);
+                        FileStatus existing = remote.get(relative);
+                        if (existing == null || !existing.isDirectory()) {
+                            // 在遍历线程上创建目录，子项提交之前父目录一定已经存在
+                            mkdir(new Path(dPath, relative), relative, existing, tracker);
+                        }
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(java.nio.file.Path file, BasicFileAttributes attrs) {
+                    if (!attrs.isRegularFile()) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    tracker.fileFound();
+                    final String relative = DirectoryUploader.relativize(root, file);
+                    localPaths.add(relative);
+                    final long length = attrs.size();
+                    final long modificationTime = attrs.lastModifiedTime().toMillis();
+                    final FileStatus existing = remote.get(relative);
+                    // 队列满时由遍历线程自己执行，遍历速度自然被比较和上传的速度限制
+                    futures.add(pool.submit(() -> syncOne(uploader, file.toFile(), relative, length,
+                            modificationTime, existing, new Path(dPath, relative), plan, tracker)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(java.nio.file.Path file, IOException e) {
+                    tracker.fileFound();
+                    tracker.fileFailed(DirectoryUploader.relativize(root, file), e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw HdfsThreadPools.unwrap(e);
+        } catch (InterruptedException e) {
+            HdfsThreadPools.cancelAll(futures);
+            throw e;
+        } finally {
+            pool.shutdownNow();
+            api.invalidateTree(dPath);
+        }
+
+        long deleted = 0;
+        if (options.isDeleteExtraneous()) {
+            deleted = deleteExtraneous(dPath, remote, localPaths, plan, tracker);
+        }
+
+        TransferReport report = tracker.finish();
+        report.setFilesDeleted(deleted);
+        // 按路径排序，便于阅读和比较
+        List<SyncPlanItem> sorted = new ArrayList<>(new TreeMap<>(plan).values());
+        report.setPlan(sorted);
+        if (options.isDryRun()) {
+            for (SyncPlanItem item : sorted) {
+                log.info("[dry-run] " + item.getAction().getValue() + " " + item.getPath() + "（" + item.getReason() + "）");
+            }
+        }
+        return report;
+    }
+
+    /**
+     * 目录创建失败只记入报告，不中断同步；其下的文件仍会逐个尝试并各自记录失败。
+     * 不跳过子树，否则子项不在本地路径集合中，开启删除时会被当作多余条目删掉
+     */
+    private void mkdir(Path target, String relative, FileStatus existing, TransferTracker tracker)
+            throws InterruptedIOException {
+        if (options.isDryRun()) {
+            return;
+        }
+        try {
+            boolean created = api.execute("sync.mkdir", () -> {
+                if (existing != null && options.isDeleteExtraneous()) {
+                    // 本地是目录、目标是同名文件时，只有允许删除时才替换
+                    fs.delete(target, false);
+                }
+                return fs.mkdirs(target);
+            });
+            if (!created) {
+                throw new IOException("mkdirs 返回 false：" + target);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("创建目录 " + target + " 时被中断");
+        } catch (IOException e) {
+            tracker.fileFound();
+            tracker.fileFailed(relative + "/", e);
+        }
+    }
+
+    private void syncOne(DirectoryUploader uploader, File file, String relative, long length,
+                         long modificationTime, FileStatus existing, Path target,
+                         Map<String, SyncPlanItem> plan, TransferTracker tracker) {
+        try {
+            SyncPlanItem item = compare(file, relative, length, modificationTime, existing);
+            if (item.getAction() == SyncActionEnum.SKIP) {
+                tracker.fileSkipped(relative);
+                return;
+            }
+            plan.put(relative, item);
+            if (options.isDryRun()) {
+                tracker.fileTransferred(relative);
+                return;
+            }
+            if (existing != null && existing.isDirectory()) {
+                throw new IOException(target + " 是目录，无法用文件替换");
+            }
+            tracker.bytes(uploader.uploadViaTemp(file, target, true));
+            api.execute("sync.setTimes", () -> {
+                fs.setTimes(target, modificationTime, -1);
+                return null;
+            });
+            tracker.fileTransferred(relative);
+        } catch (InterruptedException | InterruptedIOException e) {
+            Thread.currentThread().interrupt();
+            tracker.fileFailed(relative, e);
+        } catch (Exception e) {
+            tracker.fileFailed(relative, e);
+        } finally {
+            api.invalidate(target);
+        }
+    }
+
+    /**
+     * 先比较长度和修改时间；长度相同、修改时间不同且开启了校验和比较时再比较校验和
+     */
+    private SyncPlanItem compare(File file, String relative, long length, long modificationTime, FileStatus existing)
+            throws IOException, InterruptedException {
+        if (existing == null) {
+            return new SyncPlanItem(relative, SyncActionEnum.ADD, "目标不存在", length);
+        }
+        if (existing.isDirectory()) {
+            return new SyncPlanItem(relative, SyncActionEnum.UPDATE, "目标是同名目录", length);
+        }
+        if (existing.getLen() != length) {
+            return new SyncPlanItem(relative, SyncActionEnum.UPDATE,
+                    "长度不同：" + existing.getLen() + " -> " + length, length);
+        }
+        if (existing.getModificationTime() == modificationTime) {
+            return new SyncPlanItem(relative, SyncActionEnum.SKIP, "长度和修改时间相同", length);
+        }
+        if (!options.isCompareChecksum()) {
+            return new SyncPlanItem(relative, SyncActionEnum.UPDATE, "修改时间不同", length);
+        }
+        FileChecksum remoteChecksum = api.execute("sync.checksum", () -> fs.getFileChecksum(existing.getPath()));
+        HdfsChecksums.Spec spec = remoteChecksum == null ? null : HdfsChecksums.spec(remoteChecksum);
+        if (spec == null) {
+            return new SyncPlanItem(relative, SyncActionEnum.UPDATE, "修改时间不同且无法比较校验和", length);
+        }
+        FileChecksum localChecksum = HdfsChecksums.compute(file, existing.getBlockSize(), spec, api.getCopyEngine());
+        if (!remoteChecksum.equals(localChecksum)) {
+            return new SyncPlanItem(relative, SyncActionEnum.UPDATE, "校验和不同", length);
+        }
+        if (!options.isDryRun()) {
+            // 内容相同，只同步修改时间，下次同步不必再计算校验和
+            api.execute("sync.setTimes", () -> {
+                fs.setTimes(existing.getPath(), modificationTime, -1);
+                return null;
+            });
+        }
+        return new SyncPlanItem(relative, SyncActionEnum.SKIP, "校验和相同", length);
+    }
+
+    /**
+     * 删除本地不存在的目标条目；被删除目录下的子项折叠为一次删除
+     */
+    private long deleteExtraneous(Path dPath, Map<String, FileStatus> remote, Set<String> localPaths,
+                                  Map<String, SyncPlanItem> plan, TransferTracker tracker) {
+        Set<String> deletedDirs = new HashSet<>();
+        long deleted = 0;
+        // 按路径排序后上级目录一定排在子路径之前
+        for (Map.Entry<String, FileStatus> entry : new TreeMap<>(remote).entrySet()) {
+            String relative = entry.getKey();
+            FileStatus status = entry.getValue();
+            if (localPaths.contains(relative) || coveredBy(relative, deletedDirs)) {
+                continue;
+            }
+            if (status.isDirectory()) {
+                deletedDirs.add(relative);
+            }
+            plan.put(relative, new SyncPlanItem(relative, SyncActionEnum.DELETE,
+                    status.isDirectory() ? "本地不存在该目录" : "本地不存在该文件", status.getLen()));
+            if (options.isDryRun()) {
+                deleted++;
+                continue;
+            }
+            final Path target = new Path(dPath, relative);
+            try {
+                // 移入回收站或删除都不是幂等的，丢失响应后重试会把已经成功的删除报告为失败
+                boolean removed;
+                try {
+                    removed = api.executeOnce("sync.delete", () -> {
+                        Trash trash = new Trash(fs, api.getConf());
+                        return options.isSkipTrash() || !trash.isEnabled() ? fs.delete(target, true)
+                                : trash.moveToTrash(target);
+                    });
+                } finally {
+                    api.invalidateTree(target);
+                }
+                if (!removed) {
+                    throw new IOException("删除失败：" + target);
+                }
+                deleted++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                tracker.fileFailed(relative, e);
+                break;
+            } catch (IOException e) {
+                tracker.fileFailed(relative, e);
+            }
+        }
+        return deleted;
+    }
+
+    private static boolean coveredBy(String relative, Set<String> dirs) {
+        int slash = relative.lastIndexOf('/');
+        while (slash > 0) {
+            relative = relative.substring(0, slash);
+            if (dirs.contains(relative)) {
+                return true;
+            }
+            slash = relative.lastIndexOf('/');
+        }
+        return false;
+    }
+
+    private static String relativize(String rootPrefix, Path path) {
+        String p = path.toUri().getPath();
+        return p.substring(rootPrefix.length()).replaceFirst("^/+", "");
+    }
+}
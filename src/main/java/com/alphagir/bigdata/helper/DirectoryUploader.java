@@ -0,0 +1,241 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.TransferPriorityEnum;
+import com.alphagir.bigdata.model.TransferReport;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 并发上传本地目录树。每个文件先写入同目录下的临时文件，完成后再原子地 rename 为目标文件，
+ * 因此目标目录中不会出现写了一半的文件；已完成的文件记录在本地清单中，重新执行时自动跳过。
+ * <p>
+ * 单个文件失败不会中断整个上传，失败原因汇总在 TransferReport 中。
+ * 上一次中断时留下的临时文件在遍历到所在目录时删除，因此不支持多个上传同时写入同一个目标目录
+ */
+@Slf4j
+class DirectoryUploader {
+
+    private final HdfsApi api;
+    private final FileSystem fs;
+    private final HdfsCopyEngine copyEngine;
+
+    DirectoryUploader(HdfsApi api) {
+        this.api = api;
+        this.fs = api.getFs();
+        this.copyEngine = api.getCopyEngine();
+    }
+
+    /**
+     * 清单默认放在本地目录的同级目录下，避免被当作普通文件上传
+     */
+    static File defaultManifest(File localDir) {
+        File dir = localDir.getAbsoluteFile();
+        return new File(dir.getParentFile(), "." + dir.getName() + ".upload-manifest");
+    }
+
+    TransferReport upload(final File localDir, final Path dPath, final boolean overwrite, int parallelism,
+                          File manifestFile, TransferProgressListener listener)
+            throws IOException, InterruptedException {
+        if (!localDir.isDirectory()) {
+            throw new IOException("本地目录不存在：" + localDir);
+        }
+        final java.nio.file.Path root = localDir.toPath();
+        final TransferTracker tracker = new TransferTracker("uploadDirectory", listener);
+        final UploadManifest manifest = new UploadManifest(manifestFile, fs.makeQualified(dPath).toString());
+        try {
+            TransferReport report = walk(root, dPath, overwrite, parallelism, manifest, tracker);
+            if (report.isSuccess()) {
+                manifest.delete();
+            } else {
+                log.warn(localDir + " 有 " + report.getFilesFailed() + " 个文件上传失败，重新执行时将从清单 "
+                        + manifestFile + " 继续上传");
+            }
+            return report;
+        } finally {
+            // 异常退出时同样要关闭清单；delete 之后再次关闭没有影响
+            manifest.close();
+        }
+    }
+
+    private TransferReport walk(final java.nio.file.Path root, final Path dPath, final boolean overwrite,
+                                int parallelism, final UploadManifest manifest, final TransferTracker tracker)
+            throws IOException, InterruptedException {
+        final ThreadPoolExecutor pool = HdfsThreadPools.newBoundedPool("hdfs-upload-dir", parallelism, parallelism * 2);
+        final List<Future<?>> futures = new ArrayList<>();
+        try {
+            api.execute("uploadDirectory.mkdir", () -> fs.mkdirs(dPath));
+            deleteLeftoverTemps(dPath);
+            Files.walkFileTree(root, new SimpleFileVisitor<java.nio.file.Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(java.nio.file.Path dir, BasicFileAttributes attrs)
+                        throws IOException {
+                    if (dir.equals(root)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    // 在遍历线程上创建目录，子项提交之前父目录一定已经存在；空目录也会被创建
+                    String relative = relativize(root, dir);
+                    try {
+                        api.execute("uploadDirectory.mkdir", () -> fs.mkdirs(new Path(dPath, relative)));
+                        deleteLeftoverTemps(new Path(dPath, relative));
+                        return FileVisitResult.CONTINUE;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("创建目录 " + relative + " 时被中断");
+                    } catch (IOException e) {
+                        // 目录创建失败只记入报告，其下的文件无法上传，跳过整个子树
+                        tracker.fileFound();
+                        tracker.fileFailed(relative + "/", e);
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                }
+
+                @Override
+                public FileVisitResult visitFile(java.nio.file.Path file, BasicFileAttributes attrs) {
+                    if (!attrs.isRegularFile()) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    tracker.fileFound();
+                    final String relative = relativize(root, file);
+                    final long length = attrs.size();
+                    final long modificationTime = attrs.lastModifiedTime().toMillis();
+                    // 队列满时由遍历线程自己执行上传，遍历速度自然被上传速度限制
+                    futures.add(pool.submit(() -> uploadOne(file.toFile(), relative, length, modificationTime,
+                            new Path(dPath, relative), overwrite, manifest, tracker)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(java.nio.file.Path file, IOException e) {
+                    tracker.fileFound();
+                    tracker.fileFailed(relativize(root, file), e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw HdfsThreadPools.unwrap(e);
+        } catch (InterruptedException e) {
+            HdfsThreadPools.cancelAll(futures);
+            throw e;
+        } finally {
+            pool.shutdownNow();
+            api.invalidateTree(dPath);
+        }
+        return tracker.finish();
+    }
+
+    private void uploadOne(File file, String relative, long length, long modificationTime,
+                           Path target, boolean overwrite, UploadManifest manifest, TransferTracker tracker) {
+        try {
+            FileStatus existing = api.lookupStatus(target);
+            if (manifest.isCompleted(relative, length, modificationTime)
+                    && existing != null && existing.getLen() == length) {
+                tracker.fileSkipped(relative);
+                return;
+            }
+            if (existing != null && !overwrite) {
+                throw new FileAlreadyExistsException(target + " 已存在");
+            }
+            tracker.bytes(uploadViaTemp(file, target, overwrite));
+            manifest.markCompleted(relative, length, modificationTime);
+            tracker.fileTransferred(relative);
+        } catch (InterruptedException | InterruptedIOException e) {
+            Thread.currentThread().interrupt();
+            tracker.fileFailed(relative, e);
+        } catch (Exception e) {
+            tracker.fileFailed(relative, e);
+        } finally {
+            api.invalidate(target);
+        }
+    }
+
+    /**
+     * 先写入同目录下的临时文件，完成后再 rename 为目标文件；失败时删除临时文件
+     */
+    long uploadViaTemp(final File file, final Path target, final boolean overwrite)
+            throws IOException, InterruptedException {
+        final Path tmp = new Path(target.getParent(), "." + target.getName() + "._COPYING_" + UUID.randomUUID());
+        try {
+            long written = api.execute("uploadDirectory.file", () -> {
+                try (InputStream in = new FileInputStream(file);
+                     OutputStream os = api.throttle(TransferPriorityEnum.BULK).wrap(fs.create(tmp, true))) {
+                    return copyEngine.copy(in, os);
+                }
+            });
+            api.executeOnce("uploadDirectory.rename", () -> {
+                try {
+                    api.rename(tmp, target, overwrite ? Options.Rename.OVERWRITE : Options.Rename.NONE);
+                } catch (IOException e) {
+                    // rename 已经生效但响应丢失：临时文件已不存在且目标文件长度与写入的一致，视为成功
+                    api.invalidate(target);
+                    FileStatus status = fs.exists(tmp) ? null : api.lookupStatus(target);
+                    if (status == null || status.getLen() != written) {
+                        throw e;
+                    }
+                    log.warn(tmp + " 重命名为 " + target + " 时出错，但重命名已经生效：" + e.getMessage());
+                }
+                return null;
+            });
+            return written;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            deleteQuietly(tmp);
+            throw e;
+        }
+    }
+
+    /**
+     * 删除上一次中断时留在目标目录中的临时文件，失败只记录日志
+     */
+    private void deleteLeftoverTemps(final Path dir) {
+        try {
+            api.execute("uploadDirectory.cleanup", () -> {
+                for (FileStatus status : fs.listStatus(dir, p -> p.getName().startsWith(".")
+                        && p.getName().contains("._COPYING_"))) {
+                    if (status.isFile() && fs.delete(status.getPath(), false)) {
+                        log.info("删除上次中断留下的临时文件：" + status.getPath());
+                    }
+                }
+                return null;
+            });
+        } catch (IOException e) {
+            log.warn("清理 " + dir + " 中的临时文件失败：" + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void deleteQuietly(Path tmp) {
+        try {
+            fs.delete(tmp, false);
+        } catch (IOException e) {
+            log.warn("清理临时文件 " + tmp + " 失败：" + e.getMessage());
+        }
+    }
+
+    static String relativize(java.nio.file.Path root, java.nio.file.Path path) {
+        return root.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+}
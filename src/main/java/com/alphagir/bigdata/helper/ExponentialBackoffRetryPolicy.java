@@ -0,0 +1,76 @@
+package com.alphagir.bigdata.helper;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.ipc.RetriableException;
+import org.apache.hadoop.ipc.StandbyException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 指数退避 + 全抖动的重试策略，按异常类型判断是否可重试，并受 RetryBudget 限制
+ */
+public class ExponentialBackoffRetryPolicy implements HdfsRetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final RetryBudget budget;
+
+    public ExponentialBackoffRetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, RetryBudget budget) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.budget = budget;
+    }
+
+    static ExponentialBackoffRetryPolicy fromConf(Configuration conf) {
+        return new ExponentialBackoffRetryPolicy(
+                conf.getInt(HdfsApiConfigKeys.RETRY_MAX_ATTEMPTS_KEY, HdfsApiConfigKeys.RETRY_MAX_ATTEMPTS_DEFAULT),
+                conf.getLong(HdfsApiConfigKeys.RETRY_BASE_DELAY_MS_KEY, HdfsApiConfigKeys.RETRY_BASE_DELAY_MS_DEFAULT),
+                conf.getLong(HdfsApiConfigKeys.RETRY_MAX_DELAY_MS_KEY, HdfsApiConfigKeys.RETRY_MAX_DELAY_MS_DEFAULT),
+                RetryBudget.global());
+    }
+
+    @Override
+    public long nextDelayMillis(String operation, IOException e, int attempt, boolean alwaysRetry) {
+        if (attempt >= maxAttempts) {
+            return NO_RETRY;
+        }
+        if (!alwaysRetry && !isRetriable(e)) {
+            return NO_RETRY;
+        }
+        if (budget != null && !budget.tryWithdraw()) {
+            return NO_RETRY;
+        }
+        // 全抖动：在 [0, min(max, base * 2^(attempt-1))] 之间随机取值，避免多个线程同时重试
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    @Override
+    public void onCall(String operation) {
+        if (budget != null) {
+            budget.deposit();
+        }
+    }
+
+    /**
+     * NameNode 切换、限流、超时以及 HDFS-1058 中的块长度异常可以重试，其它异常直接抛出
+     */
+    public static boolean isRetriable(IOException e) {
+        IOException cause = e;
+        if (e instanceof RemoteException) {
+            cause = ((RemoteException) e).unwrapRemoteException(RetriableException.class, StandbyException.class);
+        }
+        if (cause instanceof RetriableException || cause instanceof StandbyException
+                || cause instanceof SocketTimeoutException || cause instanceof ConnectException) {
+            return true;
+        }
+        String message = e.getMessage();
+        return message != null && (message.contains("Cannot obtain block length") || message.contains("无法获取块的长度："));
+    }
+}
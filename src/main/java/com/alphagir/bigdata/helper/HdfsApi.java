@@ -1,10 +1,13 @@
 package com.alphagir.bigdata.helper;
 
 import com.alphagir.bigdata.exception.ReportBadRequestException;
+import com.alphagir.bigdata.model.BatchResult;
+import com.alphagir.bigdata.model.FileRange;
 import com.alphagir.bigdata.model.HdfsFileStatus;
+import com.alphagir.bigdata.model.HdfsFileStatusField;
 import com.alphagir.bigdata.model.HdfsPermissionEnum;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.base.Strings;
+import com.alphagir.bigdata.model.TransferPriorityEnum;
+import com.alphagir.bigdata.model.TransferReport;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
@@ -12,16 +15,28 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.*;
 import org.apache.hadoop.fs.permission.FsAction;
 import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
 import org.apache.hadoop.security.UserGroupInformation;
 
 import javax.activation.MimetypesFileTypeMap;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URI;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
 import java.security.PrivilegedExceptionAction;
 import java.text.DecimalFormat;
 import java.time.Instant;
@@ -29,53 +44,135 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
 
 import static com.alphagir.bigdata.model.HdfsPermissionEnum.*;
 
 @Slf4j
-public class HdfsApi {
+public class HdfsApi implements Closeable {
+
+    private static final String DEFAULT_OPERATION = "execute";
+
+    // DecimalFormat 不是线程安全的，每个线程复用一个实例
+    private static final ThreadLocal<DecimalFormat> SIZE_FORMAT = ThreadLocal.withInitial(() -> new DecimalFormat("###.00"));
 
     private String uri;
     private UserGroupInformation ugi;
     private FileSystem fs;
     private Configuration conf;
+    private HdfsCopyEngine copyEngine;
+    private MetadataCache metadataCache;
+    private AccessEvaluator accessEvaluator;
+    // 由 HdfsApiFactory 创建时，close 只归还池中的 FileSystem 引用
+    private Closeable releaser;
+    // 独立构造时 ugi 是否由本实例创建，只有自己创建的 ugi 对应的缓存 FileSystem 才能在 close 时关闭
+    private boolean ownsUgi;
+    private volatile HdfsRetryPolicy retryPolicy;
+    private final Map<String, HdfsRetryPolicy> operationRetryPolicies = new ConcurrentHashMap<>();
+    private volatile VectoredReader vectoredReader;
+    private volatile CompressionCodecFactory codecFactory;
+    private final HdfsApiMetrics metrics;
+    private final Map<Path, HdfsAppender> appenders = new ConcurrentHashMap<>();
+    // 正在打开或已经打开追加写入器的文件，打开之前先占位
+    private final Set<Path> appenderPaths = ConcurrentHashMap.newKeySet();
+    private LocalFileCache localCache;
+    private final TransferScheduler transferScheduler;
+    // 非 HDFS 文件系统带选项 rename 时使用，每个实例只创建一次
+    private volatile FileContext fileContext;
 
     public HdfsApi(final String uri, String user) throws IOException, InterruptedException {
         this.conf = new Configuration();
         conf.set("fs.defaultFS", uri);
         conf.set("hadoop.root.logger", "ERROR,console");
         this.uri = uri;
+        this.copyEngine = new HdfsCopyEngine(conf);
+        this.metadataCache = newMetadataCache(conf);
+        this.localCache = LocalFileCache.fromConf(conf);
+        this.retryPolicy = ExponentialBackoffRetryPolicy.fromConf(conf);
+        this.transferScheduler = TransferScheduler.get(conf);
+        this.metrics = HdfsApiMetrics.get(conf);
         UserGroupInformation.setConfiguration(conf);
 
         if (StringUtils.isNotBlank(user)) {
             // 创建远程用户
             this.ugi = UserGroupInformation.createRemoteUser(user);
+            this.ownsUgi = true;
         } else {
             // 获得当前用户
             this.ugi = UserGroupInformation.getCurrentUser();
         }
 
+        this.accessEvaluator = newAccessEvaluator(ugi, conf);
+
         initializeFileSystem();
     }
 
+    /**
+     * 供 HdfsApiFactory 使用：FileSystem、缓存等资源由工厂按用户复用
+     */
+    HdfsApi(String uri, Configuration conf, UserGroupInformation ugi, FileSystem fs, HdfsCopyEngine copyEngine,
+            MetadataCache metadataCache, AccessEvaluator accessEvaluator, Closeable releaser) {
+        this.uri = resolveUri(uri, conf);
+        this.conf = conf;
+        this.ugi = ugi;
+        this.fs = fs;
+        this.copyEngine = copyEngine;
+        this.metadataCache = metadataCache;
+        this.accessEvaluator = accessEvaluator;
+        this.releaser = releaser;
+        this.localCache = LocalFileCache.fromConf(conf);
+        this.retryPolicy = ExponentialBackoffRetryPolicy.fromConf(conf);
+        this.transferScheduler = TransferScheduler.get(conf);
+        this.metrics = HdfsApiMetrics.get(conf);
+    }
+
     private void initializeFileSystem() throws IOException, InterruptedException {
-        // 放在doAs里面执行action，并获得fs实例
-        this.fs = execute(() -> FileSystem.get(conf));
+        // 放在doAs里面执行action，并获得fs实例。沿用 FileSystem 缓存，不调用 close 的旧调用方不会每次泄漏一个 DFSClient；
+        // 需要独立、可回收实例的场景使用 HdfsApiFactory
+        this.fs = execute("initializeFileSystem", () -> FileSystem.get(conf));
 
+        this.uri = resolveUri(uri, conf);
+    }
+
+    static String resolveUri(String uri, Configuration conf) {
         // 如果未指定HDFS文件系统的uri，则默认为本地系统，替换file为本地C盘
         if (StringUtils.isBlank(uri)) {
-            this.uri = conf.get("fs.default.name");
+            uri = conf.get("fs.default.name");
             if (uri.equals("file:///")) {
-                this.uri = "C:";
+                uri = "C:";
             }
         }
+        return uri;
+    }
+
+    static MetadataCache newMetadataCache(Configuration conf) {
+        if (!conf.getBoolean(HdfsApiConfigKeys.METADATA_CACHE_ENABLED_KEY, HdfsApiConfigKeys.METADATA_CACHE_ENABLED_DEFAULT)) {
+            return null;
+        }
+        return new MetadataCache(
+                conf.getInt(HdfsApiConfigKeys.METADATA_CACHE_MAX_ENTRIES_KEY, HdfsApiConfigKeys.METADATA_CACHE_MAX_ENTRIES_DEFAULT),
+                conf.getLong(HdfsApiConfigKeys.METADATA_CACHE_TTL_MS_KEY, HdfsApiConfigKeys.METADATA_CACHE_TTL_MS_DEFAULT));
+    }
 
+    static AccessEvaluator newAccessEvaluator(UserGroupInformation ugi, Configuration conf) {
+        return new AccessEvaluator(ugi,
+                conf.getLong(HdfsApiConfigKeys.ACCESS_GROUPS_REFRESH_MS_KEY, HdfsApiConfigKeys.ACCESS_GROUPS_REFRESH_MS_DEFAULT));
     }
 
     public synchronized FsStatus getHdfsStatus() throws Exception {
-        return execute(() -> {
+        return execute("getHdfsStatus", () -> {
             FsStatus status = fs.getStatus();
             log.info("容量：" + getByteToSize(status.getCapacity()));
             log.info("已用：" + getByteToSize(status.getUsed()));
@@ -85,48 +182,104 @@ public class HdfsApi {
     }
 
     public Boolean mkdir(final String path) throws IOException, InterruptedException {
-        return execute(() -> {
+        return execute("mkdir", () -> {
             Path dPath = new Path(uri + "/" + path);
-            return fs.mkdirs(dPath);
+            try {
+                return fs.mkdirs(dPath);
+            } finally {
+                invalidate(dPath);
+            }
         });
 
     }
 
     public FSDataOutputStream createFile(final String path, final boolean overwrite)
             throws IOException, InterruptedException {
-        return execute(() -> fs.create(new Path(uri + "/" + path), overwrite));
+        return executeOnce("createFile", () -> {
+            Path dPath = new Path(uri + "/" + path);
+            try {
+                return fs.create(dPath, overwrite);
+            } finally {
+                // 修改之后再失效，避免并发查询在修改前把旧状态重新放入缓存
+                invalidate(dPath);
+            }
+        });
     }
 
     public FSDataOutputStream appendFile(final String path) throws IOException, InterruptedException {
-        return execute(() -> fs.append(new Path(uri + "/" + path)));
+        return executeOnce("appendFile", () -> {
+            Path dPath = new Path(uri + "/" + path);
+            try {
+                return fs.append(dPath);
+            } finally {
+                invalidate(dPath);
+            }
+        });
+    }
+
+    /**
+     * 打开长期持有的追加写入器，适合高频追加小记录的场景；同一个文件同时只能打开一个写入器
+     */
+    public HdfsAppender openAppender(final String path, AppenderOptions options)
+            throws IOException, InterruptedException {
+        Path dPath = fs.makeQualified(resolvePath(path));
+        if (!appenderPaths.add(dPath)) {
+            throw new IOException("文件 " + dPath + " 已经打开了追加写入器");
+        }
+        // 打开文件可能要等待租约恢复，只占位不持锁，其它文件的写入器可以同时打开
+        HdfsAppender appender;
+        try {
+            appender = new HdfsAppender(this, dPath, options);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            appenderPaths.remove(dPath);
+            throw e;
+        }
+        appenders.put(dPath, appender);
+        return appender;
+    }
+
+    public HdfsAppender openAppender(final String path) throws IOException, InterruptedException {
+        return openAppender(path, AppenderOptions.fromConf(conf));
+    }
+
+    void appenderClosed(HdfsAppender appender) {
+        if (appenders.remove(appender.getPath(), appender)) {
+            appenderPaths.remove(appender.getPath());
+        }
     }
 
     public boolean rmdir(final String path, boolean recursive, boolean skiptrash)
             throws IOException, InterruptedException {
-        return execute(() -> {
+        final Path dPath;
+        final String destPath;
+        if (StringUtils.isNotBlank(uri)) {
+            destPath = uri + "/" + path;
+            dPath = new Path(destPath);
+        } else {
+            destPath = path;
+            dPath = new Path(path);
+        }
+        // 如果不跳过回收站，则将删除的对象放入回收站；moveToTrash 自身在 execute 中执行且不重试，不再嵌套
+        if (!skiptrash) {
             try {
-                Path dPath;
-                String destPath = "";
-                if (StringUtils.isNotBlank(uri)) {
-                    destPath = uri + "/" + path;
-                    dPath = new Path(destPath);
-                } else {
-                    destPath = path;
-                    dPath = new Path(path);
-                }
-
-                // 如果不跳过回收站，则将删除的对象放入回收站
-                if (!skiptrash) {
-                    moveToTrash(destPath);
-                    log.info(destPath + " 移动到回收站成功！");
-                    return true;
-                } else {
-                    // 是否删除文件目录的时候，采用递归删除文件
-                    log.info(destPath + " 删除成功！");
-                    return fs.delete(dPath, recursive);
-                }
-            } catch (IllegalArgumentException | IOException | InterruptedException e) {
+                boolean moved = moveToTrash(destPath);
+                log.info(destPath + (moved ? " 移动到回收站成功！" : " 移动到回收站失败！"));
+                return moved;
+            } catch (IllegalArgumentException | IOException e) {
                 log.error(e.getClass() + "," + e.getMessage());
+                return false;
+            }
+        }
+        return executeOnce("rmdir", () -> {
+            try {
+                // 是否删除文件目录的时候，采用递归删除文件
+                boolean deleted = fs.delete(dPath, recursive);
+                log.info(destPath + (deleted ? " 删除成功！" : " 删除失败！"));
+                return deleted;
+            } catch (IllegalArgumentException | IOException e) {
+                log.error(e.getClass() + "," + e.getMessage());
+            } finally {
+                invalidateTree(dPath);
             }
             return false;
         });
@@ -134,8 +287,16 @@ public class HdfsApi {
 
     public List<HdfsFileStatus> getFileList(final String path, PathFilter pathFilter)
             throws IOException, InterruptedException {
-        return execute(() -> {
-            ObjectMapper mapper = new ObjectMapper();
+        return getFileList(path, pathFilter, HdfsFileStatusField.ALL);
+    }
+
+    /**
+     * 只填充 fields 中指定的字段，未请求的字段为 null，对应的格式化和权限计算也会跳过
+     */
+    public List<HdfsFileStatus> getFileList(final String path, PathFilter pathFilter,
+                                            final Set<HdfsFileStatusField> fields)
+            throws IOException, InterruptedException {
+        return execute("getFileList", () -> {
             List<HdfsFileStatus> models = new ArrayList<>();
             try {
                 Path dPath;
@@ -152,10 +313,11 @@ public class HdfsApi {
                     // 列出目录内容
                     status = fs.listStatus(dPath);
                 }
-                for (FileStatus fileStatus : status) {
-                    models.add(fileStatusToModel(fileStatus));
+                // 整批只解析一次用户组，一次得到读写执行三种权限
+                FsAction[] actions = fields.contains(HdfsFileStatusField.ACCESS) ? accessEvaluator.evaluate(status) : null;
+                for (int i = 0; i < status.length; i++) {
+                    models.add(fileStatusToModel(status[i], fields, actions == null ? null : actions[i]));
                 }
-//                log.info("文件列表状态：" + mapper.writeValueAsString(models));
             } catch (IllegalArgumentException | IOException e) {
                 e.printStackTrace();
             }
@@ -165,33 +327,130 @@ public class HdfsApi {
 
     }
 
+    /**
+     * 并行递归遍历目录，每个条目转换后回调 consumer（会被多个线程并发调用）。
+     * maxDepth 为1时只遍历当前目录，小于等于0表示不限深度；被 pathFilter 过滤的目录不再向下遍历
+     */
+    public void listFiles(final String path, PathFilter pathFilter, int maxDepth, Consumer<HdfsFileStatus> consumer)
+            throws IOException, InterruptedException {
+        listFiles(path, pathFilter, maxDepth, HdfsFileStatusField.ALL, consumer);
+    }
+
+    public void listFiles(final String path, PathFilter pathFilter, int maxDepth,
+                          final Set<HdfsFileStatusField> fields, Consumer<HdfsFileStatus> consumer)
+            throws IOException, InterruptedException {
+        final boolean access = fields.contains(HdfsFileStatusField.ACCESS);
+        newRecursiveLister().list(resolvePath(path), pathFilter, maxDepth,
+                status -> consumer.accept(fileStatusToModel(status, fields,
+                        access ? accessEvaluator.evaluate(status) : null)));
+    }
+
+    /**
+     * 以紧凑形式列出单层目录，只保存路径、长度、修改时间和目录标记，适合大批量的机器消费
+     */
+    public CompactFileStatusList getCompactFileList(final String path, final PathFilter pathFilter)
+            throws IOException, InterruptedException {
+        return execute("getCompactFileList", () -> {
+            CompactFileStatusList list = new CompactFileStatusList();
+            RemoteIterator<FileStatus> it = fs.listStatusIterator(resolvePath(path));
+            while (it.hasNext()) {
+                FileStatus status = it.next();
+                if (pathFilter == null || pathFilter.accept(status.getPath())) {
+                    list.add(status);
+                }
+            }
+            return list;
+        });
+    }
+
+    /**
+     * 以迭代器方式流式返回递归遍历结果，提前结束时需调用 close
+     */
+    public CloseableRemoteIterator<HdfsFileStatus> listFiles(final String path, PathFilter pathFilter, int maxDepth)
+            throws IOException {
+        final CloseableRemoteIterator<FileStatus> it = newRecursiveLister().iterator(resolvePath(path), pathFilter,
+                maxDepth, conf.getInt(HdfsApiConfigKeys.LIST_QUEUE_CAPACITY_KEY, HdfsApiConfigKeys.LIST_QUEUE_CAPACITY_DEFAULT));
+        return new CloseableRemoteIterator<HdfsFileStatus>() {
+            @Override
+            public boolean hasNext() throws IOException {
+                return it.hasNext();
+            }
+
+            @Override
+            public HdfsFileStatus next() throws IOException {
+                return fileStatusToModel(it.next());
+            }
+
+            @Override
+            public void close() throws IOException {
+                it.close();
+            }
+        };
+    }
+
+    private RecursiveLister newRecursiveLister() {
+        return new RecursiveLister(this,
+                conf.getInt(HdfsApiConfigKeys.LIST_PARALLELISM_KEY, HdfsApiConfigKeys.LIST_PARALLELISM_DEFAULT));
+    }
+
     public HdfsFileStatus getOneFileStatus(final Path filePath) throws IOException {
-        FileStatus status = fs.getFileStatus(filePath);
+        FileStatus status = lookupStatus(filePath);
+        if (status == null) {
+            throw new FileNotFoundException("File does not exist: " + filePath);
+        }
         return this.fileStatusToModel(status);
     }
 
-    private HdfsFileStatus fileStatusToModel(FileStatus status) {
+    HdfsFileStatus fileStatusToModel(FileStatus status) {
+        return fileStatusToModel(status, HdfsFileStatusField.ALL, accessEvaluator.evaluate(status));
+    }
+
+    private HdfsFileStatus fileStatusToModel(FileStatus status, Set<HdfsFileStatusField> fields, FsAction access) {
 
         HdfsFileStatus hdfsFileStatus = new HdfsFileStatus();
-        hdfsFileStatus.setPath(Path.getPathWithoutSchemeAndAuthority(status.getPath()).toString());
-        hdfsFileStatus.setReplication(status.getReplication());
-        hdfsFileStatus.setIsDirectory(status.isDirectory());
-        hdfsFileStatus.setLen(status.getLen());
-        // 文件夹大小显示为 --
-        if (status.isDirectory()) {
-            hdfsFileStatus.setSize("--");
-        } else {
-            hdfsFileStatus.setSize(getByteToSize(status.getLen()));
-        }
-        hdfsFileStatus.setOwner(status.getOwner());
-        hdfsFileStatus.setGroup(status.getGroup());
-        hdfsFileStatus.setPermission(permissionToString(status.getPermission()));
-        hdfsFileStatus.setCreatedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(status.getAccessTime()), ZoneId.systemDefault()));
-        hdfsFileStatus.setUpdatedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(status.getModificationTime()), ZoneId.systemDefault()));
-        hdfsFileStatus.setBlockSize(status.getBlockSize());
-        hdfsFileStatus.setReadAccess(checkAccessPermissions(status, FsAction.READ, ugi));
-        hdfsFileStatus.setWriteAccess(checkAccessPermissions(status, FsAction.READ, ugi));
-        hdfsFileStatus.setExecuteAccess(checkAccessPermissions(status, FsAction.READ, ugi));
+        if (fields.contains(HdfsFileStatusField.PATH)) {
+            hdfsFileStatus.setPath(Path.getPathWithoutSchemeAndAuthority(status.getPath()).toString());
+        }
+        if (fields.contains(HdfsFileStatusField.REPLICATION)) {
+            hdfsFileStatus.setReplication(status.getReplication());
+        }
+        if (fields.contains(HdfsFileStatusField.IS_DIRECTORY)) {
+            hdfsFileStatus.setIsDirectory(status.isDirectory());
+        }
+        if (fields.contains(HdfsFileStatusField.LEN)) {
+            hdfsFileStatus.setLen(status.getLen());
+        }
+        if (fields.contains(HdfsFileStatusField.SIZE)) {
+            // 文件夹大小显示为 --
+            if (status.isDirectory()) {
+                hdfsFileStatus.setSize("--");
+            } else {
+                hdfsFileStatus.setSize(getByteToSize(status.getLen()));
+            }
+        }
+        if (fields.contains(HdfsFileStatusField.OWNER)) {
+            hdfsFileStatus.setOwner(status.getOwner());
+        }
+        if (fields.contains(HdfsFileStatusField.GROUP)) {
+            hdfsFileStatus.setGroup(status.getGroup());
+        }
+        if (fields.contains(HdfsFileStatusField.PERMISSION)) {
+            hdfsFileStatus.setPermission(permissionToString(status.getPermission()));
+        }
+        if (fields.contains(HdfsFileStatusField.CREATED_AT)) {
+            hdfsFileStatus.setCreatedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(status.getAccessTime()), ZoneId.systemDefault()));
+        }
+        if (fields.contains(HdfsFileStatusField.UPDATED_AT)) {
+            hdfsFileStatus.setUpdatedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(status.getModificationTime()), ZoneId.systemDefault()));
+        }
+        if (fields.contains(HdfsFileStatusField.BLOCK_SIZE)) {
+            hdfsFileStatus.setBlockSize(status.getBlockSize());
+        }
+        if (access != null && fields.contains(HdfsFileStatusField.ACCESS)) {
+            hdfsFileStatus.setReadAccess(access.implies(FsAction.READ));
+            hdfsFileStatus.setWriteAccess(access.implies(FsAction.WRITE));
+            hdfsFileStatus.setExecuteAccess(access.implies(FsAction.EXECUTE));
+        }
 
         return hdfsFileStatus;
     }
@@ -202,10 +461,13 @@ public class HdfsApi {
     }
 
     public boolean checkAccessPermissions(FileStatus stat, FsAction mode, UserGroupInformation ugi) {
+        if (ugi == accessEvaluator.getUgi()) {
+            return accessEvaluator.check(stat, mode);
+        }
 
         FsPermission perm = stat.getPermission();
         String user = ugi.getShortUserName();
-        List<String> groups = Arrays.asList(ugi.getGroupNames());
+        Set<String> groups = new HashSet<>(Arrays.asList(ugi.getGroupNames()));
         if (user.equals(stat.getOwner())) {
             return perm.getUserAction().implies(mode);
         } else if (groups.contains(stat.getGroup())) {
@@ -217,12 +479,18 @@ public class HdfsApi {
 
     public void uploadFile(final String srcFile, final String destPath, boolean delSrc, boolean overwrite)
             throws IOException, InterruptedException {
-        execute((PrivilegedExceptionAction<Void>) () -> {
+        execute("uploadFile", (PrivilegedExceptionAction<Void>) () -> {
 
             // 源文件路径
             Path srcPath = new Path(srcFile);
-            // 目标文件要存放的目录如果不存在，则创建
-            existDir(destPath, true);
+            // 目标文件要存放的目录如果不存在，则创建；已在 doAs 内，直接查询而不是再嵌套一次 execute
+            if (StringUtils.isNotEmpty(destPath)) {
+                Path destDir = new Path(uri + "/" + destPath);
+                if (lookupStatus(destDir) == null) {
+                    fs.mkdirs(destDir);
+                    invalidate(destDir);
+                }
+            }
             // 目标文件Path
             Path dPath;
             if (StringUtils.isNotBlank(uri)) {
@@ -237,7 +505,12 @@ public class HdfsApi {
                 fs.copyFromLocalFile(delSrc, overwrite, srcPath, dPath);
                 log.info("文件：" + srcPath + ",上传成功！");
             } catch (IOException e) {
+                // 失败必须告知调用方，否则目录上传失败时会悄悄留下不完整的目录树
                 log.error(e.getClass() + "," + e.getMessage());
+                throw e;
+            } finally {
+                // 修改之后再失效，失败时也可能已经写入了部分内容
+                invalidateTree(dPath);
             }
             return null;
         });
@@ -245,24 +518,116 @@ public class HdfsApi {
     }
 
     public HdfsFileStatus uploadFile(InputStream in, final String destPath) throws IOException, InterruptedException {
-        return execute(() -> {
-            // 目标文件Path
-            Path dPath;
-            if (StringUtils.isNotBlank(uri)) {
-                dPath = new Path(uri + "/" + destPath);
-            } else {
-                // 否者 默认上传到根目录下
-                dPath = new Path(uri + "/");
-            }
+        // 目标文件Path
+        Path dPath;
+        if (StringUtils.isNotBlank(uri)) {
+            dPath = new Path(uri + "/" + destPath);
+        } else {
+            // 否者 默认上传到根目录下
+            dPath = new Path(uri + "/");
+        }
+        return uploadFile(in, dPath);
+    }
+
+    /**
+     * 可断点续传的流式上传：数据写入暂存文件并定期记录检查点，中断后（包括进程重启后用同一数据源再次调用）
+     * 从检查点用 append 继续，全部写完后原子地 rename 为目标文件。单次调用内的重试次数由 uploadFile.resumable 的重试策略控制
+     */
+    public HdfsFileStatus uploadFileResumable(ResumableSource source, final String destPath,
+                                              ResumableUploadOptions options) throws IOException, InterruptedException {
+        return new ResumableUploader(this, options).upload(source, resolvePath(destPath));
+    }
+
+    public HdfsFileStatus uploadFileResumable(ResumableSource source, final String destPath)
+            throws IOException, InterruptedException {
+        return uploadFileResumable(source, destPath, ResumableUploadOptions.fromConf(conf));
+    }
+
+    /**
+     * 并行上传本地大文件：按块对齐切分后并发写入分片，再合并为目标文件
+     */
+    public HdfsFileStatus uploadFile(final File srcFile, final String destPath, int parallelism)
+            throws IOException, InterruptedException {
+        return new ParallelUploader(this).upload(srcFile, resolvePath(destPath), parallelism);
+    }
+
+    /**
+     * 并发上传本地目录：文件先写临时文件再 rename，已完成的文件记录在本地清单中，失败后重新执行会从断点继续
+     *
+     * @param manifestFile 清单文件，全部成功后自动删除
+     */
+    public TransferReport uploadDirectory(final File localDir, final String destPath, boolean overwrite,
+                                          int parallelism, File manifestFile, TransferProgressListener listener)
+            throws IOException, InterruptedException {
+        return new DirectoryUploader(this).upload(localDir, resolvePath(destPath), overwrite,
+                Math.max(1, parallelism), manifestFile, listener);
+    }
+
+    public TransferReport uploadDirectory(final File localDir, final String destPath, boolean overwrite)
+            throws IOException, InterruptedException {
+        return uploadDirectory(localDir, destPath, overwrite,
+                conf.getInt(HdfsApiConfigKeys.UPLOAD_DIRECTORY_PARALLELISM_KEY,
+                        HdfsApiConfigKeys.UPLOAD_DIRECTORY_PARALLELISM_DEFAULT),
+                DirectoryUploader.defaultManifest(localDir), null);
+    }
+
+    /**
+     * 增量同步本地目录到 HDFS 目录，只上传新增或变化的文件，可选删除目标中多余的条目；dryRun 时只返回差异计划
+     */
+    public TransferReport sync(final File localDir, final String destPath, SyncOptions options)
+            throws IOException, InterruptedException {
+        return new DirectorySync(this, options).sync(localDir, resolvePath(destPath));
+    }
 
-            OutputStream os = fs.create(dPath);
+    public TransferReport sync(final File localDir, final String destPath) throws IOException, InterruptedException {
+        return sync(localDir, destPath, SyncOptions.fromConf(conf));
+    }
+
+    /**
+     * 配置了 hdfs.api.upload.codec 时压缩上传，目标路径自动加上压缩扩展名
+     */
+    public HdfsFileStatus uploadFile(final File srcFile, final String destPath) throws IOException, InterruptedException {
+        String codec = conf.getTrimmed(HdfsApiConfigKeys.UPLOAD_CODEC_KEY, HdfsApiConfigKeys.UPLOAD_CODEC_DEFAULT);
+        if (StringUtils.isNotEmpty(codec)) {
+            return uploadFileCompressed(srcFile, destPath, codec);
+        }
+        return uploadFile(srcFile, destPath,
+                conf.getInt(HdfsApiConfigKeys.UPLOAD_PARALLELISM_KEY, HdfsApiConfigKeys.UPLOAD_PARALLELISM_DEFAULT));
+    }
+
+    /**
+     * 压缩上传本地文件：gzip、bzip2 按数据块多线程独立压缩，其他格式单线程压缩
+     *
+     * @param codecName 压缩格式名称（如 gzip、bzip2、default）或类名
+     */
+    public HdfsFileStatus uploadFileCompressed(final File srcFile, final String destPath, String codecName,
+                                               int parallelism) throws IOException, InterruptedException {
+        CompressedTransfer transfer = new CompressedTransfer(this);
+        return transfer.upload(srcFile, resolvePath(destPath), transfer.codec(codecName), Math.max(1, parallelism),
+                conf.getInt(HdfsApiConfigKeys.COMPRESS_CHUNK_SIZE_KEY, HdfsApiConfigKeys.COMPRESS_CHUNK_SIZE_DEFAULT));
+    }
+
+    public HdfsFileStatus uploadFileCompressed(final File srcFile, final String destPath, String codecName)
+            throws IOException, InterruptedException {
+        return uploadFileCompressed(srcFile, destPath, codecName,
+                conf.getInt(HdfsApiConfigKeys.COMPRESS_PARALLELISM_KEY, HdfsApiConfigKeys.COMPRESS_PARALLELISM_DEFAULT));
+    }
+
+    /**
+     * 输入流只能消费一次，失败后无法重放，因此该操作不重试
+     */
+    HdfsFileStatus uploadFile(InputStream in, final Path dPath) throws IOException, InterruptedException {
+        return executeOnce("uploadFile.stream", () -> {
             /*
              * in ：输入字节流（从要上传的文件中读取）
              * out：输出字节流（字节输出到目标文件）
-             * 2048：每次写入2048
-             * true：不管成功与否，最后都关闭stream资源
+             * 不管成功与否，最后都关闭stream资源
              */
-            org.apache.hadoop.io.IOUtils.copyBytes(in, os, 2048, true);
+            try (InputStream is = in; OutputStream os = throttle(TransferPriorityEnum.BULK).wrap(fs.create(dPath))) {
+                metrics.bytesWritten("uploadFile", copyEngine.copy(is, os));
+            } finally {
+                invalidate(dPath);
+            }
             log.info(dPath + " 写入成功！");
             return this.getOneFileStatus(dPath);
         });
@@ -270,7 +635,7 @@ public class HdfsApi {
 
     public void downloadFile(final String srcFile, final String destPath) throws IOException, InterruptedException {
 
-        execute((PrivilegedExceptionAction<Void>) () -> {
+        execute("downloadFile", (PrivilegedExceptionAction<Void>) () -> {
             // 源路径
             Path sPath;
             if (StringUtils.isNotBlank(uri)) {
@@ -293,9 +658,60 @@ public class HdfsApi {
         });
     }
 
+    /**
+     * 按块并行下载文件：各块用定位读并发读取，直接写入本地文件的对应位置，verify 为 true 时与 HDFS 校验和比对。
+     * 扩展名对应已知压缩格式且开启了 hdfs.api.decompress.on.read 时改为流式解压下载，本地文件名去掉压缩扩展名。
+     * 启用本地读缓存时从缓存副本复制，副本已与 HDFS 上的文件状态比对过，不再重复校验
+     *
+     * @return 下载得到的本地文件，dest 为已存在的目录时下载到该目录下
+     */
+    public File downloadFile(final String srcFile, final File dest, int parallelism, boolean verify)
+            throws IOException, InterruptedException {
+        Path sPath = resolvePath(srcFile);
+        CompressionCodec codec = readCodec(sPath);
+        if (codec != null) {
+            return new CompressedTransfer(this).download(sPath, codec, dest);
+        }
+        File cached = localCache != null ? localCache.get(this, sPath) : null;
+        if (cached != null) {
+            File target = dest.isDirectory() ? new File(dest, sPath.getName()) : dest;
+            // 与 ParallelDownloader 一样先写临时文件再原子替换，目标文件不会出现复制了一半的内容
+            File tmp = new File(target.getAbsoluteFile().getParentFile(), "." + target.getName() + ".downloading");
+            try {
+                Files.copy(cached.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                return target;
+            } catch (NoSuchFileException e) {
+                // 副本已被并发淘汰，改为直接从 HDFS 下载
+                log.debug("本地缓存副本已被淘汰：" + sPath);
+                Files.deleteIfExists(tmp.toPath());
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(tmp.toPath());
+                throw e;
+            }
+        }
+        return new ParallelDownloader(this).download(sPath, dest, Math.max(1, parallelism), verify);
+    }
+
+    public File downloadFile(final String srcFile, final File dest) throws IOException, InterruptedException {
+        return downloadFile(srcFile, dest,
+                conf.getInt(HdfsApiConfigKeys.DOWNLOAD_PARALLELISM_KEY, HdfsApiConfigKeys.DOWNLOAD_PARALLELISM_DEFAULT),
+                conf.getBoolean(HdfsApiConfigKeys.DOWNLOAD_VERIFY_CHECKSUM_KEY,
+                        HdfsApiConfigKeys.DOWNLOAD_VERIFY_CHECKSUM_DEFAULT));
+    }
+
     public void downloadFile(final String srcFile, HttpServletResponse response) throws IOException, InterruptedException {
+        downloadFile(srcFile, null, response);
+    }
 
-        execute((PrivilegedExceptionAction<Void>) () -> {
+    /**
+     * 支持 Range / If-None-Match / If-Modified-Since 的下载，request 为空时返回整个文件
+     */
+    public void downloadFile(final String srcFile, final HttpServletRequest request, final HttpServletResponse response)
+            throws IOException, InterruptedException {
+
+        execute("downloadFile", (PrivilegedExceptionAction<Void>) () -> {
             // 源路径
             Path sPath;
             if (StringUtils.isNotBlank(uri)) {
@@ -308,26 +724,52 @@ public class HdfsApi {
             String fileName = srcFile.substring(srcFile.lastIndexOf("/") + 1);
             log.debug(fileName);
 
-            response.setContentType(new MimetypesFileTypeMap().getContentType(new File(fileName)));
-            response.setHeader("Content-Disposition",
-                    "attachment;filename=" + URLEncoder.encode(fileName, StandardCharsets.UTF_8));
-
             try {
-                FSDataInputStream is = fs.open(sPath);
-                OutputStream out = response.getOutputStream();
-                long position;
-                while (true) {
-                    byte[] data = is.readNBytes(1024);
-                    if (data == null || data.length <= 0) {
-                        break;
+                // 条件请求只依赖 FileStatus，命中时无需打开文件
+                FileStatus status = fs.getFileStatus(sPath);
+                long length = status.getLen();
+                String etag = HttpByteRanges.etag(status);
+                response.setHeader("Accept-Ranges", "bytes");
+                response.setHeader("ETag", etag);
+                response.setDateHeader("Last-Modified", status.getModificationTime());
+                if (request != null && isNotModified(request, status, etag)) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return null;
+                }
+
+                String contentType = new MimetypesFileTypeMap().getContentType(new File(fileName));
+                response.setHeader("Content-Disposition",
+                        "attachment;filename=" + URLEncoder.encode(fileName, StandardCharsets.UTF_8));
+
+                List<HttpByteRanges.ByteRange> ranges = null;
+                if (request != null && isRangeApplicable(request, status, etag)) {
+                    ranges = HttpByteRanges.parse(request.getHeader("Range"), length);
+                }
+                if (ranges != null && ranges.isEmpty()) {
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    response.setHeader("Content-Range", "bytes */" + length);
+                    return null;
+                }
+
+                // 面向用户的下载按交互式优先级调度，批量任务压满带宽时仍能按权重获得带宽
+                try (FSDataInputStream is = fs.open(sPath);
+                     OutputStream out = throttle(TransferPriorityEnum.INTERACTIVE).wrap(response.getOutputStream())) {
+                    if (ranges == null) {
+                        response.setContentType(contentType);
+                        response.setContentLengthLong(length);
+                        metrics.bytesRead("downloadFile", copyEngine.copy(is, out));
+                    } else if (ranges.size() == 1) {
+                        HttpByteRanges.ByteRange range = ranges.get(0);
+                        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                        response.setContentType(contentType);
+                        response.setHeader("Content-Range", range.contentRange(length));
+                        response.setContentLengthLong(range.length());
+                        metrics.bytesRead("downloadFile", copyEngine.copyRange(is, range.start, range.length(), out));
+                    } else {
+                        writeMultipartRanges(is, ranges, length, contentType, response, out);
                     }
-                    out.write(data);
-                    position = is.getPos();
-                    is.seek(position);
+                    out.flush();
                 }
-                out.flush();
-                is.close();
-                out.close();
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -335,6 +777,62 @@ public class HdfsApi {
         });
     }
 
+    private boolean isNotModified(HttpServletRequest request, FileStatus status, String etag) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return HttpByteRanges.etagMatches(ifNoneMatch, etag, true);
+        }
+        try {
+            long since = request.getDateHeader("If-Modified-Since");
+            // HTTP 日期只精确到秒
+            return since >= 0 && status.getModificationTime() / 1000 <= since / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private boolean isRangeApplicable(HttpServletRequest request, FileStatus status, String etag) {
+        String ifRange = request.getHeader("If-Range");
+        if (StringUtils.isBlank(ifRange)) {
+            return true;
+        }
+        if (ifRange.trim().startsWith("\"") || ifRange.trim().startsWith("W/")) {
+            return HttpByteRanges.etagMatches(ifRange, etag, false);
+        }
+        try {
+            // If-Range 中的日期必须与 Last-Modified 完全一致（精确到秒）
+            long date = request.getDateHeader("If-Range");
+            return date >= 0 && status.getModificationTime() / 1000 == date / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private void writeMultipartRanges(FSDataInputStream is, List<HttpByteRanges.ByteRange> ranges, long length,
+                                      String contentType, HttpServletResponse response, OutputStream out)
+            throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> headers = new ArrayList<>(ranges.size());
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        long contentLength = tail.length;
+        for (HttpByteRanges.ByteRange range : ranges) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Range: " + range.contentRange(length) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            headers.add(header);
+            contentLength += header.length + range.length();
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        for (int i = 0; i < ranges.size(); i++) {
+            HttpByteRanges.ByteRange range = ranges.get(i);
+            out.write(headers.get(i));
+            metrics.bytesRead("downloadFile", copyEngine.copyRange(is, range.start, range.length(), out));
+        }
+        out.write(tail);
+    }
+
     public BlockLocation[] getFileBlockLocations(final String filePath) {
 
         Path path;
@@ -365,7 +863,7 @@ public class HdfsApi {
     }
 
     public boolean rename(final String srcPath, final String dstPath) throws Exception {
-        return execute(() -> {
+        return executeOnce("rename", () -> {
             boolean flag = false;
             try {
 
@@ -383,7 +881,12 @@ public class HdfsApi {
                 if (sPath.getName().equals(dPath.getName())) {
                     flag = true;
                 } else {
-                    flag = fs.rename(sPath, dPath);
+                    try {
+                        flag = fs.rename(sPath, dPath);
+                    } finally {
+                        invalidateTree(sPath);
+                        invalidateTree(dPath);
+                    }
                 }
 
                 log.info(srcPath + " 重命名到 " + dstPath + " 成功！");
@@ -397,19 +900,19 @@ public class HdfsApi {
     }
 
     public boolean exists(final String srcPath) throws IOException, InterruptedException {
-        return execute(() -> {
+        return execute("exists", () -> {
             Path sPath;
             if (StringUtils.isNotBlank(uri)) {
                 sPath = new Path(uri + "/" + srcPath);
             } else {
                 sPath = new Path(srcPath);
             }
-            return fs.exists(sPath);
+            return lookupStatus(sPath) != null;
         });
     }
 
     public boolean existDir(final String dirPath, boolean create) throws IOException, InterruptedException {
-        return execute(() -> {
+        return execute("existDir", () -> {
             boolean flag = false;
             Path dPath;
             if (StringUtils.isEmpty(dirPath)) {
@@ -418,13 +921,14 @@ public class HdfsApi {
                 dPath = new Path(uri + "/" + dirPath);
             }
             try {
-                if (create) {
-                    if (!fs.exists(dPath)) {
-                        fs.mkdirs(dPath);
-                    }
+                FileStatus status = lookupStatus(dPath);
+                if (create && status == null) {
+                    fs.mkdirs(dPath);
+                    invalidate(dPath);
+                    status = lookupStatus(dPath);
                 }
                 // 如果是目录，返回true
-                if (fs.isDirectory(dPath)) {
+                if (status != null && status.isDirectory()) {
                     flag = true;
                 }
             } catch (Exception e) {
@@ -435,16 +939,58 @@ public class HdfsApi {
 
     }
 
+    /**
+     * 打开文件读取；启用本地读缓存时返回内存映射的本地副本，副本与 HDFS 上的文件状态比对一致后才会使用
+     */
     public FSDataInputStream open(final String path) throws IOException, InterruptedException {
-        return execute(() -> fs.open(new Path(uri + "/" + path)));
+        if (localCache != null) {
+            FSDataInputStream cached = localCache.open(this, resolvePath(path));
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return execute("open", () -> fs.open(new Path(uri + "/" + path)));
+    }
+
+    /**
+     * 一次读取同一文件中的多个区间：相近的区间合并后并发定位读，返回与 ranges 顺序一致的只读切片
+     *
+     * @param allocate 按合并后的长度分配缓冲区，可传入池化或直接内存的分配方式
+     */
+    public List<ByteBuffer> readRanges(final String path, List<FileRange> ranges, IntFunction<ByteBuffer> allocate)
+            throws IOException, InterruptedException {
+        return getVectoredReader().read(fs.makeQualified(resolvePath(path)), ranges, allocate);
+    }
+
+    public List<ByteBuffer> readRanges(final String path, List<FileRange> ranges)
+            throws IOException, InterruptedException {
+        return readRanges(path, ranges, ByteBuffer::allocate);
+    }
+
+    private VectoredReader getVectoredReader() {
+        VectoredReader reader = vectoredReader;
+        if (reader == null) {
+            synchronized (this) {
+                reader = vectoredReader;
+                if (reader == null) {
+                    reader = new VectoredReader(this);
+                    vectoredReader = reader;
+                }
+            }
+        }
+        return reader;
     }
 
     public boolean chmod(final String path, final String permissions) throws IOException, InterruptedException {
-        return execute(() -> {
+        return execute("chmod", () -> {
             try {
                 String nPath = uri + "/" + path;
                 FsPermission fp = FsPermission.valueOf(permissions);
-                fs.setPermission(new Path(nPath), fp);
+                try {
+                    fs.setPermission(new Path(nPath), fp);
+                } finally {
+                    invalidate(new Path(nPath));
+                }
                 log.info("修改文件/目录：" + nPath + "的权限为" + fp.toString() + "，成功！");
             } catch (Exception ex) {
                 return false;
@@ -454,21 +1000,25 @@ public class HdfsApi {
     }
 
     public void copy(final String src, final String dest) throws Exception {
-
-        boolean result = execute(() -> {
-            // 是否删除源文件 == false，不删除源文件
-            return FileUtil.copy(fs, new Path(uri + "/" + src), fs, new Path(uri + "/" + dest), false, conf);
-        });
-
-        if (!result) {
-            throw new Exception("HDFS010 无法将文件从：" + src + " 复制到：" + dest);
+        TransferReport report = copy(src, dest, CopyOptions.fromConf(conf));
+        if (!report.isSuccess()) {
+            throw new Exception("HDFS010 无法将文件从：" + src + " 复制到：" + dest + "，失败文件：" + report.getFailures());
         }
     }
 
+    /**
+     * 并行复制文件或目录树。单个文件复制失败不会中断整体复制，失败的文件记录在返回结果中
+     */
+    public TransferReport copy(final String src, final String dest, CopyOptions options)
+            throws IOException, InterruptedException {
+        return new TreeCopier(this, options).copy(resolvePath(src), resolvePath(dest));
+    }
+
     public void move(final String src, final String dest) throws Exception {
-        boolean result = execute(() -> {
+        boolean result = executeOnce("move", () -> {
             /**
-             * 是否删除源文件 == true，删除源文件 copy原理: 1.先复制字节 2.然后递归删除源文件或目录
+             * 同一文件系统内只做元数据层面的 rename，耗时与数据量无关；
+             * 跨文件系统时才复制：1.先复制字节 2.然后递归删除源文件或目录
              */
             Path sPath;
             Path dPath;
@@ -482,19 +1032,17 @@ public class HdfsApi {
                 sPath = new Path(srcPath);
                 dPath = new Path(dest);
             }
-            if (!existFile(src)) {
+            if (StringUtils.isEmpty(src) || lookupStatus(sPath) == null) {
                 log.info(srcPath + "不存在，本次移动操作终止");
                 return false;
             }
 
-            // Move to same path, so can not delete the srcPath
-            int index = src.lastIndexOf("/");
-            Boolean deleteSource = true;
-            if (src.substring(0, index).equals(dest)) {
-                deleteSource = false;
+            try {
+                return moveOrRename(sPath, dPath);
+            } finally {
+                invalidateTree(sPath);
+                invalidateTree(dPath);
             }
-            boolean copy = FileUtil.copy(fs, sPath, fs, dPath, deleteSource, conf);
-            return copy;
         });
 
         if (!result) {
@@ -503,8 +1051,73 @@ public class HdfsApi {
 
     }
 
+    /**
+     * 与 FileUtil.copy 的语义保持一致：目标是已存在的目录时移动到该目录下，已存在的文件会被覆盖
+     */
+    private boolean moveOrRename(Path sPath, Path dPath) throws IOException {
+        Path target = dPath;
+        FileStatus dstStatus = lookupStatus(dPath);
+        if (dstStatus != null && dstStatus.isDirectory()) {
+            target = new Path(dPath, sPath.getName());
+        }
+        // Move to same path, so can not delete the srcPath
+        if (fs.makeQualified(target).equals(fs.makeQualified(sPath))) {
+            return true;
+        }
+
+        if (sameFileSystem(sPath, target)) {
+            FileStatus targetStatus = target == dPath ? dstStatus : lookupStatus(target);
+            // 目录移动到已存在的目录上需要合并内容，rename 无法做到，只能复制
+            if (targetStatus == null || !targetStatus.isDirectory()) {
+                rename(sPath, target, Options.Rename.OVERWRITE);
+                log.info(sPath + " 重命名到 " + target + " 成功！");
+                return true;
+            }
+        }
+        FileSystem dstFs = target.getFileSystem(conf);
+        return FileUtil.copy(fs, sPath, dstFs, dPath, true, conf);
+    }
+
+    /**
+     * 带 Rename 选项的 rename，必须在 execute 的 doAs 中调用。HDFS 直接使用本实例的 DistributedFileSystem，
+     * 以当前用户执行且不会额外创建 DFSClient；其它文件系统使用本实例唯一的 FileContext
+     */
+    void rename(Path src, Path dst, Options.Rename option) throws IOException {
+        if (fs instanceof DistributedFileSystem) {
+            ((DistributedFileSystem) fs).rename(src, dst, option);
+        } else {
+            fileContext().rename(src, dst, option);
+        }
+    }
+
+    private FileContext fileContext() throws IOException {
+        FileContext fc = fileContext;
+        if (fc == null) {
+            synchronized (this) {
+                if (fileContext == null) {
+                    // FileContext 记录创建时的当前用户，因此只在 doAs 中创建
+                    fileContext = FileContext.getFileContext(fs.getUri(), conf);
+                }
+                fc = fileContext;
+            }
+        }
+        return fc;
+    }
+
+    private boolean sameFileSystem(Path a, Path b) {
+        URI fsUri = fs.getUri();
+        return belongsTo(a.toUri(), fsUri) && belongsTo(b.toUri(), fsUri);
+    }
+
+    private static boolean belongsTo(URI pathUri, URI fsUri) {
+        boolean sameScheme = pathUri.getScheme() == null || pathUri.getScheme().equalsIgnoreCase(fsUri.getScheme());
+        boolean sameAuthority = pathUri.getAuthority() == null
+                || pathUri.getAuthority().equalsIgnoreCase(fsUri.getAuthority());
+        return sameScheme && sameAuthority;
+    }
+
     public boolean existFile(final String filePath) throws IOException, InterruptedException {
-        return execute(() -> {
+        return execute("existFile", () -> {
             boolean flag = false;
             if (StringUtils.isEmpty(filePath)) {
                 return flag;
@@ -517,7 +1130,7 @@ public class HdfsApi {
                     path = new Path(filePath);
                 }
                 // 如果文件存在，返回true
-                if (fs.exists(path)) {
+                if (lookupStatus(path) != null) {
                     flag = true;
                 }
             } catch (Exception e) {
@@ -529,12 +1142,12 @@ public class HdfsApi {
     }
 
     public Path getHomeDir() throws Exception {
-        return execute(() -> fs.getHomeDirectory());
+        return execute("getHomeDir", () -> fs.getHomeDirectory());
     }
 
 
     public boolean trashEnabled() throws Exception {
-        return execute(() -> {
+        return execute("trashEnabled", () -> {
             Trash trash = new Trash(fs, conf);
             log.info("Whether the recycle bin is enabled: " + trash.isEnabled());
             return trash.isEnabled();
@@ -543,7 +1156,7 @@ public class HdfsApi {
 
 
     public Path getTrashDir() throws Exception {
-        return execute(() -> {
+        return execute("getTrashDir", () -> {
             TrashPolicy trashPolicy = TrashPolicy.getInstance(conf, fs, fs.getHomeDirectory());
             return trashPolicy.getCurrentTrashDir().getParent();
         });
@@ -558,6 +1171,147 @@ public class HdfsApi {
     }
 
 
+    /**
+     * 查询文件状态，启用元数据缓存时优先从缓存读取；路径不存在时返回 null
+     */
+    FileStatus lookupStatus(Path path) throws IOException {
+        if (metadataCache == null) {
+            return loadStatus(path);
+        }
+        return metadataCache.get(fs.makeQualified(path), this::loadStatus);
+    }
+
+    private FileStatus loadStatus(Path path) throws IOException {
+        try {
+            return fs.getFileStatus(path);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    void invalidate(Path path) {
+        if (metadataCache != null) {
+            metadataCache.invalidate(fs.makeQualified(path));
+        }
+        if (localCache != null) {
+            localCache.invalidate(fs.makeQualified(path));
+        }
+        invalidateStreams(path);
+    }
+
+    void invalidateTree(Path path) {
+        if (metadataCache != null) {
+            metadataCache.invalidateTree(fs.makeQualified(path));
+        }
+        if (localCache != null) {
+            localCache.invalidateTree(fs.makeQualified(path));
+        }
+        invalidateStreams(path);
+    }
+
+    private void invalidateStreams(Path path) {
+        VectoredReader reader = vectoredReader;
+        if (reader != null) {
+            reader.invalidate(fs.makeQualified(path));
+        }
+    }
+
+    /**
+     * 判断当前用户对文件访问权限的评估器，缓存了用户所属的组
+     */
+    public AccessEvaluator getAccessEvaluator() {
+        return accessEvaluator;
+    }
+
+    /**
+     * 元数据缓存，未启用时返回 null，可用于查看命中率等统计
+     */
+    public MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    /**
+     * 进程内共用的传输带宽调度器，可在运行时调整全局、用户限速和优先级权重
+     */
+    public TransferScheduler getTransferScheduler() {
+        return transferScheduler;
+    }
+
+    /**
+     * 当前用户按指定优先级申请传输带宽的句柄
+     */
+    TransferThrottle throttle(TransferPriorityEnum priority) {
+        return transferScheduler.throttle(ugi.getShortUserName(), priority);
+    }
+
+    /**
+     * 本地读缓存，未配置 hdfs.api.local.cache.dir 时返回 null
+     */
+    public LocalFileCache getLocalCache() {
+        return localCache;
+    }
+
+    /**
+     * 进程内所有 HdfsApi 共用的运行指标，同时通过 JMX 和 Hadoop metrics2 暴露
+     */
+    public HdfsApiMetrics getMetrics() {
+        return metrics;
+    }
+
+    public HdfsCopyEngine getCopyEngine() {
+        return copyEngine;
+    }
+
+    Configuration getConf() {
+        return conf;
+    }
+
+    CompressionCodecFactory getCodecFactory() {
+        CompressionCodecFactory factory = codecFactory;
+        if (factory == null) {
+            factory = new CompressionCodecFactory(conf);
+            codecFactory = factory;
+        }
+        return factory;
+    }
+
+    /**
+     * 开启了按扩展名自动解压时返回文件对应的压缩格式，否则返回 null
+     */
+    CompressionCodec readCodec(Path path) {
+        if (!conf.getBoolean(HdfsApiConfigKeys.DECOMPRESS_ON_READ_KEY, HdfsApiConfigKeys.DECOMPRESS_ON_READ_DEFAULT)) {
+            return null;
+        }
+        return getCodecFactory().getCodec(path);
+    }
+
+    /**
+     * 打开文件，压缩文件返回解压后的流
+     */
+    InputStream openForRead(Path path) throws IOException {
+        FSDataInputStream in = fs.open(path);
+        CompressionCodec codec = readCodec(path);
+        if (codec == null) {
+            return in;
+        }
+        try {
+            return codec.createInputStream(in);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 将相对路径解析为当前文件系统下的 Path
+     */
+    Path resolvePath(final String path) {
+        if (StringUtils.isNotBlank(uri)) {
+            return new Path(uri + "/" + path);
+        }
+        return new Path(path);
+    }
+
     public FileSystem getFs() {
         return fs;
     }
@@ -577,7 +1331,7 @@ public class HdfsApi {
 
 
     public boolean moveToTrash(final String path) throws IOException, InterruptedException {
-        return execute(new PrivilegedExceptionAction<Boolean>() {
+        return executeOnce("moveToTrash", new PrivilegedExceptionAction<Boolean>() {
             public Boolean run() throws IOException, InterruptedException {
                 /*
                  * 注意这里有个"bug"，如果使用方法Trash.moveToAppropriateTrash(fs, new
@@ -587,7 +1341,11 @@ public class HdfsApi {
                  */
 
                 Trash trash = new Trash(fs, conf);
-                return trash.moveToTrash(new Path(path));
+                try {
+                    return trash.moveToTrash(new Path(path));
+                } finally {
+                    invalidateTree(new Path(path));
+                }
             }
         });
     }
@@ -595,23 +1353,31 @@ public class HdfsApi {
 
     public boolean restoreFromTrash(final String srcPath, final String destPath)
             throws IOException, InterruptedException {
-        return execute(new PrivilegedExceptionAction<Boolean>() {
-            @Override
-            public Boolean run() throws Exception {
-                /*
-                 * 把源文件从回收站里面移除来
-                 */
-                move(srcPath, destPath);
-                return true;
-            }
-
-        });
+        /*
+         * 把源文件从回收站里面移除来；move 自身已经在 execute 中执行，这里不再嵌套
+         */
+        try {
+            move(srcPath, destPath);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return true;
 
     }
 
 
+    /**
+     * 按原始路径批量从回收站恢复：一次性列出所有检查点，按父目录批量查找，
+     * 每个路径取最新检查点中的版本 rename 回原位置
+     */
+    public BatchResult restoreFromTrash(Collection<String> originalPaths) throws Exception {
+        return batch().restoreFromTrash(getTrashDir(), originalPaths);
+    }
+
     public boolean emptyTrash() throws Exception {
-        return execute(() -> {
+        return execute("emptyTrash", () -> {
 
             // 第一种方法：使用递归删除目录，暴力清空
             // rmdir(getTrashDirPath(), true, true);
@@ -619,6 +1385,9 @@ public class HdfsApi {
             // 第二种方法：使用expunge方法，删除掉旧的检查点
             Trash tr = new Trash(fs, conf);
             tr.expunge();
+            if (metadataCache != null) {
+                metadataCache.clear();
+            }
             log.info("垃圾清理完成！");
             return true;
         });
@@ -627,11 +1396,15 @@ public class HdfsApi {
 
     public void putStringToFile(final String filePath, final String content) throws ReportBadRequestException {
         try {
-            execute((PrivilegedExceptionAction<Void>) () -> {
-                // 创建一个文件，并拿到文件的FS数据输出流，便于写入字节
-                final FSDataOutputStream stream = createFile(filePath, true);
-                stream.write(content.getBytes());
-                stream.close();
+            execute("putStringToFile", (PrivilegedExceptionAction<Void>) () -> {
+                // 覆盖写入整个内容，重试是安全的；已在 doAs 内，直接调用 fs 而不是嵌套 createFile 的 execute
+                Path dPath = new Path(uri + "/" + filePath);
+                try (FSDataOutputStream stream = fs.create(dPath, true)) {
+                    metrics.bytesWritten("putStringToFile",
+                            copyEngine.writeString(content, Charset.defaultCharset(), stream));
+                } finally {
+                    invalidate(dPath);
+                }
                 return null;
             }, true);
         } catch (IOException e) {
@@ -644,13 +1417,17 @@ public class HdfsApi {
 
     public void appendStringToFile(final String filePath, final String content) throws ReportBadRequestException {
         try {
-            execute((PrivilegedExceptionAction<Void>) () -> {
-                // 创建一个文件，并拿到文件的FS数据输出流，便于写入字节
-                final FSDataOutputStream stream = appendFile(filePath);
-                stream.write(content.getBytes());
-                stream.close();
+            executeOnce("appendStringToFile", (PrivilegedExceptionAction<Void>) () -> {
+                // 追加不是幂等的，失败后重试会重复写入内容，因此不重试
+                Path dPath = new Path(uri + "/" + filePath);
+                try (FSDataOutputStream stream = fs.append(dPath)) {
+                    metrics.bytesWritten("appendStringToFile",
+                            copyEngine.writeString(content, Charset.defaultCharset(), stream));
+                } finally {
+                    invalidate(dPath);
+                }
                 return null;
-            }, true);
+            });
         } catch (IOException e) {
             throw new ReportBadRequestException("HDFS020 Could not append file " + filePath, e);
         } catch (InterruptedException e) {
@@ -659,62 +1436,151 @@ public class HdfsApi {
     }
 
     public String readFileToString(final String filePath) throws ReportBadRequestException {
-        FSDataInputStream stream;
-        try {
-            // 打开一个文件，获得FS数据输入流，便于读取输出
-            stream = open(filePath);
-            return IOUtils.toString(stream);
+        return readFileToString(filePath, Charset.defaultCharset());
+    }
+
+    /**
+     * 把整个文件读入内存，只适合小文件；大文件使用 readRecords 或 collectRecords
+     */
+    public String readFileToString(final String filePath, Charset charset) throws ReportBadRequestException {
+        // 打开一个文件，获得FS数据输入流，便于读取输出
+        try (FSDataInputStream stream = open(filePath)) {
+            return IOUtils.toString(stream, charset);
         } catch (IOException e) {
             throw new ReportBadRequestException("HDFS060 Could not read file " + filePath, e);
         } catch (InterruptedException e) {
             throw new ReportBadRequestException("HDFS061 Could not read file " + filePath, e);
         }
+    }
 
+    /**
+     * 按分隔符流式读取记录，压缩文件按扩展名自动解压；使用完毕或提前放弃时必须关闭
+     */
+    public CloseableRemoteIterator<String> readRecords(final String path, final RecordReadOptions options)
+            throws IOException, InterruptedException {
+        final Path sPath = resolvePath(path);
+        return execute("readRecords", () -> new HdfsRecordReader(openForRead(sPath), options,
+                copyEngine.getBufferSize(), 0, Long.MAX_VALUE, throttle(TransferPriorityEnum.BULK)));
     }
 
-    private <T> T execute(PrivilegedExceptionAction<T> action) throws IOException, InterruptedException {
-        return execute(action, false);
+    public CloseableRemoteIterator<String> readRecords(final String path, Charset charset)
+            throws IOException, InterruptedException {
+        RecordReadOptions options = RecordReadOptions.fromConf(conf);
+        options.setCharset(charset);
+        return readRecords(path, options);
     }
 
-    private <T> T execute(PrivilegedExceptionAction<T> action, boolean alwaysRetry)
+    /**
+     * 按块边界切分文件并发处理记录：每个分片由 supplier 创建独立的结果，accumulator 逐条累加，
+     * 最后按分片顺序用 combiner 合并。accumulator 会在多个线程中调用，但同一个结果只会被一个线程访问。
+     * 压缩文件无法切分，解压后作为一个分片处理
+     */
+    public <A> A collectRecords(final String path, RecordReadOptions options, Supplier<A> supplier,
+                                BiConsumer<A, String> accumulator, BinaryOperator<A> combiner)
             throws IOException, InterruptedException {
+        return new RecordSplitProcessor(this, options).collect(resolvePath(path), supplier, accumulator, combiner);
+    }
 
-        T result = null;
+    <T> T execute(PrivilegedExceptionAction<T> action) throws IOException, InterruptedException {
+        return execute(DEFAULT_OPERATION, action, false);
+    }
+
+    <T> T execute(PrivilegedExceptionAction<T> action, boolean alwaysRetry)
+            throws IOException, InterruptedException {
+        return execute(DEFAULT_OPERATION, action, alwaysRetry);
+    }
+
+    <T> T execute(String operation, PrivilegedExceptionAction<T> action) throws IOException, InterruptedException {
+        return execute(operation, action, false);
+    }
+
+    /**
+     * 以当前用户身份执行 action，失败时按该操作的重试策略决定是否重试。
+     * alwaysRetry 为 true 时任何 IOException 都可重试（仍受最大次数和重试预算限制）
+     */
+    <T> T execute(String operation, PrivilegedExceptionAction<T> action, boolean alwaysRetry)
+            throws IOException, InterruptedException {
+        return execute(operation, action, alwaysRetry, true);
+    }
+
+    /**
+     * 执行非幂等操作：重试会重复追加内容、重复消费已读过的输入流，或者在 rename、删除已生效但响应丢失后再次执行，
+     * 报告假失败甚至作用到错误的路径上。默认不重试，仍可通过 setRetryPolicy(operation, policy) 单独指定
+     */
+    <T> T executeOnce(String operation, PrivilegedExceptionAction<T> action) throws IOException, InterruptedException {
+        return execute(operation, action, false, false);
+    }
+
+    private <T> T execute(String operation, PrivilegedExceptionAction<T> action, boolean alwaysRetry, boolean idempotent)
+            throws IOException, InterruptedException {
+
+        HdfsRetryPolicy policy = retryPolicyFor(operation, idempotent);
+        policy.onCall(operation);
+        HdfsApiMetrics.OperationMetrics operationMetrics = metrics.operation(operation);
+        long start = operationMetrics.begin();
 
         /*
          * 由于HDFS-1058，这里采用了重试策略。HDFS可以随机抛出异常 IOException关于从DN中检索块(如果并发读写)
-         * 在特定文件上执行(参见HDFS-1058的详细信息)。
+         * 在特定文件上执行(参见HDFS-1058的详细信息)。NameNode 主备切换、超时等异常同样可以重试。
          */
         int tryNumber = 0;
-        boolean succeeded = false;
-        do {
-            tryNumber += 1;
-            try {
-                // doAs中执行的操作都是以proxyUser用户的身份执行
-                result = ugi.doAs(action);
-                succeeded = true;
-            } catch (IOException ex) {
-                if (!Strings.isNullOrEmpty(ex.getMessage()) && !ex.getMessage().contains("无法获取块的长度：")) {
-                    throw ex;
-                }
-
-                // 尝试超过>=3次，抛出异常，do while 退出
-                if (tryNumber >= 3) {
-                    throw ex;
+        try {
+            while (true) {
+                tryNumber += 1;
+                try {
+                    // doAs中执行的操作都是以proxyUser用户的身份执行
+                    return ugi.doAs(action);
+                } catch (IOException ex) {
+                    long delay = policy.nextDelayMillis(operation, ex, tryNumber, alwaysRetry);
+                    if (delay < 0) {
+                        operationMetrics.error(ex);
+                        throw ex;
+                    }
+                    operationMetrics.retry(ex);
+                    log.warn("HDFS操作 " + operation + " 失败，" + delay + "ms 后再次尝试... 尝试 #" + (tryNumber + 1)
+                            + "：" + ex.getClass().getSimpleName() + "," + ex.getMessage());
+                    Thread.sleep(delay);
                 }
-                log.error("HDFS抛出'IOException:无法获得块长度'的异常. " + "再次尝试... 尝试 #" + (tryNumber + 1));
-                log.error("再次尝试: " + ex.getMessage(), ex);
-                Thread.sleep(1000); // 1s后再试
             }
-        } while (!succeeded);
-        return result;
+        } catch (RuntimeException | InterruptedException ex) {
+            operationMetrics.error(ex);
+            throw ex;
+        } finally {
+            operationMetrics.end(start);
+        }
+    }
+
+    private HdfsRetryPolicy retryPolicyFor(String operation, boolean idempotent) {
+        HdfsRetryPolicy policy = operationRetryPolicies.get(operation);
+        if (policy != null) {
+            return policy;
+        }
+        return idempotent ? retryPolicy : HdfsRetryPolicy.NEVER;
+    }
+
+    /**
+     * 设置所有操作默认使用的重试策略，通过 executeOnce 执行的非幂等操作仍然不重试
+     */
+    public void setRetryPolicy(HdfsRetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
     }
 
-    private String getByteToSize(long size) {
+    /**
+     * 为单个操作（方法名，如 "rename"、"uploadFile"）设置重试策略，传入 null 表示恢复默认（非幂等操作恢复为不重试）
+     */
+    public void setRetryPolicy(String operation, HdfsRetryPolicy retryPolicy) {
+        if (retryPolicy == null) {
+            operationRetryPolicies.remove(operation);
+        } else {
+            operationRetryPolicies.put(operation, retryPolicy);
+        }
+    }
+
+    static String getByteToSize(long size) {
 
         StringBuilder bytes = new StringBuilder();
         // 保留两位有效数字
-        DecimalFormat format = new DecimalFormat("###.00");
+        DecimalFormat format = SIZE_FORMAT.get();
         if (size >= 1024 * 1024 * 1024) {
             double i = (size / (1024.0 * 1024.0 * 1024.0));
             bytes.append(format.format(i)).append("GiB");
@@ -734,8 +1600,47 @@ public class HdfsApi {
         return bytes.toString();
     }
 
+    @Override
     public void close() throws IOException {
-        fs.close();
+        for (HdfsAppender appender : new ArrayList<>(appenders.values())) {
+            try {
+                appender.close();
+            } catch (IOException e) {
+                log.error("关闭追加写入器 " + appender.getPath() + " 失败：" + e.getMessage());
+            }
+        }
+        VectoredReader reader = vectoredReader;
+        if (reader != null) {
+            reader.close();
+        }
+        // FileContext 只用于非 HDFS 文件系统，其 AbstractFileSystem 不持有连接，释放引用即可
+        fileContext = null;
+        if (releaser != null) {
+            releaser.close();
+        } else if (ownsUgi) {
+            // 缓存键包含 ugi，本实例创建的 ugi 不会被其它调用方共用
+            FileSystem.closeAllForUGI(ugi);
+        }
+        // 使用当前登录用户时 fs 是进程内共用的缓存实例，不能关闭
+    }
+
+    /**
+     * 批量元数据操作，并发数和速率取自配置
+     */
+    public BatchOperations batch() {
+        return batch(conf.getInt(HdfsApiConfigKeys.BATCH_PARALLELISM_KEY, HdfsApiConfigKeys.BATCH_PARALLELISM_DEFAULT),
+                conf.getDouble(HdfsApiConfigKeys.BATCH_OPS_PER_SECOND_KEY, HdfsApiConfigKeys.BATCH_OPS_PER_SECOND_DEFAULT));
+    }
+
+    /**
+     * @param opsPerSecond 每秒最多发起的调用数，小于等于0表示不限速
+     */
+    public BatchOperations batch(int parallelism, double opsPerSecond) {
+        return new BatchOperations(this, parallelism, opsPerSecond);
+    }
+
+    public UserGroupInformation getUgi() {
+        return ugi;
     }
 
 
@@ -757,7 +1662,7 @@ public class HdfsApi {
         return fs.listStatus(paths);
     }
 
-    private FsAction getFsAction(HdfsPermissionEnum action) {
+    FsAction getFsAction(HdfsPermissionEnum action) {
         FsAction fsAction;
 //        PermissionHDFS action = PermissionHDFS.valueOf(key);
         if (action.equals(ALL)) {
@@ -787,19 +1692,24 @@ public class HdfsApi {
         FsAction u = FsAction.ALL;
         FsAction g = FsAction.ALL;
         FsAction o = FsAction.ALL;
-        return fs.mkdirs(paths, new FsPermission(u, g, o, false));
+        try {
+            return fs.mkdirs(paths, new FsPermission(u, g, o, false));
+        } finally {
+            invalidate(paths);
+        }
 //        return fs.mkdirs(paths);
     }
 
     public boolean isDir(String path) throws IOException {
         Path paths = new Path(uri + "/" + path);
-        return fs.exists(paths);
+        return lookupStatus(paths) != null;
     }
 
     public FsPermission updatePermission(String path, HdfsPermissionEnum owner, HdfsPermissionEnum group, HdfsPermissionEnum other, boolean sb) throws IOException {
         Path paths = new Path(uri + "/" + path);
         FsPermission permission = new FsPermission(this.getFsAction(owner), this.getFsAction(group), this.getFsAction(other), sb);
         fs.setPermission(paths, permission);
+        invalidate(paths);
         FileStatus fileStatus = fs.getFileStatus(paths);
         return fileStatus.getPermission();
     }
@@ -807,6 +1717,7 @@ public class HdfsApi {
     public FsPermission updateOwner(String path, String username, String group) throws IOException {
         Path paths = new Path(uri + "/" + path);
         fs.setOwner(paths, username, group);
+        invalidate(paths);
         FileStatus fileStatus = fs.getFileStatus(paths);
         return fileStatus.getPermission();
     }
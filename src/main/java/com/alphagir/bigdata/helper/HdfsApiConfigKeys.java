@@ -0,0 +1,247 @@
+package com.alphagir.bigdata.helper;
+
+/**
+ * HdfsApi 可通过 Configuration 调整的参数
+ */
+public final class HdfsApiConfigKeys {
+
+    private HdfsApiConfigKeys() {
+    }
+
+    /** 并行上传单个大文件时的并发数 */
+    public static final String UPLOAD_PARALLELISM_KEY = "hdfs.api.upload.parallelism";
+    public static final int UPLOAD_PARALLELISM_DEFAULT = 4;
+
+    /** 上传本地目录时同时上传的文件数 */
+    public static final String UPLOAD_DIRECTORY_PARALLELISM_KEY = "hdfs.api.upload.directory.parallelism";
+    public static final int UPLOAD_DIRECTORY_PARALLELISM_DEFAULT = 16;
+
+    /** 同步本地目录时同时比较和上传的文件数 */
+    public static final String SYNC_PARALLELISM_KEY = "hdfs.api.sync.parallelism";
+    public static final int SYNC_PARALLELISM_DEFAULT = 16;
+
+    /** 同步本地目录时，修改时间不同的文件是否再比较校验和 */
+    public static final String SYNC_COMPARE_CHECKSUM_KEY = "hdfs.api.sync.compare.checksum";
+    public static final boolean SYNC_COMPARE_CHECKSUM_DEFAULT = false;
+
+    /** 按块并行下载单个文件时的并发数 */
+    public static final String DOWNLOAD_PARALLELISM_KEY = "hdfs.api.download.parallelism";
+    public static final int DOWNLOAD_PARALLELISM_DEFAULT = 4;
+
+    /** 并行下载完成后是否与 HDFS 的文件校验和比对 */
+    public static final String DOWNLOAD_VERIFY_CHECKSUM_KEY = "hdfs.api.download.verify.checksum";
+    public static final boolean DOWNLOAD_VERIFY_CHECKSUM_DEFAULT = true;
+
+    /** readRanges 合并相邻区间时允许的最大间隔（字节） */
+    public static final String READ_RANGES_MAX_GAP_KEY = "hdfs.api.read.ranges.max.gap";
+    public static final int READ_RANGES_MAX_GAP_DEFAULT = 64 * 1024;
+
+    /** readRanges 合并后单次读取的最大长度（字节） */
+    public static final String READ_RANGES_MAX_MERGED_SIZE_KEY = "hdfs.api.read.ranges.max.merged.size";
+    public static final int READ_RANGES_MAX_MERGED_SIZE_DEFAULT = 8 * 1024 * 1024;
+
+    /** readRanges 并发读取的线程数 */
+    public static final String READ_RANGES_PARALLELISM_KEY = "hdfs.api.read.ranges.parallelism";
+    public static final int READ_RANGES_PARALLELISM_DEFAULT = 8;
+
+    /** readRanges 最多缓存的已打开文件数 */
+    public static final String READ_RANGES_STREAM_CACHE_SIZE_KEY = "hdfs.api.read.ranges.stream.cache.size";
+    public static final int READ_RANGES_STREAM_CACHE_SIZE_DEFAULT = 16;
+
+    /** 按记录读取时单条记录的最大长度（字节），超过的记录被跳过 */
+    public static final String READ_MAX_RECORD_LENGTH_KEY = "hdfs.api.read.max.record.length";
+    public static final int READ_MAX_RECORD_LENGTH_DEFAULT = 64 * 1024 * 1024;
+
+    /** 按块切分后并行处理记录时同时处理的分片数 */
+    public static final String READ_SPLIT_PARALLELISM_KEY = "hdfs.api.read.split.parallelism";
+    public static final int READ_SPLIT_PARALLELISM_DEFAULT = 4;
+
+    /** 追加写入器写出记录使用的编码 */
+    public static final String APPENDER_CHARSET_KEY = "hdfs.api.appender.charset";
+    public static final String APPENDER_CHARSET_DEFAULT = "UTF-8";
+
+    /** 追加写入器等待写入的最大记录数 */
+    public static final String APPENDER_QUEUE_CAPACITY_KEY = "hdfs.api.appender.queue.capacity";
+    public static final int APPENDER_QUEUE_CAPACITY_DEFAULT = 65536;
+
+    /** 追加写入器写线程单次最多取出的记录数 */
+    public static final String APPENDER_MAX_BATCH_RECORDS_KEY = "hdfs.api.appender.max.batch.records";
+    public static final int APPENDER_MAX_BATCH_RECORDS_DEFAULT = 4096;
+
+    /** 追加写入器未刷新的字节数达到该值时刷新 */
+    public static final String APPENDER_FLUSH_BYTES_KEY = "hdfs.api.appender.flush.bytes";
+    public static final long APPENDER_FLUSH_BYTES_DEFAULT = 1024L * 1024;
+
+    /** 追加写入器最早一条未刷新的记录最多等待多久刷新（毫秒） */
+    public static final String APPENDER_FLUSH_INTERVAL_MS_KEY = "hdfs.api.appender.flush.interval.ms";
+    public static final long APPENDER_FLUSH_INTERVAL_MS_DEFAULT = 1000L;
+
+    /** 追加写入器刷新时是否使用 hsync */
+    public static final String APPENDER_SYNC_KEY = "hdfs.api.appender.sync";
+    public static final boolean APPENDER_SYNC_DEFAULT = false;
+
+    /** 追加写入器滚动文件的大小（字节），小于等于0表示不滚动 */
+    public static final String APPENDER_ROLL_BYTES_KEY = "hdfs.api.appender.roll.bytes";
+    public static final long APPENDER_ROLL_BYTES_DEFAULT = 0L;
+
+    /** 追加写入器打开文件时租约被占用，是否收回租约；只有调用方保证没有其它写入者时才能开启 */
+    public static final String APPENDER_RECOVER_LEASE_KEY = "hdfs.api.appender.recover.lease";
+    public static final boolean APPENDER_RECOVER_LEASE_DEFAULT = false;
+
+    /** 追加写入器等待租约恢复的最长时间（毫秒） */
+    public static final String APPENDER_LEASE_RECOVERY_TIMEOUT_MS_KEY = "hdfs.api.appender.lease.recovery.timeout.ms";
+    public static final long APPENDER_LEASE_RECOVERY_TIMEOUT_MS_DEFAULT = 60000L;
+
+    /** 断点续传时每写入多少字节记录一次检查点 */
+    public static final String RESUMABLE_CHECKPOINT_BYTES_KEY = "hdfs.api.resumable.checkpoint.bytes";
+    public static final long RESUMABLE_CHECKPOINT_BYTES_DEFAULT = 64L * 1024 * 1024;
+
+    /** 断点续传记录检查点前是否用 hsync 落盘 */
+    public static final String RESUMABLE_SYNC_KEY = "hdfs.api.resumable.sync";
+    public static final boolean RESUMABLE_SYNC_DEFAULT = false;
+
+    /** 断点续传时等待暂存文件租约恢复的最长时间（毫秒） */
+    public static final String RESUMABLE_LEASE_RECOVERY_TIMEOUT_MS_KEY = "hdfs.api.resumable.lease.recovery.timeout.ms";
+    public static final long RESUMABLE_LEASE_RECOVERY_TIMEOUT_MS_DEFAULT = 60000L;
+
+    /** 上传本地文件时使用的压缩格式（如 gzip、bzip2），为空表示不压缩 */
+    public static final String UPLOAD_CODEC_KEY = "hdfs.api.upload.codec";
+    public static final String UPLOAD_CODEC_DEFAULT = "";
+
+    /** 压缩上传时的压缩线程数 */
+    public static final String COMPRESS_PARALLELISM_KEY = "hdfs.api.compress.parallelism";
+    public static final int COMPRESS_PARALLELISM_DEFAULT = Runtime.getRuntime().availableProcessors();
+
+    /** 压缩上传时每个独立压缩的数据块大小（字节） */
+    public static final String COMPRESS_CHUNK_SIZE_KEY = "hdfs.api.compress.chunk.size";
+    public static final int COMPRESS_CHUNK_SIZE_DEFAULT = 4 * 1024 * 1024;
+
+    /** 下载和按记录读取时是否按扩展名自动解压 */
+    public static final String DECOMPRESS_ON_READ_KEY = "hdfs.api.decompress.on.read";
+    public static final boolean DECOMPRESS_ON_READ_DEFAULT = true;
+
+    /** 本地读缓存目录，为空表示不启用；open、readFileToString 和 downloadFile 读取时先经过该缓存 */
+    public static final String LOCAL_CACHE_DIR_KEY = "hdfs.api.local.cache.dir";
+    public static final String LOCAL_CACHE_DIR_DEFAULT = "";
+
+    /** 本地读缓存占用的最大字节数，超出后按最久未使用淘汰 */
+    public static final String LOCAL_CACHE_MAX_BYTES_KEY = "hdfs.api.local.cache.max.bytes";
+    public static final long LOCAL_CACHE_MAX_BYTES_DEFAULT = 1024L * 1024 * 1024;
+
+    /** 可以进入本地读缓存的单个文件的最大字节数，更大的文件直接从 HDFS 读取，避免一次读取冲掉整个缓存 */
+    public static final String LOCAL_CACHE_MAX_FILE_BYTES_KEY = "hdfs.api.local.cache.max.file.bytes";
+    public static final long LOCAL_CACHE_MAX_FILE_BYTES_DEFAULT = 64L * 1024 * 1024;
+
+    /** 命中本地读缓存时是否额外比对 HDFS 校验和；默认只比对文件长度和修改时间 */
+    public static final String LOCAL_CACHE_VERIFY_CHECKSUM_KEY = "hdfs.api.local.cache.verify.checksum";
+    public static final boolean LOCAL_CACHE_VERIFY_CHECKSUM_DEFAULT = false;
+
+    /** 进程内所有传输共用的全局带宽上限（字节/秒），小于等于0表示不限速 */
+    public static final String TRANSFER_GLOBAL_BYTES_PER_SECOND_KEY = "hdfs.api.transfer.global.bytes.per.second";
+    public static final double TRANSFER_GLOBAL_BYTES_PER_SECOND_DEFAULT = 0;
+
+    /** 每个用户的默认带宽上限（字节/秒），小于等于0表示不限速 */
+    public static final String TRANSFER_USER_BYTES_PER_SECOND_KEY = "hdfs.api.transfer.user.bytes.per.second";
+    public static final double TRANSFER_USER_BYTES_PER_SECOND_DEFAULT = 0;
+
+    /** 带宽限速允许的突发量（字节） */
+    public static final String TRANSFER_BURST_BYTES_KEY = "hdfs.api.transfer.burst.bytes";
+    public static final long TRANSFER_BURST_BYTES_DEFAULT = 4L * 1024 * 1024;
+
+    /** 全局带宽不足时交互式传输（HTTP 下载、本地缓存拉取）的权重 */
+    public static final String TRANSFER_INTERACTIVE_WEIGHT_KEY = "hdfs.api.transfer.interactive.weight";
+    public static final double TRANSFER_INTERACTIVE_WEIGHT_DEFAULT = 8;
+
+    /** 全局带宽不足时批量传输（上传、下载到本地、复制）的权重 */
+    public static final String TRANSFER_BULK_WEIGHT_KEY = "hdfs.api.transfer.bulk.weight";
+    public static final double TRANSFER_BULK_WEIGHT_DEFAULT = 1;
+
+    /** 复制引擎单个缓冲区大小（字节） */
+    public static final String COPY_BUFFER_SIZE_KEY = "hdfs.api.copy.buffer.size";
+    public static final int COPY_BUFFER_SIZE_DEFAULT = 128 * 1024;
+
+    /** 复制引擎最多缓存的空闲缓冲区个数 */
+    public static final String COPY_BUFFER_POOL_SIZE_KEY = "hdfs.api.copy.buffer.pool.size";
+    public static final int COPY_BUFFER_POOL_SIZE_DEFAULT = 16;
+
+    /** 是否使用直接内存缓冲区 */
+    public static final String COPY_BUFFER_DIRECT_KEY = "hdfs.api.copy.buffer.direct";
+    public static final boolean COPY_BUFFER_DIRECT_DEFAULT = false;
+
+    /** 递归遍历目录时的并发数 */
+    public static final String LIST_PARALLELISM_KEY = "hdfs.api.list.parallelism";
+    public static final int LIST_PARALLELISM_DEFAULT = 8;
+
+    /** 迭代器方式遍历时缓存的最大条目数 */
+    public static final String LIST_QUEUE_CAPACITY_KEY = "hdfs.api.list.queue.capacity";
+    public static final int LIST_QUEUE_CAPACITY_DEFAULT = 1024;
+
+    /** 是否启用客户端元数据缓存 */
+    public static final String METADATA_CACHE_ENABLED_KEY = "hdfs.api.metadata.cache.enabled";
+    public static final boolean METADATA_CACHE_ENABLED_DEFAULT = false;
+
+    /** 元数据缓存最大条目数 */
+    public static final String METADATA_CACHE_MAX_ENTRIES_KEY = "hdfs.api.metadata.cache.max.entries";
+    public static final int METADATA_CACHE_MAX_ENTRIES_DEFAULT = 10000;
+
+    /** 元数据缓存条目存活时间（毫秒） */
+    public static final String METADATA_CACHE_TTL_MS_KEY = "hdfs.api.metadata.cache.ttl.ms";
+    public static final long METADATA_CACHE_TTL_MS_DEFAULT = 5000L;
+
+    /** 权限判断时缓存的用户组刷新间隔（毫秒） */
+    public static final String ACCESS_GROUPS_REFRESH_MS_KEY = "hdfs.api.access.groups.refresh.ms";
+    public static final long ACCESS_GROUPS_REFRESH_MS_DEFAULT = 300000L;
+
+    /** HdfsApiFactory 最多缓存的用户 FileSystem 实例数 */
+    public static final String CLIENT_POOL_MAX_USERS_KEY = "hdfs.api.client.pool.max.users";
+    public static final int CLIENT_POOL_MAX_USERS_DEFAULT = 64;
+
+    /** 空闲 FileSystem 实例的回收时间（毫秒） */
+    public static final String CLIENT_POOL_IDLE_TIMEOUT_MS_KEY = "hdfs.api.client.pool.idle.timeout.ms";
+    public static final long CLIENT_POOL_IDLE_TIMEOUT_MS_DEFAULT = 300000L;
+
+    /** execute 的最大尝试次数（包含第一次） */
+    public static final String RETRY_MAX_ATTEMPTS_KEY = "hdfs.api.retry.max.attempts";
+    public static final int RETRY_MAX_ATTEMPTS_DEFAULT = 3;
+
+    /** 重试退避的基础等待时间（毫秒） */
+    public static final String RETRY_BASE_DELAY_MS_KEY = "hdfs.api.retry.base.delay.ms";
+    public static final long RETRY_BASE_DELAY_MS_DEFAULT = 200L;
+
+    /** 重试退避的最大等待时间（毫秒） */
+    public static final String RETRY_MAX_DELAY_MS_KEY = "hdfs.api.retry.max.delay.ms";
+    public static final long RETRY_MAX_DELAY_MS_DEFAULT = 10000L;
+
+    /** 异步接口线程池的线程数 */
+    public static final String ASYNC_THREADS_KEY = "hdfs.api.async.threads";
+    public static final int ASYNC_THREADS_DEFAULT = 32;
+
+    /** 异步接口线程池的队列长度，队列满时新任务被拒绝 */
+    public static final String ASYNC_QUEUE_CAPACITY_KEY = "hdfs.api.async.queue.capacity";
+    public static final int ASYNC_QUEUE_CAPACITY_DEFAULT = 1024;
+
+    /** 异步调用的默认超时时间（毫秒），小于等于0表示不超时 */
+    public static final String ASYNC_TIMEOUT_MS_KEY = "hdfs.api.async.timeout.ms";
+    public static final long ASYNC_TIMEOUT_MS_DEFAULT = 0L;
+
+    /** 批量元数据操作的并发数 */
+    public static final String BATCH_PARALLELISM_KEY = "hdfs.api.batch.parallelism";
+    public static final int BATCH_PARALLELISM_DEFAULT = 16;
+
+    /** 批量元数据操作每秒最多发起的调用数，小于等于0表示不限速 */
+    public static final String BATCH_OPS_PER_SECOND_KEY = "hdfs.api.batch.ops.per.second";
+    public static final double BATCH_OPS_PER_SECOND_DEFAULT = 0;
+
+    /** 复制目录树时同时复制的文件数 */
+    public static final String COPY_PARALLELISM_KEY = "hdfs.api.copy.parallelism";
+    public static final int COPY_PARALLELISM_DEFAULT = 8;
+
+    /** 复制目录树时，超过该大小（字节）的文件按块切分后并发复制，小于等于0表示不切分 */
+    public static final String COPY_CHUNK_THRESHOLD_KEY = "hdfs.api.copy.chunk.threshold";
+    public static final long COPY_CHUNK_THRESHOLD_DEFAULT = 512L * 1024 * 1024;
+
+    /** 记录耗时分位数的调用比例，取值 0~1，0 表示不统计分位数；进程内第一个 HdfsApi 的配置生效 */
+    public static final String METRICS_QUANTILE_SAMPLE_RATE_KEY = "hdfs.api.metrics.quantile.sample.rate";
+    public static final double METRICS_QUANTILE_SAMPLE_RATE_DEFAULT = 1.0;
+
+}
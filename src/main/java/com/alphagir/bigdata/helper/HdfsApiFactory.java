@@ -0,0 +1,236 @@
+package com.alphagir.bigdata.helper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.security.UserGroupInformation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 线程安全的多用户 HdfsApi 工厂。每个用户持有一个 FileSystem.newInstance 得到的独立实例，
+ * 按引用计数复用，空闲超时后关闭；池满时淘汰最久未使用的空闲实例。
+ * <p>
+ * getClient 返回的 HdfsApi 调用 close 只会归还引用，不会关闭其它线程正在使用的 FileSystem
+ */
+@Slf4j
+public class HdfsApiFactory implements Closeable {
+
+    private final String uri;
+    private final Configuration conf;
+    private final int maxEntries;
+    private final long idleTimeoutMillis;
+    private final HdfsCopyEngine copyEngine;
+
+    // accessOrder = true，最久未使用的用户排在最前面
+    private final LinkedHashMap<String, PooledClient> clients = new LinkedHashMap<>(16, 0.75f, true);
+    private final ScheduledExecutorService evictor;
+    private boolean closed;
+
+    public HdfsApiFactory(final String uri) {
+        this(uri, new Configuration());
+    }
+
+    public HdfsApiFactory(final String uri, Configuration conf) {
+        this.conf = conf;
+        if (StringUtils.isNotBlank(uri)) {
+            conf.set("fs.defaultFS", uri);
+        }
+        conf.set("hadoop.root.logger", "ERROR,console");
+        this.uri = uri;
+        this.maxEntries = conf.getInt(HdfsApiConfigKeys.CLIENT_POOL_MAX_USERS_KEY, HdfsApiConfigKeys.CLIENT_POOL_MAX_USERS_DEFAULT);
+        this.idleTimeoutMillis = conf.getLong(HdfsApiConfigKeys.CLIENT_POOL_IDLE_TIMEOUT_MS_KEY,
+                HdfsApiConfigKeys.CLIENT_POOL_IDLE_TIMEOUT_MS_DEFAULT);
+        this.copyEngine = new HdfsCopyEngine(conf);
+        // 整个进程只需要设置一次
+        UserGroupInformation.setConfiguration(conf);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hdfs-client-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000L, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 获取指定用户的 HdfsApi，user 为空时使用当前用户。用完后必须调用 close 归还
+     */
+    public HdfsApi getClient(String user) throws IOException, InterruptedException {
+        final String key = StringUtils.isNotBlank(user) ? user : UserGroupInformation.getCurrentUser().getShortUserName();
+        PooledClient client;
+        List<PooledClient> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("HdfsApiFactory 已关闭");
+            }
+            client = clients.get(key);
+            if (client == null) {
+                evicted = makeRoom();
+            } else {
+                client.refCount++;
+            }
+        }
+        closeAll(evicted);
+
+        if (client == null) {
+            client = createClient(key, user);
+            evicted = new ArrayList<>();
+            synchronized (this) {
+                PooledClient existing = clients.get(key);
+                if (existing != null) {
+                    // 并发创建时保留先放入池中的实例
+                    existing.refCount++;
+                    evicted.add(client);
+                    client = existing;
+                } else if (clients.size() >= maxEntries) {
+                    // 池中全部实例都在使用，本次创建的实例不入池，归还时直接关闭
+                    client.pooled = false;
+                    client.refCount = 1;
+                    log.warn("HDFS客户端池已满（" + maxEntries + "），用户 " + key + " 使用临时实例");
+                } else {
+                    client.refCount = 1;
+                    clients.put(key, client);
+                }
+            }
+            closeAll(evicted);
+        }
+
+        final PooledClient leased = client;
+        return new HdfsApi(uri, conf, leased.ugi, leased.fs, copyEngine, leased.metadataCache,
+                leased.accessEvaluator, new Closeable() {
+            private boolean released;
+
+            @Override
+            public void close() throws IOException {
+                synchronized (this) {
+                    if (released) {
+                        return;
+                    }
+                    released = true;
+                }
+                release(leased);
+            }
+        });
+    }
+
+    private PooledClient createClient(String key, String user) throws IOException, InterruptedException {
+        final UserGroupInformation ugi = StringUtils.isNotBlank(user)
+                ? UserGroupInformation.createRemoteUser(user) : UserGroupInformation.getCurrentUser();
+        FileSystem fs = ugi.doAs((PrivilegedExceptionAction<FileSystem>) () -> FileSystem.newInstance(conf));
+        log.info("为用户 " + key + " 创建 FileSystem 实例");
+        return new PooledClient(key, ugi, fs, HdfsApi.newMetadataCache(conf), HdfsApi.newAccessEvaluator(ugi, conf));
+    }
+
+    private void release(PooledClient client) throws IOException {
+        boolean close;
+        synchronized (this) {
+            client.refCount--;
+            client.lastReleased = System.currentTimeMillis();
+            close = client.refCount <= 0 && (!client.pooled || closed);
+        }
+        if (close) {
+            client.fs.close();
+        }
+    }
+
+    /**
+     * 池满时淘汰最久未使用的空闲实例，调用方需持有锁
+     */
+    private List<PooledClient> makeRoom() {
+        List<PooledClient> evicted = new ArrayList<>();
+        Iterator<PooledClient> it = clients.values().iterator();
+        while (clients.size() >= maxEntries && it.hasNext()) {
+            PooledClient candidate = it.next();
+            if (candidate.refCount == 0) {
+                it.remove();
+                candidate.pooled = false;
+                evicted.add(candidate);
+            }
+        }
+        return evicted;
+    }
+
+    private void evictIdle() {
+        List<PooledClient> evicted = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Iterator<PooledClient> it = clients.values().iterator();
+            while (it.hasNext()) {
+                PooledClient client = it.next();
+                if (client.refCount == 0 && now - client.lastReleased > idleTimeoutMillis) {
+                    it.remove();
+                    client.pooled = false;
+                    evicted.add(client);
+                }
+            }
+        }
+        closeAll(evicted);
+    }
+
+    private void closeAll(List<PooledClient> evicted) {
+        for (PooledClient client : evicted) {
+            try {
+                client.fs.close();
+                log.info("关闭用户 " + client.user + " 的空闲 FileSystem 实例");
+            } catch (IOException e) {
+                log.warn("关闭用户 " + client.user + " 的 FileSystem 失败：" + e.getMessage());
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return clients.size();
+    }
+
+    /**
+     * 关闭工厂：空闲实例立即关闭，仍被借出的实例在归还时关闭
+     */
+    @Override
+    public void close() {
+        List<PooledClient> idle = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            for (Map.Entry<String, PooledClient> entry : clients.entrySet()) {
+                if (entry.getValue().refCount == 0) {
+                    idle.add(entry.getValue());
+                }
+            }
+            clients.clear();
+        }
+        evictor.shutdownNow();
+        closeAll(idle);
+    }
+
+    private static final class PooledClient {
+        private final String user;
+        private final UserGroupInformation ugi;
+        private final FileSystem fs;
+        private final MetadataCache metadataCache;
+        private final AccessEvaluator accessEvaluator;
+        private int refCount;
+        private long lastReleased = System.currentTimeMillis();
+        private boolean pooled = true;
+
+        private PooledClient(String user, UserGroupInformation ugi, FileSystem fs, MetadataCache metadataCache,
+                             AccessEvaluator accessEvaluator) {
+            this.user = user;
+            this.ugi = ugi;
+            this.fs = fs;
+            this.metadataCache = metadataCache;
+            this.accessEvaluator = accessEvaluator;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.alphagir.bigdata.helper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.metrics2.lib.Interns;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
+import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
+import org.apache.hadoop.metrics2.lib.MutableQuantiles;
+import org.apache.hadoop.metrics2.lib.MutableRate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * HdfsApi 的运行指标：每个操作的调用次数、平均耗时和耗时分位数，传输字节数，按原因统计的错误和重试次数，
+ * 以及正在执行的操作数；传输带宽调度器各优先级的传输量、实际速率和排队时间也一并输出。
+ * <p>
+ * 进程内所有 HdfsApi 共用一个指标源，注册到 Hadoop metrics2 后同时通过 JMX（Hadoop:service=HdfsApi,name=HdfsApi）
+ * 暴露，也可以配置 metrics2 的 sink 输出到其他监控系统。FileSystem 自身按 scheme 统计的读写字节数和 RPC 次数一并输出
+ */
+@Slf4j
+public final class HdfsApiMetrics implements MetricsSource {
+
+    private static final String NAME = "HdfsApi";
+
+    /** 耗时分位数的统计窗口（秒） */
+    private static final int QUANTILE_INTERVAL_SECONDS = 60;
+
+    private static volatile HdfsApiMetrics instance;
+
+    // 记录耗时分位数的调用比例：MutableQuantiles.add 需要加锁，高频操作可以只采样一部分，0 表示不统计分位数
+    private final double quantileSampleRate;
+    private final MetricsRegistry registry = new MetricsRegistry(NAME);
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private final Map<String, MutableCounterLong> counters = new ConcurrentHashMap<>();
+    private final MutableGaugeInt inFlight = registry.newGauge("InFlight", "正在执行的操作数", 0);
+    private final MutableCounterLong bytesRead = registry.newCounter("BytesRead", "从 HDFS 读取的字节数", 0L);
+    private final MutableCounterLong bytesWritten = registry.newCounter("BytesWritten", "写入 HDFS 的字节数", 0L);
+    private final MutableCounterLong errors = registry.newCounter("Errors", "最终失败的操作数", 0L);
+    private final MutableCounterLong retries = registry.newCounter("Retries", "重试次数", 0L);
+
+    private HdfsApiMetrics(Configuration conf) {
+        this.quantileSampleRate = Math.min(1.0, conf.getDouble(HdfsApiConfigKeys.METRICS_QUANTILE_SAMPLE_RATE_KEY,
+                HdfsApiConfigKeys.METRICS_QUANTILE_SAMPLE_RATE_DEFAULT));
+    }
+
+    /**
+     * 进程内共用的指标源，第一个调用方的配置决定分位数的采样比例
+     */
+    public static HdfsApiMetrics get(Configuration conf) {
+        HdfsApiMetrics metrics = instance;
+        if (metrics == null) {
+            synchronized (HdfsApiMetrics.class) {
+                metrics = instance;
+                if (metrics == null) {
+                    metrics = new HdfsApiMetrics(conf);
+                    register(metrics);
+                    instance = metrics;
+                }
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * 进程内共用的指标源，尚未创建时按默认配置（core-site.xml 等）创建
+     */
+    public static HdfsApiMetrics get() {
+        HdfsApiMetrics metrics = instance;
+        return metrics != null ? metrics : get(new Configuration());
+    }
+
+    private static void register(HdfsApiMetrics metrics) {
+        try {
+            // 宿主进程已初始化 metrics2 时沿用已有的配置
+            DefaultMetricsSystem.initialize(NAME);
+            DefaultMetricsSystem.instance().register(NAME, "HdfsApi 操作指标", metrics);
+        } catch (RuntimeException e) {
+            // 注册失败不影响业务，指标仍可通过 getter 读取
+            log.warn("注册 HdfsApi 指标失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 每个操作的指标，名称中的 . 替换为 _。HdfsApi.execute 每次调用只查找一次，之后直接使用
+     */
+    final class OperationMetrics {
+        private final MutableRate latency;
+        private final MutableQuantiles quantiles;
+        private final MutableGaugeInt running;
+        private final MutableCounterLong bytes;
+        private final MutableCounterLong failed;
+        private final MutableCounterLong retried;
+
+        private OperationMetrics(String name) {
+            latency = registry.newRate(name, name + " 的调用次数和平均耗时（毫秒）");
+            quantiles = quantileSampleRate <= 0 ? null : registry.newQuantiles(name + "Latency",
+                    name + " 的耗时分位数（毫秒）", "Ops", "LatencyMs", QUANTILE_INTERVAL_SECONDS);
+            running = registry.newGauge(name + "InFlight", name + " 正在执行的调用数", 0);
+            bytes = registry.newCounter(name + "Bytes", name + " 传输的字节数", 0L);
+            failed = registry.newCounter(name + "Errors", name + " 最终失败的次数", 0L);
+            retried = registry.newCounter(name + "Retries", name + " 的重试次数", 0L);
+        }
+
+        /**
+         * 操作开始执行，返回开始时间，结束时传给 end
+         */
+        long begin() {
+            inFlight.incr();
+            running.incr();
+            return System.nanoTime();
+        }
+
+        void end(long startNanos) {
+            long millis = (System.nanoTime() - startNanos) / 1000000L;
+            latency.add(millis);
+            if (quantiles != null
+                    && (quantileSampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < quantileSampleRate)) {
+                quantiles.add(millis);
+            }
+            running.decr();
+            inFlight.decr();
+        }
+
+        void retry(Throwable cause) {
+            retries.incr();
+            retried.incr();
+            counter("RetriesBy" + causeName(cause), "因 " + causeName(cause) + " 重试的次数").incr();
+        }
+
+        void error(Throwable cause) {
+            errors.incr();
+            failed.incr();
+            counter("ErrorsBy" + causeName(cause), "因 " + causeName(cause) + " 失败的次数").incr();
+        }
+    }
+
+    /**
+     * 按原始操作名缓存，命中时不再分配替换后的名称
+     */
+    OperationMetrics operation(String operation) {
+        OperationMetrics metrics = operations.get(operation);
+        if (metrics == null) {
+            metrics = operations.computeIfAbsent(operation, op -> new OperationMetrics(op.replace('.', '_')));
+        }
+        return metrics;
+    }
+
+    private MutableCounterLong counter(String name, String description) {
+        return counters.computeIfAbsent(name, n -> registry.newCounter(n, description, 0L));
+    }
+
+    void bytesRead(String operation, long bytes) {
+        if (bytes > 0) {
+            bytesRead.incr(bytes);
+            operation(operation).bytes.incr(bytes);
+        }
+    }
+
+    void bytesWritten(String operation, long bytes) {
+        if (bytes > 0) {
+            bytesWritten.incr(bytes);
+            operation(operation).bytes.incr(bytes);
+        }
+    }
+
+    public int getInFlight() {
+        return inFlight.value();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.value();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.value();
+    }
+
+    public long getErrors() {
+        return errors.value();
+    }
+
+    public long getRetries() {
+        return retries.value();
+    }
+
+    @Override
+    public void getMetrics(MetricsCollector collector, boolean all) {
+        MetricsRecordBuilder builder = collector.addRecord(NAME).setContext("hdfsapi");
+        registry.snapshot(builder, all);
+        for (FileSystem.Statistics statistics : FileSystem.getAllStatistics()) {
+            String scheme = statistics.getScheme();
+            builder.addCounter(Interns.info(scheme + "BytesRead", scheme + " 文件系统读取的字节数"),
+                    statistics.getBytesRead())
+                    .addCounter(Interns.info(scheme + "BytesWritten", scheme + " 文件系统写入的字节数"),
+                            statistics.getBytesWritten())
+                    .addCounter(Interns.info(scheme + "ReadOps", scheme + " 文件系统的读操作数"),
+                            (long) statistics.getReadOps())
+                    .addCounter(Interns.info(scheme + "WriteOps", scheme + " 文件系统的写操作数"),
+                            (long) statistics.getWriteOps());
+        }
+        TransferScheduler scheduler = TransferScheduler.current();
+        if (scheduler != null) {
+            scheduler.snapshot(builder);
+        }
+    }
+
+    private static String causeName(Throwable cause) {
+        if (cause instanceof RemoteException) {
+            // NameNode 返回的异常以服务端的类名区分
+            String className = ((RemoteException) cause).getClassName();
+            return className.substring(className.lastIndexOf('.') + 1);
+        }
+        return cause.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,378 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.TransferPriorityEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.ipc.RemoteException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 长期持有输出流的追加写入器：多个线程调用 append 只是把记录放入队列，由一个写线程批量写出，
+ * 未刷新的数据达到 flushBytes、等待超过 flushIntervalMillis 或调用 flush 时统一 hflush/hsync 一次。
+ * <p>
+ * 记录按原样写入，不追加分隔符。文件达到 rollBytes 后重命名为"文件名.时间戳"并新建文件继续写入。
+ * 打开已存在的文件时如果租约仍被占用，默认直接失败；AppenderOptions.recoverLease 为 true 时先收回租约再追加，
+ * 此时调用方必须保证该文件只有一个写入者（包括其它进程和其它 HdfsApi 实例），否则双方会互相收回租约、破坏对方的输出流。
+ * 写入失败后写入器不再可用，之后的 append/flush 都会抛出该异常，需要关闭后重新打开
+ */
+@Slf4j
+public class HdfsAppender implements Closeable {
+
+    private static final Object CLOSE = new Object();
+
+    private static final class FlushRequest {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile IOException error;
+    }
+
+    private final HdfsApi api;
+    private final FileSystem fs;
+    private final Path path;
+    private final AppenderOptions options;
+    private final HdfsCopyEngine copyEngine;
+    private final Charset charset;
+    private final TransferThrottle throttle;
+    private final BlockingQueue<Object> queue;
+    // append 持读锁入队，close 持写锁放入结束标记，保证结束标记之后不会再有记录
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private final Thread writer;
+    private final long start = System.currentTimeMillis();
+
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong rolls = new AtomicLong();
+
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    // 以下字段只由写线程访问
+    private FSDataOutputStream out;
+    private long fileSize;
+    private long unflushedBytes;
+    private long firstUnflushedAt;
+
+    HdfsAppender(HdfsApi api, Path path, AppenderOptions options) throws IOException, InterruptedException {
+        this.api = api;
+        this.fs = api.getFs();
+        this.path = path;
+        this.options = options;
+        this.copyEngine = api.getCopyEngine();
+        this.charset = options.getCharset();
+        this.throttle = api.throttle(TransferPriorityEnum.BULK);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, options.getQueueCapacity()));
+        this.out = open();
+        this.writer = new Thread(this::run, "hdfs-appender-" + path.getName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * 把记录放入写入队列，队列满时阻塞；返回时记录还未持久化，需要持久化时调用 flush
+     */
+    public void append(String record) throws IOException, InterruptedException {
+        enqueue(record);
+    }
+
+    /**
+     * 等待此前放入的所有记录写出并 hflush/hsync 完成
+     */
+    public void flush() throws IOException, InterruptedException {
+        FlushRequest request = new FlushRequest();
+        enqueue(request);
+        while (!request.done.await(100, TimeUnit.MILLISECONDS)) {
+            if (!writer.isAlive() && !request.done.await(0, TimeUnit.MILLISECONDS)) {
+                // 写线程已经退出，请求不会再被处理
+                throw failure != null ? failure : new IOException("追加写入器已关闭：" + path);
+            }
+        }
+        if (request.error != null) {
+            throw request.error;
+        }
+    }
+
+    private void enqueue(Object item) throws IOException, InterruptedException {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IOException("追加写入器已关闭：" + path);
+            }
+            IOException e = failure;
+            if (e != null) {
+                throw e;
+            }
+            queue.put(item);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 写出队列中剩余的记录、刷新并关闭文件；写入过程中出现过错误时抛出该错误
+     */
+    @Override
+    public void close() throws IOException {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.put(CLOSE);
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        } finally {
+            api.appenderClosed(this);
+        }
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        log.info("追加写入器关闭：" + path + "，记录数：" + records.get() + "，字节数：" + bytes.get()
+                + "，刷新次数：" + flushes.get() + "，滚动次数：" + rolls.get()
+                + "，吞吐量：" + String.format("%.2f", getRecordsPerSecond()) + " 条/秒，耗时：" + elapsed + "ms");
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public long getRecordsWritten() {
+        return records.get();
+    }
+
+    public long getBytesWritten() {
+        return bytes.get();
+    }
+
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    public long getRollCount() {
+        return rolls.get();
+    }
+
+    /**
+     * 自打开以来平均每秒写出的记录数
+     */
+    public double getRecordsPerSecond() {
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        return records.get() * 1000.0 / elapsed;
+    }
+
+    private void run() {
+        List<Object> batch = new ArrayList<>();
+        List<FlushRequest> waiting = new ArrayList<>();
+        int maxBatch = Math.max(1, options.getMaxBatchRecords());
+        boolean closing = false;
+        while (!closing) {
+            batch.clear();
+            waiting.clear();
+            try {
+                Object first;
+                if (unflushedBytes > 0 && failure == null) {
+                    long wait = firstUnflushedAt + options.getFlushIntervalMillis() - System.currentTimeMillis();
+                    first = queue.poll(Math.max(0, wait), TimeUnit.MILLISECONDS);
+                } else {
+                    first = queue.take();
+                }
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatch - 1);
+                }
+            } catch (InterruptedException e) {
+                fail(interrupted(e));
+                closing = true;
+            }
+
+            for (Object item : batch) {
+                if (item == CLOSE) {
+                    closing = true;
+                } else if (item instanceof FlushRequest) {
+                    waiting.add((FlushRequest) item);
+                } else if (failure == null) {
+                    write((String) item);
+                }
+            }
+            if (failure == null && unflushedBytes > 0 && (closing || !waiting.isEmpty()
+                    || unflushedBytes >= options.getFlushBytes()
+                    || System.currentTimeMillis() - firstUnflushedAt >= options.getFlushIntervalMillis())) {
+                sync();
+            }
+            if (failure == null && !closing && options.getRollBytes() > 0 && fileSize >= options.getRollBytes()) {
+                roll();
+            }
+            for (FlushRequest request : waiting) {
+                request.error = failure;
+                request.done.countDown();
+            }
+        }
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                fail(e);
+            }
+            out = null;
+            api.invalidate(path);
+        }
+        // 写线程异常退出时队列中可能还有 flush 请求，通知它们失败
+        Object item;
+        while ((item = queue.poll()) != null) {
+            if (item instanceof FlushRequest) {
+                FlushRequest request = (FlushRequest) item;
+                request.error = failure != null ? failure : new IOException("追加写入器已关闭：" + path);
+                request.done.countDown();
+            }
+        }
+    }
+
+    private void write(String record) {
+        try {
+            long n = copyEngine.writeString(record, charset, out);
+            if (unflushedBytes == 0) {
+                firstUnflushedAt = System.currentTimeMillis();
+            }
+            unflushedBytes += n;
+            fileSize += n;
+            bytes.addAndGet(n);
+            records.incrementAndGet();
+            api.getMetrics().bytesWritten("appender", n);
+            // 输出流需要 hflush/hsync，不能包装，写出后按实际字节数申请带宽
+            throttle.acquire(n);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void sync() {
+        try {
+            if (options.isSync()) {
+                out.hsync();
+            } else {
+                out.hflush();
+            }
+            unflushedBytes = 0;
+            flushes.incrementAndGet();
+            api.invalidate(path);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void roll() {
+        try {
+            out.close();
+            out = null;
+            Path rolled = new Path(path.getParent(), path.getName() + "." + System.currentTimeMillis());
+            api.executeOnce("appender.roll", () -> {
+                api.invalidate(path);
+                if (!fs.rename(path, rolled)) {
+                    throw new IOException("无法将 " + path + " 重命名为 " + rolled);
+                }
+                return null;
+            });
+            rolls.incrementAndGet();
+            log.info("追加写入的文件已滚动：" + rolled);
+            out = open();
+        } catch (IOException e) {
+            fail(e);
+        } catch (InterruptedException e) {
+            fail(interrupted(e));
+        }
+    }
+
+    /**
+     * 文件不存在时新建，存在时追加；租约被占用且允许收回时先恢复租约。
+     * 该操作不重试：append 成功后再次 append 会与自己持有的租约冲突
+     */
+    private FSDataOutputStream open() throws IOException, InterruptedException {
+        return api.executeOnce("openAppender", () -> {
+            api.invalidate(path);
+            if (!fs.exists(path)) {
+                fileSize = 0;
+                return fs.create(path, false);
+            }
+            try {
+                fileSize = fs.getFileStatus(path).getLen();
+                return fs.append(path);
+            } catch (IOException e) {
+                if (!(fs instanceof DistributedFileSystem) || !isLeaseConflict(e)) {
+                    throw e;
+                }
+                if (!options.isRecoverLease()) {
+                    throw new IOException(path + " 的租约被其它写入者占用；确认写入者已崩溃后可开启 recoverLease 收回租约", e);
+                }
+                log.warn(path + " 的租约仍被占用，开始恢复租约：" + e.getMessage());
+                recoverLease((DistributedFileSystem) fs);
+                fileSize = fs.getFileStatus(path).getLen();
+                return fs.append(path);
+            }
+        });
+    }
+
+    private void recoverLease(DistributedFileSystem dfs) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + options.getLeaseRecoveryTimeoutMillis();
+        while (!dfs.recoverLease(path)) {
+            if (System.currentTimeMillis() >= deadline) {
+                throw new IOException("等待 " + path + " 的租约恢复超时");
+            }
+            Thread.sleep(1000L);
+        }
+        log.info(path + " 的租约已恢复");
+    }
+
+    private static boolean isLeaseConflict(IOException e) {
+        if (!(e instanceof RemoteException)) {
+            return false;
+        }
+        String className = ((RemoteException) e).getClassName();
+        return className.endsWith("AlreadyBeingCreatedException") || className.endsWith("RecoveryInProgressException");
+    }
+
+    private void fail(IOException e) {
+        if (failure == null) {
+            log.error("追加写入 " + path + " 失败：" + e.getMessage());
+            failure = e;
+        }
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+                // 输出流已处于异常状态，关闭失败不影响结果
+            }
+            out = null;
+        }
+    }
+
+    private static InterruptedIOException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        InterruptedIOException iie = new InterruptedIOException(e.getMessage());
+        iie.initCause(e);
+        return iie;
+    }
+}
@@ -0,0 +1,169 @@
+package com.alphagir.bigdata.helper;
+
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.MD5MD5CRC32CastagnoliFileChecksum;
+import org.apache.hadoop.fs.MD5MD5CRC32FileChecksum;
+import org.apache.hadoop.fs.MD5MD5CRC32GzipFileChecksum;
+import org.apache.hadoop.io.MD5Hash;
+import org.apache.hadoop.util.DataChecksum;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 在本地计算与 HDFS 一致的 MD5-of-MD5-of-CRC 文件校验和，用于校验下载结果或比较本地与 HDFS 上的文件。
+ * <p>
+ * HDFS 的算法：每个块内按 bytesPerCrc 切分计算 CRC，块内所有 CRC（大端4字节）拼接后取 MD5，
+ * 再对所有块的 MD5 拼接后取 MD5
+ */
+final class HdfsChecksums {
+
+    private HdfsChecksums() {
+    }
+
+    /**
+     * 从 HDFS 返回的校验和中解析出的计算参数
+     */
+    static final class Spec {
+        final DataChecksum.Type crcType;
+        final int bytesPerCrc;
+        final long crcPerBlock;
+
+        private Spec(DataChecksum.Type crcType, int bytesPerCrc, long crcPerBlock) {
+            this.crcType = crcType;
+            this.bytesPerCrc = bytesPerCrc;
+            this.crcPerBlock = crcPerBlock;
+        }
+
+        BlockDigest newBlockDigest() {
+            return new BlockDigest(this);
+        }
+    }
+
+    /**
+     * 只支持 MD5MD5CRC32 类型的校验和，其他类型（如 COMPOSITE_CRC 或非 HDFS 文件系统）返回 null
+     */
+    static Spec spec(FileChecksum checksum) throws IOException {
+        if (!(checksum instanceof MD5MD5CRC32FileChecksum)) {
+            return null;
+        }
+        DataChecksum.Type crcType = ((MD5MD5CRC32FileChecksum) checksum).getCrcType();
+        if (crcType != DataChecksum.Type.CRC32 && crcType != DataChecksum.Type.CRC32C) {
+            return null;
+        }
+        // 序列化格式：bytesPerCRC(int) + crcPerBlock(long) + md5，crcPerBlock 没有公开的 getter
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(checksum.getBytes()))) {
+            int bytesPerCrc = in.readInt();
+            long crcPerBlock = in.readLong();
+            return new Spec(crcType, bytesPerCrc, crcPerBlock);
+        }
+    }
+
+    /**
+     * 按顺序汇总所有块的 MD5，得到可以直接与 FileSystem.getFileChecksum 比较的校验和
+     */
+    static FileChecksum combine(Spec spec, List<byte[]> blockDigests) {
+        MessageDigest md5 = newMd5();
+        for (byte[] digest : blockDigests) {
+            md5.update(digest);
+        }
+        MD5Hash fileMd5 = new MD5Hash(md5.digest());
+        if (spec.crcType == DataChecksum.Type.CRC32C) {
+            return new MD5MD5CRC32CastagnoliFileChecksum(spec.bytesPerCrc, spec.crcPerBlock, fileMd5);
+        }
+        return new MD5MD5CRC32GzipFileChecksum(spec.bytesPerCrc, spec.crcPerBlock, fileMd5);
+    }
+
+    /**
+     * 计算本地文件按 blockSize 分块时的校验和
+     */
+    static FileChecksum compute(File file, long blockSize, Spec spec, HdfsCopyEngine copyEngine) throws IOException {
+        List<byte[]> digests = new ArrayList<>();
+        ByteBuffer buffer = copyEngine.acquire();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long len = channel.size();
+            for (long offset = 0; offset < len; offset += blockSize) {
+                BlockDigest digest = spec.newBlockDigest();
+                long end = Math.min(len, offset + blockSize);
+                long position = offset;
+                while (position < end) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(digest.usableCapacity(buffer), end - position));
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer, position + buffer.position()) < 0) {
+                            throw new IOException("本地文件在计算校验和时被截断：" + file);
+                        }
+                    }
+                    buffer.flip();
+                    position += buffer.remaining();
+                    digest.update(buffer);
+                }
+                digests.add(digest.finish());
+            }
+        } finally {
+            copyEngine.release(buffer);
+        }
+        return combine(spec, digests);
+    }
+
+    /**
+     * 单个块的 MD5-of-CRC。除最后一次外，每次 update 的数据长度必须是 bytesPerCrc 的整数倍
+     */
+    static final class BlockDigest {
+        private final DataChecksum checksum;
+        private final MessageDigest md5 = newMd5();
+        private ByteBuffer crcs = ByteBuffer.allocate(0);
+
+        private BlockDigest(Spec spec) {
+            this.checksum = DataChecksum.newDataChecksum(spec.crcType, spec.bytesPerCrc);
+        }
+
+        /**
+         * 缓冲区中可以使用的最大长度，保证每次 update 都落在 CRC 分段边界上
+         */
+        int usableCapacity(ByteBuffer buffer) {
+            int bytesPerCrc = checksum.getBytesPerChecksum();
+            int usable = buffer.capacity() / bytesPerCrc * bytesPerCrc;
+            if (usable == 0) {
+                throw new IllegalStateException("缓冲区大小 " + buffer.capacity() + " 小于 bytesPerCrc " + bytesPerCrc);
+            }
+            return usable;
+        }
+
+        /**
+         * 计算 data 中剩余字节的 CRC 并累加到 MD5，不改变 data 的 position
+         */
+        void update(ByteBuffer data) {
+            int chunks = (data.remaining() + checksum.getBytesPerChecksum() - 1) / checksum.getBytesPerChecksum();
+            if (crcs.capacity() < chunks * checksum.getChecksumSize()) {
+                crcs = ByteBuffer.allocate(chunks * checksum.getChecksumSize());
+            }
+            crcs.clear();
+            crcs.limit(chunks * checksum.getChecksumSize());
+            // 可用时走 native CRC 实现
+            checksum.calculateChunkedSums(data.duplicate(), crcs);
+            md5.update(crcs.array(), 0, crcs.limit());
+        }
+
+        byte[] finish() {
+            return md5.digest();
+        }
+    }
+
+    private static MessageDigest newMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
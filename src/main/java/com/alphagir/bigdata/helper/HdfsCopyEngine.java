@@ -0,0 +1,197 @@
+package com.alphagir.bigdata.helper;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ByteBufferReadable;
+import org.apache.hadoop.fs.FSDataInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * HdfsApi 所有字节搬运路径共用的复制引擎，缓冲区取自有界的 BufferPool
+ */
+public class HdfsCopyEngine {
+
+    private final BufferPool pool;
+
+    HdfsCopyEngine(Configuration conf) {
+        this(conf.getInt(HdfsApiConfigKeys.COPY_BUFFER_SIZE_KEY, HdfsApiConfigKeys.COPY_BUFFER_SIZE_DEFAULT),
+                conf.getInt(HdfsApiConfigKeys.COPY_BUFFER_POOL_SIZE_KEY, HdfsApiConfigKeys.COPY_BUFFER_POOL_SIZE_DEFAULT),
+                conf.getBoolean(HdfsApiConfigKeys.COPY_BUFFER_DIRECT_KEY, HdfsApiConfigKeys.COPY_BUFFER_DIRECT_DEFAULT));
+    }
+
+    HdfsCopyEngine(int bufferSize, int poolSize, boolean direct) {
+        this.pool = new BufferPool(bufferSize, poolSize, direct);
+    }
+
+    ByteBuffer acquire() {
+        return pool.acquire();
+    }
+
+    void release(ByteBuffer buffer) {
+        pool.release(buffer);
+    }
+
+    int getBufferSize() {
+        return pool.getBufferSize();
+    }
+
+    /**
+     * 从 in 读到末尾并写入 out，返回复制的字节数；不关闭任何流
+     */
+    public long copy(InputStream in, OutputStream out) throws IOException {
+        ByteBuffer buffer = pool.acquire();
+        try {
+            long total = 0;
+            if (supportsByteBufferRead(in)) {
+                // FSDataInputStream 底层支持 ByteBufferReadable 时直接读入 ByteBuffer，省去一次数组拷贝
+                FSDataInputStream fin = (FSDataInputStream) in;
+                while (fin.read(buffer) >= 0) {
+                    if (!buffer.hasRemaining()) {
+                        total += drain(buffer, out);
+                    }
+                }
+                total += drain(buffer, out);
+            } else if (buffer.hasArray()) {
+                byte[] array = buffer.array();
+                int offset = buffer.arrayOffset();
+                int n;
+                while ((n = in.read(array, offset, buffer.capacity())) >= 0) {
+                    out.write(array, offset, n);
+                    total += n;
+                }
+            } else {
+                ReadableByteChannel channel = Channels.newChannel(in);
+                while (channel.read(buffer) >= 0) {
+                    if (!buffer.hasRemaining()) {
+                        total += drain(buffer, out);
+                    }
+                }
+                total += drain(buffer, out);
+            }
+            return total;
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * 从 position 开始复制 length 个字节到 out；文件提前结束时抛出异常
+     */
+    public long copyRange(FSDataInputStream in, long position, long length, OutputStream out) throws IOException {
+        ByteBuffer buffer = pool.acquire();
+        try {
+            long remaining = length;
+            if (!buffer.hasArray()) {
+                // 直接内存缓冲区无法做定位读，改为 seek 后按 ByteBuffer 顺序读
+                in.seek(position);
+            }
+            while (remaining > 0) {
+                int want = (int) Math.min(buffer.capacity(), remaining);
+                int n;
+                if (buffer.hasArray()) {
+                    n = in.read(position + (length - remaining), buffer.array(), buffer.arrayOffset(), want);
+                    if (n > 0) {
+                        out.write(buffer.array(), buffer.arrayOffset(), n);
+                    }
+                } else {
+                    buffer.clear();
+                    buffer.limit(want);
+                    n = readInto(in, buffer);
+                    buffer.flip();
+                    write(buffer, out);
+                }
+                if (n < 0) {
+                    throw new IOException("读取到文件末尾，剩余 " + remaining + " 字节未复制");
+                }
+                remaining -= n;
+            }
+            return length;
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * 按指定字符集把字符串编码到池化缓冲区中写出，避免每次调用都分配完整的字节数组
+     */
+    public long writeString(CharSequence content, Charset charset, OutputStream out) throws IOException {
+        // 与 String.getBytes 保持一致：无法编码的字符（如不成对的代理字符）替换为默认替换字节，而不是抛出异常
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.wrap(content);
+        ByteBuffer buffer = pool.acquire();
+        long total = 0;
+        try {
+            while (true) {
+                CoderResult result = encoder.encode(chars, buffer, true);
+                if (result.isError()) {
+                    result.throwException();
+                }
+                total += drain(buffer, out);
+                if (result.isUnderflow()) {
+                    break;
+                }
+            }
+            while (true) {
+                CoderResult result = encoder.flush(buffer);
+                total += drain(buffer, out);
+                if (result.isUnderflow()) {
+                    break;
+                }
+            }
+            return total;
+        } catch (CharacterCodingException e) {
+            throw new IOException("无法使用 " + charset + " 编码内容", e);
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * 写出缓冲区 [position, limit) 之间的内容
+     */
+    void write(ByteBuffer buffer, OutputStream out) throws IOException {
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+        } else {
+            WritableByteChannel channel = Channels.newChannel(out);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private long drain(ByteBuffer buffer, OutputStream out) throws IOException {
+        buffer.flip();
+        int n = buffer.remaining();
+        write(buffer, out);
+        buffer.clear();
+        return n;
+    }
+
+    private int readInto(FSDataInputStream in, ByteBuffer buffer) throws IOException {
+        if (supportsByteBufferRead(in)) {
+            return in.read(buffer);
+        }
+        return Channels.newChannel(in).read(buffer);
+    }
+
+    private static boolean supportsByteBufferRead(InputStream in) {
+        return in instanceof FSDataInputStream
+                && ((FSDataInputStream) in).getWrappedStream() instanceof ByteBufferReadable;
+    }
+}
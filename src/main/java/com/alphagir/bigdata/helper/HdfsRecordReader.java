@@ -0,0 +1,105 @@
+package com.alphagir.bigdata.helper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.Seekable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.LineReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.NoSuchElementException;
+
+/**
+ * 按分隔符逐条读取记录，内存占用只与缓冲区和单条记录的长度有关。
+ * <p>
+ * 读取 [start, end) 分片时遵循与 MapReduce 相同的对齐规则：记录归属于其第一个字节所在的分片，
+ * start 不为0时跳过第一个分隔符之前的不完整记录，最后一条记录可以越过 end 读完。
+ * 首尾可以重叠的自定义分隔符（如 "||"）后紧跟以其前缀开头的记录时，从分片中间无法确定分隔符的真实位置，
+ * 这类数据不能按分片读取。
+ * 从解压流读取时只能从头读到尾
+ */
+@Slf4j
+public class HdfsRecordReader implements CloseableRemoteIterator<String> {
+
+    private final InputStream in;
+    private final LineReader reader;
+    private final Charset charset;
+    private final int maxRecordLength;
+    private final long end;
+    private final Text text = new Text();
+
+    // 下一条记录第一个字节在文件中的位置
+    private long position;
+    private String next;
+    private boolean finished;
+
+    /**
+     * @param throttle 读取前申请带宽，为 null 表示不限速
+     */
+    HdfsRecordReader(InputStream in, RecordReadOptions options, int bufferSize, long start, long end,
+                     TransferThrottle throttle) throws IOException {
+        this.in = in;
+        this.charset = options.getCharset();
+        this.maxRecordLength = Math.max(1, Math.min(Integer.MAX_VALUE - 1, options.getMaxRecordLength()));
+        this.end = end;
+        byte[] delimiter = options.delimiterBytes();
+        try {
+            long seekTo = start;
+            if (start > 0) {
+                // 从分片起点前一个分隔符长度处开始，分隔符恰好在 start 之前结束时也能正确跳过
+                seekTo = Math.max(0, start - (delimiter == null ? 1 : delimiter.length));
+                ((Seekable) in).seek(seekTo);
+            }
+            // 定位之后再包装，包装流不支持 seek
+            InputStream source = throttle == null ? in : throttle.wrap(in);
+            this.reader = delimiter == null ? new LineReader(source, bufferSize)
+                    : new LineReader(source, bufferSize, delimiter);
+            // 不完整的第一条记录由上一个分片读取
+            this.position = start > 0 ? seekTo + reader.readLine(text, 0, Integer.MAX_VALUE) : 0;
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        while (next == null && !finished) {
+            if (position >= end) {
+                finished = true;
+                break;
+            }
+            // 多保留一个字节，用于区分恰好等于上限和超过上限的记录
+            int consumed = reader.readLine(text, maxRecordLength + 1, Integer.MAX_VALUE);
+            if (consumed == 0) {
+                finished = true;
+                break;
+            }
+            long recordStart = position;
+            position += consumed;
+            if (text.getLength() > maxRecordLength) {
+                log.warn("跳过过长的记录，位置：" + recordStart + "，长度超过 " + maxRecordLength + " 字节");
+                continue;
+            }
+            next = new String(text.getBytes(), 0, text.getLength(), charset);
+        }
+        return next != null;
+    }
+
+    @Override
+    public String next() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String record = next;
+        next = null;
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        in.close();
+    }
+}
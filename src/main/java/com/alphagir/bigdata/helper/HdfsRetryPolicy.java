@@ -0,0 +1,27 @@
+package com.alphagir.bigdata.helper;
+
+import java.io.IOException;
+
+/**
+ * HdfsApi.execute 使用的重试策略，可整体替换，也可按操作名单独设置
+ */
+public interface HdfsRetryPolicy {
+
+    long NO_RETRY = -1L;
+
+    /**
+     * 从不重试，用于追加、消费输入流、rename 等重复执行会产生副作用的操作
+     */
+    HdfsRetryPolicy NEVER = (operation, e, attempt, alwaysRetry) -> NO_RETRY;
+
+    /**
+     * 第 attempt 次尝试（从1开始）失败后，返回下一次尝试前需要等待的毫秒数；返回 NO_RETRY 表示不再重试
+     */
+    long nextDelayMillis(String operation, IOException e, int attempt, boolean alwaysRetry);
+
+    /**
+     * 每次发起调用时回调，可用于向重试预算中存入额度
+     */
+    default void onCall(String operation) {
+    }
+}
@@ -0,0 +1,97 @@
+package com.alphagir.bigdata.helper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HdfsApi 内部使用的有界线程池工具
+ */
+final class HdfsThreadPools {
+
+    private HdfsThreadPools() {
+    }
+
+    /**
+     * 创建固定线程数、有界队列的线程池，队列满时由提交线程自己执行任务，起到反压作用
+     */
+    static ThreadPoolExecutor newBoundedPool(final String name, int threads, int queueCapacity) {
+        return newBoundedPool(name, threads, queueCapacity, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    static ThreadPoolExecutor newBoundedPool(final String name, int threads, int queueCapacity,
+                                             RejectedExecutionHandler handler) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), daemonFactory(name), handler);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * 创建固定线程数、无界队列的线程池，用于任务对象很小但数量不可预估的场景（如目录遍历）
+     */
+    static ThreadPoolExecutor newFixedPool(final String name, int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemonFactory(name));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    static ThreadFactory daemonFactory(final String name) {
+        final AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * 按提交顺序等待所有任务完成；任意一个失败时取消剩余任务并抛出其原始异常
+     */
+    static <T> List<T> awaitAll(List<Future<T>> futures) throws IOException, InterruptedException {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            cancelAll(futures);
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            cancelAll(futures);
+            throw e;
+        }
+        return results;
+    }
+
+    static void cancelAll(Collection<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    static IOException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof InterruptedException) {
+            InterruptedIOException iie = new InterruptedIOException(cause.getMessage());
+            iie.initCause(cause);
+            return iie;
+        }
+        return new IOException(cause);
+    }
+}
@@ -0,0 +1,144 @@
+package com.alphagir.bigdata.helper;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.fs.FileStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * HTTP Range 请求头（RFC 7233）解析，以及基于 FileStatus 的 ETag 生成
+ */
+final class HttpByteRanges {
+
+    /** 合并后超过该数量的区间请求视为滥用，直接返回整个文件 */
+    private static final int MAX_RANGES = 64;
+
+    private HttpByteRanges() {
+    }
+
+    static final class ByteRange {
+        final long start;
+        final long end;
+
+        ByteRange(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        long length() {
+            return end - start + 1;
+        }
+
+        String contentRange(long total) {
+            return "bytes " + start + "-" + end + "/" + total;
+        }
+    }
+
+    /**
+     * 由文件长度和修改时间生成强 ETag，不需要打开文件。HDFS 上文件内容的任何修改（覆盖、追加、截断）都会更新修改时间，
+     * 因此长度和修改时间相同即可视为字节级相同
+     */
+    static String etag(FileStatus status) {
+        return "\"" + Long.toHexString(status.getLen()) + "-" + Long.toHexString(status.getModificationTime()) + "\"";
+    }
+
+    /**
+     * 判断请求头中的实体标签是否与 etag 匹配。
+     *
+     * @param weak 为 true 时使用弱比较（If-None-Match），忽略 W/ 前缀；为 false 时使用强比较（If-Range），
+     *             弱标签一律视为不匹配（RFC 7233 3.2 节）
+     */
+    static boolean etagMatches(String header, String etag, boolean weak) {
+        if (StringUtils.isBlank(header)) {
+            return false;
+        }
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                if (!weak) {
+                    continue;
+                }
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析 Range 头。返回 null 表示头不存在或语法不支持，应返回整个文件；
+     * 返回空列表表示所有区间都无法满足，应返回 416
+     */
+    static List<ByteRange> parse(String header, long length) {
+        if (StringUtils.isBlank(header) || !header.startsWith("bytes=")) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>();
+        for (String spec : header.substring("bytes=".length()).split(",")) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            try {
+                if (first.isEmpty()) {
+                    // bytes=-N 表示最后N个字节
+                    if (last.isEmpty()) {
+                        return null;
+                    }
+                    long suffix = Long.parseLong(last);
+                    if (suffix <= 0) {
+                        continue;
+                    }
+                    start = Math.max(0, length - suffix);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+                    if (!last.isEmpty() && Long.parseLong(last) < start) {
+                        return null;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (start < length && start <= end) {
+                ranges.add(new ByteRange(start, end));
+            }
+        }
+        List<ByteRange> merged = merge(ranges);
+        return merged.size() > MAX_RANGES ? null : merged;
+    }
+
+    /**
+     * 合并重叠或相邻的区间，避免重复读取同一段数据
+     */
+    private static List<ByteRange> merge(List<ByteRange> ranges) {
+        if (ranges.size() <= 1) {
+            return ranges;
+        }
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(r -> r.start));
+        List<ByteRange> merged = new ArrayList<>();
+        ByteRange current = sorted.get(0);
+        for (ByteRange next : sorted.subList(1, sorted.size())) {
+            if (next.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, next.end));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return Collections.unmodifiableList(merged);
+    }
+}
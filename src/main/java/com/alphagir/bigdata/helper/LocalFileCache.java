@@ -0,0 +1,350 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.TransferPriorityEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 热点文件的本地磁盘读缓存：只缓存不超过 maxFileBytes 的文件，按总字节数做 LRU 淘汰，每次读取前与 HDFS 上的文件长度、修改时间（可选校验和）比对，
+ * 不一致时重新拉取。同一文件的并发未命中只拉取一次，命中时通过内存映射读取本地副本。
+ * <p>
+ * 同一目录在进程内共用一个实例，条目按用户区分，避免绕过 HDFS 的读权限；启动时会清理目录下上一次遗留的缓存文件，
+ * 因此不同进程应使用不同的目录。文件状态经由 lookupStatus 获取，开启元数据缓存时在其 TTL 内可能读到旧版本
+ */
+@Slf4j
+public class LocalFileCache {
+
+    private static final String FILE_PREFIX = "hdfs-cache-";
+    private static final Map<File, LocalFileCache> INSTANCES = new ConcurrentHashMap<>();
+
+    private static final class Entry {
+        private final Path path;
+        private final File file;
+        private final long length;
+        private final long modificationTime;
+        private final FileChecksum checksum;
+
+        private Entry(Path path, File file, FileStatus status, FileChecksum checksum) {
+            this.path = path;
+            this.file = file;
+            this.length = status.getLen();
+            this.modificationTime = status.getModificationTime();
+            this.checksum = checksum;
+        }
+
+        private boolean matches(FileStatus status, FileChecksum current) {
+            return length == status.getLen() && modificationTime == status.getModificationTime()
+                    && (current == null || current.equals(checksum));
+        }
+    }
+
+    private final File dir;
+    private final long maxBytes;
+    private final long maxFileBytes;
+    private final boolean verifyChecksum;
+    // accessOrder = true，按访问顺序排列，最久未访问的条目在最前面
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+    // 仍被映射而暂时无法删除的文件（Windows），下次淘汰时重试
+    private final List<File> pendingDeletes = new ArrayList<>();
+    private long cachedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong sharedFetches = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong fetchedBytes = new AtomicLong();
+
+    private LocalFileCache(File dir, long maxBytes, long maxFileBytes, boolean verifyChecksum) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.maxFileBytes = Math.min(Math.min(maxFileBytes, maxBytes), Integer.MAX_VALUE);
+        this.verifyChecksum = verifyChecksum;
+    }
+
+    /**
+     * 按配置返回缓存实例，未配置目录或目录不可用时返回 null，此时直接读取 HDFS
+     */
+    static LocalFileCache fromConf(Configuration conf) {
+        String dirName = conf.getTrimmed(HdfsApiConfigKeys.LOCAL_CACHE_DIR_KEY, HdfsApiConfigKeys.LOCAL_CACHE_DIR_DEFAULT);
+        if (StringUtils.isBlank(dirName)) {
+            return null;
+        }
+        long maxBytes = conf.getLong(HdfsApiConfigKeys.LOCAL_CACHE_MAX_BYTES_KEY,
+                HdfsApiConfigKeys.LOCAL_CACHE_MAX_BYTES_DEFAULT);
+        long maxFileBytes = conf.getLong(HdfsApiConfigKeys.LOCAL_CACHE_MAX_FILE_BYTES_KEY,
+                HdfsApiConfigKeys.LOCAL_CACHE_MAX_FILE_BYTES_DEFAULT);
+        boolean verifyChecksum = conf.getBoolean(HdfsApiConfigKeys.LOCAL_CACHE_VERIFY_CHECKSUM_KEY,
+                HdfsApiConfigKeys.LOCAL_CACHE_VERIFY_CHECKSUM_DEFAULT);
+        try {
+            File dir = new File(dirName).getCanonicalFile();
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("无法创建目录 " + dir);
+            }
+            return INSTANCES.computeIfAbsent(dir, d -> {
+                deleteLeftovers(d);
+                return new LocalFileCache(d, maxBytes, maxFileBytes, verifyChecksum);
+            });
+        } catch (IOException e) {
+            log.error("本地读缓存目录 " + dirName + " 不可用，已禁用本地读缓存：" + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 命中时返回内存映射的本地副本，文件不适合缓存时返回 null，由调用方直接读取 HDFS
+     */
+    FSDataInputStream open(HdfsApi api, Path path) throws IOException, InterruptedException {
+        File file = get(api, path);
+        if (file == null) {
+            return null;
+        }
+        try {
+            return new FSDataInputStream(MappedFileInputStream.open(file));
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            // 刚拿到的副本已被并发淘汰，本次直接读取 HDFS
+            return null;
+        }
+    }
+
+    /**
+     * 返回与 HDFS 上当前版本一致的本地副本；目录或超过 maxFileBytes 的文件返回 null
+     */
+    File get(HdfsApi api, Path path) throws IOException, InterruptedException {
+        final Path qualified = api.getFs().makeQualified(path);
+        FileStatus status = api.lookupStatus(qualified);
+        if (status == null) {
+            throw new FileNotFoundException("文件不存在：" + qualified);
+        }
+        if (!status.isFile() || status.getLen() > maxFileBytes) {
+            return null;
+        }
+        FileChecksum checksum = verifyChecksum
+                ? api.execute("getFileChecksum", () -> api.getFs().getFileChecksum(qualified))
+                : null;
+        String key = api.getUgi().getShortUserName() + "@" + qualified;
+        while (true) {
+            Entry entry = lookup(key, status, checksum);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry.file;
+            }
+            CompletableFuture<Entry> fetch = new CompletableFuture<>();
+            CompletableFuture<Entry> existing = loading.putIfAbsent(key, fetch);
+            if (existing != null) {
+                // 其它线程正在拉取同一文件，等待其结果；版本不一致时重新判断
+                Entry loaded = await(existing);
+                if (loaded.matches(status, checksum)) {
+                    sharedFetches.incrementAndGet();
+                    return loaded.file;
+                }
+                continue;
+            }
+            misses.incrementAndGet();
+            try {
+                Entry loaded = fetch(api, qualified, status, checksum);
+                put(key, loaded);
+                fetch.complete(loaded);
+                return loaded.file;
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                fetch.completeExceptionally(e);
+                throw e;
+            } finally {
+                loading.remove(key, fetch);
+            }
+        }
+    }
+
+    private Entry fetch(HdfsApi api, Path path, FileStatus status, FileChecksum checksum)
+            throws IOException, InterruptedException {
+        File file = File.createTempFile(FILE_PREFIX, ".data", dir);
+        try {
+            long copied = api.execute("open", () -> {
+                try (InputStream in = api.getFs().open(path);
+                     OutputStream out = api.throttle(TransferPriorityEnum.INTERACTIVE).wrap(new FileOutputStream(file))) {
+                    return api.getCopyEngine().copy(in, out);
+                }
+            });
+            if (copied != status.getLen()) {
+                throw new IOException(path + " 在读取过程中被修改，期望 " + status.getLen() + " 字节，实际 " + copied + " 字节");
+            }
+            api.getMetrics().bytesRead("open", copied);
+            fetchedBytes.addAndGet(copied);
+            return new Entry(path, file, status, checksum);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            delete(file);
+            throw e;
+        }
+    }
+
+    private static Entry await(CompletableFuture<Entry> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InterruptedException) {
+                // 拉取线程被中断不代表当前线程被中断，包装为 IO 异常
+                throw new IOException("并发拉取被中断", e.getCause());
+            }
+            throw HdfsThreadPools.unwrap(e);
+        }
+    }
+
+    private synchronized Entry lookup(String key, FileStatus status, FileChecksum checksum) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.matches(status, checksum)) {
+            remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        remove(key);
+        entries.put(key, entry);
+        cachedBytes += entry.length;
+        retryPendingDeletes();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (cachedBytes > maxBytes && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            if (eldest == entry) {
+                continue;
+            }
+            it.remove();
+            cachedBytes -= eldest.length;
+            evictions.incrementAndGet();
+            delete(eldest.file);
+        }
+    }
+
+    /**
+     * 删除路径对应的所有用户的本地副本
+     */
+    synchronized void invalidate(Path path) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.path.equals(path)) {
+                it.remove();
+                discard(entry);
+            }
+        }
+    }
+
+    /**
+     * 删除路径本身及其下所有文件的本地副本
+     */
+    synchronized void invalidateTree(Path path) {
+        String prefix = path.toString().endsWith("/") ? path.toString() : path.toString() + "/";
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.path.equals(path) || entry.path.toString().startsWith(prefix)) {
+                it.remove();
+                discard(entry);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            discard(entry);
+        }
+        entries.clear();
+    }
+
+    private void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            discard(old);
+        }
+    }
+
+    private void discard(Entry entry) {
+        cachedBytes -= entry.length;
+        delete(entry.file);
+    }
+
+    private void delete(File file) {
+        if (!file.delete() && file.exists()) {
+            synchronized (this) {
+                pendingDeletes.add(file);
+            }
+        }
+    }
+
+    private void retryPendingDeletes() {
+        pendingDeletes.removeIf(file -> file.delete() || !file.exists());
+    }
+
+    private static void deleteLeftovers(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(FILE_PREFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.delete()) {
+                log.warn("无法删除遗留的缓存文件 " + file);
+            }
+        }
+    }
+
+    public File getDirectory() {
+        return dir;
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * 等待其它线程拉取同一文件而省下的拉取次数
+     */
+    public long getSharedFetchCount() {
+        return sharedFetches.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getFetchedBytes() {
+        return fetchedBytes.get();
+    }
+}
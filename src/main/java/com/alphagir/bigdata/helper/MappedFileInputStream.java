@@ -0,0 +1,122 @@
+package com.alphagir.bigdata.helper;
+
+import org.apache.hadoop.fs.FSInputStream;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 基于内存映射的本地文件输入流，支持 seek 和定位读，可包装为 FSDataInputStream 返回给调用方
+ */
+class MappedFileInputStream extends FSInputStream {
+
+    private final ByteBuffer buffer;
+    private volatile boolean closed;
+
+    private MappedFileInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * 映射整个文件；映射建立后即可关闭通道，映射区在缓冲区被回收前一直有效
+     */
+    static MappedFileInputStream open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new MappedFileInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Override
+    public synchronized void seek(long pos) throws IOException {
+        checkOpen();
+        if (pos < 0 || pos > buffer.limit()) {
+            throw new EOFException("无法定位到 " + pos + "，文件长度为 " + buffer.limit());
+        }
+        buffer.position((int) pos);
+    }
+
+    @Override
+    public synchronized long getPos() throws IOException {
+        checkOpen();
+        return buffer.position();
+    }
+
+    @Override
+    public boolean seekToNewSource(long targetPos) {
+        return false;
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+        checkOpen();
+        return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        checkOpen();
+        if (len == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    /**
+     * 定位读使用独立的视图，不改变当前读取位置，也不与顺序读竞争锁
+     */
+    @Override
+    public int read(long position, byte[] b, int off, int len) throws IOException {
+        checkOpen();
+        if (position < 0) {
+            throw new EOFException("无效的读取位置：" + position);
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= buffer.limit()) {
+            return -1;
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) position);
+        int n = Math.min(len, view.remaining());
+        view.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public synchronized long skip(long n) throws IOException {
+        checkOpen();
+        if (n <= 0) {
+            return 0;
+        }
+        int skipped = (int) Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        checkOpen();
+        return buffer.remaining();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("流已关闭");
+        }
+    }
+}
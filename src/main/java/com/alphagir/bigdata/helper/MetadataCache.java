@@ -0,0 +1,182 @@
+package com.alphagir.bigdata.helper;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 客户端元数据缓存：按条目数做 LRU 淘汰并带 TTL，不存在的路径同样缓存（负缓存）。
+ * 修改类操作由 HdfsApi 负责调用 invalidate
+ */
+public class MetadataCache {
+
+    interface Loader {
+        /**
+         * 加载文件状态，路径不存在时返回 null
+         */
+        FileStatus load(Path path) throws IOException;
+    }
+
+    private static final class Entry {
+        private final FileStatus status;
+        private final long expiresAt;
+
+        private Entry(FileStatus status, long expiresAt) {
+            this.status = status;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final long ttlMillis;
+    private final LinkedHashMap<Path, Entry> entries;
+    // 正在加载的路径及其失效代数：加载期间被 invalidate 的结果已经过时，不能写回缓存
+    private final Map<Path, long[]> loading = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    MetadataCache(final int maxEntries, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        // accessOrder = true，按访问顺序排列，最久未访问的条目在最前面
+        this.entries = new LinkedHashMap<Path, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    FileStatus get(Path path, Loader loader) throws IOException {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = entries.get(path);
+            if (entry != null && entry.expiresAt > now) {
+                hits.incrementAndGet();
+                return entry.status;
+            }
+        }
+        misses.incrementAndGet();
+        long[] generation;
+        long expected;
+        synchronized (this) {
+            // 数组第一个元素为失效代数，第二个元素为正在加载的线程数
+            generation = loading.computeIfAbsent(path, p -> new long[2]);
+            generation[1]++;
+            expected = generation[0];
+        }
+        FileStatus status = null;
+        boolean loaded = false;
+        try {
+            // 加载过程不持锁，避免一次慢RPC阻塞其它路径的查询
+            status = loader.load(path);
+            loaded = true;
+        } finally {
+            // 核对代数、写回缓存和移除加载记录必须在同一个同步块中完成：
+            // 移除之后才执行的 invalidate 找不到加载记录，无法再阻止过时的结果写回
+            synchronized (this) {
+                if (loaded && generation[0] == expected) {
+                    entries.put(path, new Entry(status, System.currentTimeMillis() + ttlMillis));
+                }
+                if (--generation[1] == 0) {
+                    loading.remove(path);
+                }
+            }
+        }
+        return status;
+    }
+
+    /**
+     * 使路径本身及其父目录的缓存失效
+     */
+    synchronized void invalidate(Path path) {
+        remove(path);
+        if (path.getParent() != null) {
+            remove(path.getParent());
+        }
+    }
+
+    private void bumpGeneration(Path path) {
+        long[] generation = loading.get(path);
+        if (generation != null) {
+            generation[0]++;
+        }
+    }
+
+    /**
+     * 使路径、父目录以及路径下所有子孙的缓存失效，用于删除、重命名等影响整棵子树的操作
+     */
+    synchronized void invalidateTree(Path path) {
+        invalidate(path);
+        String prefix = path.toString().endsWith("/") ? path.toString() : path.toString() + "/";
+        for (Map.Entry<Path, long[]> e : loading.entrySet()) {
+            if (e.getKey().toString().startsWith(prefix)) {
+                e.getValue()[0]++;
+            }
+        }
+        Iterator<Path> it = entries.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().toString().startsWith(prefix)) {
+                it.remove();
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        for (long[] generation : loading.values()) {
+            generation[0]++;
+        }
+        invalidations.addAndGet(entries.size());
+        entries.clear();
+    }
+
+    private void remove(Path path) {
+        bumpGeneration(path);
+        if (entries.remove(path) != null) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return "MetadataCache{size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + ", invalidations=" + getInvalidationCount() + "}";
+    }
+}
@@ -0,0 +1,151 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.TransferPriorityEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 按 BlockLocation 的边界把 HDFS 文件切分成多个区间，并发地用定位读读取，
+ * 直接写入预先分配好大小的本地文件的对应位置；读取的同时计算每个块的 CRC，
+ * 下载完成后与 HDFS 的文件校验和比对，一致后才重命名为目标文件
+ */
+@Slf4j
+class ParallelDownloader {
+
+    private final HdfsApi api;
+    private final FileSystem fs;
+    private final HdfsCopyEngine copyEngine;
+    private final TransferThrottle throttle;
+
+    ParallelDownloader(HdfsApi api) {
+        this.api = api;
+        this.fs = api.getFs();
+        this.copyEngine = api.getCopyEngine();
+        this.throttle = api.throttle(TransferPriorityEnum.BULK);
+    }
+
+    File download(final Path sPath, File dest, int parallelism, boolean verify)
+            throws IOException, InterruptedException {
+        final FileStatus status = api.execute("downloadFile", () -> fs.getFileStatus(sPath));
+        if (status.isDirectory()) {
+            throw new IOException(sPath + " 是目录，无法按文件下载");
+        }
+        // 与 copyToLocalFile 的语义保持一致：目标是已存在的目录时下载到该目录下
+        final File target = dest.isDirectory() ? new File(dest, sPath.getName()) : dest;
+        final long len = status.getLen();
+
+        // 纠删码文件的校验和按块组计算，与按块下载的区间不对应，不做校验
+        final FileChecksum expected = verify && len > 0 && !status.isErasureCoded()
+                ? api.execute("downloadFile.checksum", () -> fs.getFileChecksum(sPath)) : null;
+        final HdfsChecksums.Spec spec = expected == null ? null : HdfsChecksums.spec(expected);
+        if (expected != null && spec == null) {
+            log.info(sPath + " 的校验和类型 " + expected.getAlgorithmName() + " 不支持本地校验，跳过校验");
+        }
+        BlockLocation[] blocks = api.execute("downloadFile.locations",
+                () -> fs.getFileBlockLocations(status, 0, len));
+
+        File tmp = new File(target.getAbsoluteFile().getParentFile(), "." + target.getName() + ".downloading");
+        long start = System.currentTimeMillis();
+        ThreadPoolExecutor pool = HdfsThreadPools.newBoundedPool("hdfs-download", parallelism, parallelism);
+        List<Future<byte[]>> futures = new ArrayList<>(blocks.length);
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // 预先设置文件长度，各区间直接写入自己的偏移位置
+            if (len > 0) {
+                channel.write(ByteBuffer.allocate(1), len - 1);
+            }
+            for (BlockLocation block : blocks) {
+                final long offset = block.getOffset();
+                final long length = block.getLength();
+                futures.add(pool.submit(() -> api.execute("downloadFile.block",
+                        () -> readBlock(sPath, offset, length, channel, spec))));
+            }
+            List<byte[]> digests = HdfsThreadPools.awaitAll(futures);
+            channel.force(false);
+
+            if (spec != null) {
+                FileChecksum actual = HdfsChecksums.combine(spec, digests);
+                if (!expected.equals(actual)) {
+                    throw new IOException("下载的文件校验和不一致：" + sPath + "，期望 " + expected + "，实际 " + actual);
+                }
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            HdfsThreadPools.cancelAll(futures);
+            Files.deleteIfExists(tmp.toPath());
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        api.getMetrics().bytesRead("downloadFile", len);
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        log.info("文件下载至：" + target + "，块数：" + blocks.length + "，并发数：" + parallelism
+                + (spec != null ? "，校验和一致" : "")
+                + "，吞吐量：" + String.format("%.2f", len / 1024.0 / 1024.0 / (elapsed / 1000.0)) + "MiB/s");
+        return target;
+    }
+
+    /**
+     * 读取一个块并写入本地文件，返回该块的 MD5-of-CRC（不校验时返回 null）
+     */
+    private byte[] readBlock(Path sPath, long offset, long length, FileChannel channel, HdfsChecksums.Spec spec)
+            throws IOException {
+        HdfsChecksums.BlockDigest digest = spec == null ? null : spec.newBlockDigest();
+        ByteBuffer buffer = copyEngine.acquire();
+        try (FSDataInputStream in = fs.open(sPath)) {
+            int capacity = digest == null ? buffer.capacity() : digest.usableCapacity(buffer);
+            long position = offset;
+            long end = offset + length;
+            if (!buffer.hasArray()) {
+                // 直接内存缓冲区无法做定位读，改为 seek 后按 ByteBuffer 顺序读
+                in.seek(offset);
+            }
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(capacity, end - position));
+                // 读满缓冲区再计算 CRC，保证每次计算都落在 CRC 分段边界上
+                while (buffer.hasRemaining()) {
+                    int n = buffer.hasArray()
+                            ? in.read(position + buffer.position(), buffer.array(),
+                            buffer.arrayOffset() + buffer.position(), buffer.remaining())
+                            : in.read(buffer);
+                    if (n < 0) {
+                        throw new IOException("读取到文件末尾，" + sPath + " 在下载过程中被截断");
+                    }
+                    if (buffer.hasArray()) {
+                        buffer.position(buffer.position() + n);
+                    }
+                }
+                buffer.flip();
+                if (digest != null) {
+                    digest.update(buffer);
+                }
+                throttle.acquire(buffer.remaining());
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            }
+        } finally {
+            copyEngine.release(buffer);
+        }
+        return digest == null ? null : digest.finish();
+    }
+}
@@ -0,0 +1,115 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.HdfsFileStatus;
+import com.alphagir.bigdata.model.TransferPriorityEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 将本地大文件按块对齐切分，并发写入临时分片文件，最后通过 concat 合并为目标文件
+ */
+@Slf4j
+class ParallelUploader {
+
+    private final HdfsApi api;
+    private final FileSystem fs;
+    private final HdfsCopyEngine copyEngine;
+    private final TransferThrottle throttle;
+
+    ParallelUploader(HdfsApi api) {
+        this.api = api;
+        this.fs = api.getFs();
+        this.copyEngine = api.getCopyEngine();
+        this.throttle = api.throttle(TransferPriorityEnum.BULK);
+    }
+
+    HdfsFileStatus upload(final File srcFile, final Path dPath, int parallelism)
+            throws IOException, InterruptedException {
+        final long len = srcFile.length();
+        final long blockSize = fs.getDefaultBlockSize(dPath);
+        final short replication = fs.getDefaultReplication(dPath);
+
+        // 小于一个块或者不需要并发时，直接走单流上传
+        if (len <= blockSize || parallelism <= 1) {
+            try (FileInputStream in = new FileInputStream(srcFile)) {
+                return api.uploadFile(in, dPath);
+            }
+        }
+
+        // 每个分片是块大小的整数倍，分片数量约为并发数的4倍，便于负载均衡
+        long blocks = (len + blockSize - 1) / blockSize;
+        long blocksPerPart = Math.max(1, (blocks + parallelism * 4L - 1) / (parallelism * 4L));
+        long partSize = blocksPerPart * blockSize;
+        int partCount = (int) ((len + partSize - 1) / partSize);
+
+        // 分片和目标文件放在同一目录下，满足 concat 的要求
+        List<Path> parts = PartFiles.partPaths(dPath, partCount);
+
+        long start = System.currentTimeMillis();
+        ThreadPoolExecutor pool = HdfsThreadPools.newBoundedPool("hdfs-upload", parallelism, parallelism);
+        try (FileChannel channel = FileChannel.open(srcFile.toPath(), StandardOpenOption.READ)) {
+            List<Future<Long>> futures = new ArrayList<>(partCount);
+            for (int i = 0; i < partCount; i++) {
+                final Path part = parts.get(i);
+                final long offset = i * partSize;
+                final long length = Math.min(partSize, len - offset);
+                futures.add(pool.submit(() -> api.execute("uploadFile.part",
+                        () -> writePart(channel, offset, length, part, replication, blockSize))));
+            }
+            HdfsThreadPools.awaitAll(futures);
+            api.executeOnce("uploadFile.concat", () -> {
+                PartFiles.stitch(api, parts, dPath);
+                return null;
+            });
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            PartFiles.deleteQuietly(fs, parts);
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+
+        api.getMetrics().bytesWritten("uploadFile", len);
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        log.info(dPath + " 并行写入成功！分片数：" + partCount + "，并发数：" + parallelism
+                + "，吞吐量：" + String.format("%.2f", len / 1024.0 / 1024.0 / (elapsed / 1000.0)) + "MiB/s");
+        return api.execute("uploadFile", () -> api.getOneFileStatus(dPath));
+    }
+
+    private long writePart(FileChannel channel, long offset, long length, Path part,
+                           short replication, long blockSize) throws IOException {
+        ByteBuffer buffer = copyEngine.acquire();
+        long position = offset;
+        long end = offset + length;
+        // 分片必须使用与目标文件相同的块大小，否则无法 concat
+        try (FSDataOutputStream os = fs.create(part, true, copyEngine.getBufferSize(), replication, blockSize)) {
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                int n = channel.read(buffer, position);
+                if (n < 0) {
+                    throw new IOException("本地文件在上传过程中被截断：" + part);
+                }
+                buffer.flip();
+                throttle.acquire(n);
+                copyEngine.write(buffer, os);
+                position += n;
+            }
+        } finally {
+            copyEngine.release(buffer);
+        }
+        return length;
+    }
+}
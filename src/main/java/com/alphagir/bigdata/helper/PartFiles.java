@@ -0,0 +1,94 @@
+package com.alphagir.bigdata.helper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 分片并发写入时使用的临时分片文件：命名、concat 合并以及清理
+ */
+@Slf4j
+final class PartFiles {
+
+    private PartFiles() {
+    }
+
+    /**
+     * 分片和目标文件放在同一目录下，满足 concat 的要求
+     */
+    static List<Path> partPaths(Path dPath, int partCount) {
+        String prefix = "." + dPath.getName() + "._PART_" + UUID.randomUUID() + "_";
+        List<Path> parts = new ArrayList<>(partCount);
+        for (int i = 0; i < partCount; i++) {
+            parts.add(new Path(dPath.getParent(), prefix + i));
+        }
+        return parts;
+    }
+
+    /**
+     * 把所有分片合并到第一个分片上，再覆盖 rename 为目标文件，目标文件不会出现缺失的窗口；
+     * 文件系统不支持 concat 时按顺序复制到新文件。concat 不是幂等的，必须通过 executeOnce 调用
+     */
+    static void stitch(HdfsApi api, List<Path> parts, Path dPath) throws IOException {
+        FileSystem fs = api.getFs();
+        Path merged = parts.get(0);
+        Path[] rest = parts.subList(1, parts.size()).toArray(new Path[0]);
+        if (rest.length > 0) {
+            try {
+                fs.concat(merged, rest);
+            } catch (UnsupportedOperationException e) {
+                log.info(fs.getUri() + " 不支持 concat，按顺序复制分片");
+                merged = concatByCopy(api, parts);
+            }
+        }
+        try {
+            api.rename(merged, dPath, Options.Rename.OVERWRITE);
+        } catch (IOException | RuntimeException e) {
+            if (!merged.equals(parts.get(0))) {
+                deleteQuietly(fs, Collections.singletonList(merged));
+            }
+            throw e;
+        } finally {
+            api.invalidate(dPath);
+        }
+    }
+
+    /**
+     * 复制到与分片同名前缀的新文件，复制完成后删除分片；失败时删除不完整的新文件，分片由调用方清理
+     */
+    private static Path concatByCopy(HdfsApi api, List<Path> parts) throws IOException {
+        FileSystem fs = api.getFs();
+        Path merged = parts.get(0).suffix("_MERGED");
+        try (FSDataOutputStream os = fs.create(merged, true)) {
+            for (Path part : parts) {
+                try (FSDataInputStream in = fs.open(part)) {
+                    api.getCopyEngine().copy(in, os);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(fs, Collections.singletonList(merged));
+            throw e;
+        }
+        deleteQuietly(fs, parts);
+        return merged;
+    }
+
+    static void deleteQuietly(FileSystem fs, List<Path> parts) {
+        for (Path part : parts) {
+            try {
+                fs.delete(part, false);
+            } catch (IOException e) {
+                log.warn("清理分片 " + part + " 失败：" + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.alphagir.bigdata.helper;
+
+import lombok.Data;
+import org.apache.hadoop.conf.Configuration;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HdfsApi.readRecords / collectRecords 的可选项
+ */
+@Data
+public class RecordReadOptions {
+
+    private Charset charset = StandardCharsets.UTF_8;
+
+    /** 记录分隔符，按 charset 编码后逐字节匹配；为空时按 \n、\r\n 或 \r 分行 */
+    private String delimiter;
+
+    /** 超过该长度（字节）的记录被跳过，避免单条异常记录耗尽内存 */
+    private int maxRecordLength = HdfsApiConfigKeys.READ_MAX_RECORD_LENGTH_DEFAULT;
+
+    /** collectRecords 同时处理的分片数 */
+    private int parallelism = HdfsApiConfigKeys.READ_SPLIT_PARALLELISM_DEFAULT;
+
+    public static RecordReadOptions fromConf(Configuration conf) {
+        RecordReadOptions options = new RecordReadOptions();
+        options.setMaxRecordLength(conf.getInt(HdfsApiConfigKeys.READ_MAX_RECORD_LENGTH_KEY,
+                HdfsApiConfigKeys.READ_MAX_RECORD_LENGTH_DEFAULT));
+        options.setParallelism(conf.getInt(HdfsApiConfigKeys.READ_SPLIT_PARALLELISM_KEY,
+                HdfsApiConfigKeys.READ_SPLIT_PARALLELISM_DEFAULT));
+        return options;
+    }
+
+    byte[] delimiterBytes() {
+        return delimiter == null || delimiter.isEmpty() ? null : delimiter.getBytes(charset);
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.TransferPriorityEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * 按块边界把文件切分为多个分片并发读取记录，每个分片累加到独立的结果上，最后按分片顺序合并；
+ * 压缩文件只能整体解压，作为一个分片处理
+ */
+@Slf4j
+class RecordSplitProcessor {
+
+    private final HdfsApi api;
+    private final FileSystem fs;
+    private final RecordReadOptions options;
+
+    RecordSplitProcessor(HdfsApi api, RecordReadOptions options) {
+        this.api = api;
+        this.fs = api.getFs();
+        this.options = options;
+    }
+
+    <A> A collect(final Path path, final Supplier<A> supplier, final BiConsumer<A, String> accumulator,
+                  BinaryOperator<A> combiner) throws IOException, InterruptedException {
+        final FileStatus status = api.execute("collectRecords", () -> fs.getFileStatus(path));
+        if (status.isDirectory()) {
+            throw new IOException(path + " 是目录，无法按记录读取");
+        }
+        BlockLocation[] blocks = status.getLen() == 0 ? new BlockLocation[0]
+                : api.execute("collectRecords.locations", () -> fs.getFileBlockLocations(status, 0, status.getLen()));
+        if (blocks.length <= 1 || api.readCodec(path) != null) {
+            return collectSplit(path, 0, Long.MAX_VALUE, supplier, accumulator);
+        }
+
+        long start = System.currentTimeMillis();
+        int parallelism = Math.max(1, Math.min(options.getParallelism(), blocks.length));
+        ThreadPoolExecutor pool = HdfsThreadPools.newBoundedPool("hdfs-record-split", parallelism, parallelism);
+        List<Future<A>> futures = new ArrayList<>(blocks.length);
+        try {
+            for (BlockLocation block : blocks) {
+                final long offset = block.getOffset();
+                final long end = offset + block.getLength();
+                futures.add(pool.submit(() -> collectSplit(path, offset, end, supplier, accumulator)));
+            }
+            List<A> results = HdfsThreadPools.awaitAll(futures);
+            A result = results.get(0);
+            for (int i = 1; i < results.size(); i++) {
+                result = combiner.apply(result, results.get(i));
+            }
+            log.info("按记录处理 " + path + " 完成，分片数：" + blocks.length + "，并发数：" + parallelism
+                    + "，耗时：" + (System.currentTimeMillis() - start) + "ms");
+            return result;
+        } finally {
+            HdfsThreadPools.cancelAll(futures);
+            pool.shutdownNow();
+        }
+    }
+
+    private <A> A collectSplit(final Path path, final long start, final long end, Supplier<A> supplier,
+                               BiConsumer<A, String> accumulator) throws IOException, InterruptedException {
+        A result = supplier.get();
+        final TransferThrottle throttle = api.throttle(TransferPriorityEnum.BULK);
+        try (HdfsRecordReader reader = api.execute("collectRecords.open", () -> new HdfsRecordReader(api.openForRead(path),
+                options, api.getCopyEngine().getBufferSize(), start, end, throttle))) {
+            while (reader.hasNext()) {
+                accumulator.accept(result, reader.next());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,230 @@
+package com.alphagir.bigdata.helper;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.fs.RemoteIterator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并行递归遍历目录树。每个目录通过 listStatusIterator 分页读取，结果以回调或迭代器的方式流式返回，
+ * 内存占用与目录大小无关。
+ * <p>
+ * PathFilter 在遍历时下推：被过滤掉的目录既不返回也不再向下遍历。
+ */
+class RecursiveLister {
+
+    /** 不限制遍历深度 */
+    static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+
+    interface Sink {
+        void accept(FileStatus status) throws IOException, InterruptedException;
+    }
+
+    private static final Object END = new Object();
+
+    private final HdfsApi api;
+    private final FileSystem fs;
+    private final int parallelism;
+    // 每次 execute 取出的条目数，与 NameNode 单次 listing 返回的条目数（dfs.ls.limit）一致
+    private final int pageSize;
+
+    RecursiveLister(HdfsApi api, int parallelism) {
+        this.api = api;
+        this.fs = api.getFs();
+        this.parallelism = Math.max(1, parallelism);
+        this.pageSize = Math.max(1, api.getConf().getInt("dfs.ls.limit", 1000));
+    }
+
+    /**
+     * 遍历 root 下的所有条目并回调 sink，sink 会被多个线程并发调用。方法在遍历结束后返回
+     */
+    void list(Path root, PathFilter filter, int maxDepth, Sink sink) throws IOException, InterruptedException {
+        ThreadPoolExecutor pool = HdfsThreadPools.newFixedPool("hdfs-list", parallelism);
+        try {
+            Walk walk = new Walk(pool, filter, maxDepth, sink);
+            walk.start(root);
+            walk.done.get();
+        } catch (ExecutionException e) {
+            throw HdfsThreadPools.unwrap(e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 以迭代器方式返回遍历结果。内部队列有界，消费者读取慢时遍历线程会被阻塞；
+     * 提前放弃遍历时必须调用 close
+     */
+    StatusIterator iterator(Path root, PathFilter filter, int maxDepth, int queueCapacity) throws IOException {
+        return new StatusIterator(root, filter, maxDepth, queueCapacity);
+    }
+
+    final class StatusIterator implements CloseableRemoteIterator<FileStatus> {
+
+        private final BlockingQueue<Object> queue;
+        private final ThreadPoolExecutor pool;
+        private Object next;
+        private boolean finished;
+
+        private StatusIterator(Path root, PathFilter filter, int maxDepth, int queueCapacity) throws IOException {
+            this.queue = new ArrayBlockingQueue<>(Math.max(2, queueCapacity));
+            this.pool = HdfsThreadPools.newFixedPool("hdfs-list", parallelism);
+            Walk walk = new Walk(pool, filter, maxDepth, queue::put);
+            walk.done.whenComplete((v, t) -> {
+                try {
+                    queue.put(t == null ? END : t);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            try {
+                walk.start(root);
+            } catch (InterruptedException e) {
+                close();
+                throw new InterruptedIOException("遍历目录被中断：" + root);
+            }
+        }
+
+        @Override
+        public boolean hasNext() throws IOException {
+            if (finished) {
+                return false;
+            }
+            if (next == null) {
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    close();
+                    throw new InterruptedIOException("遍历目录被中断");
+                }
+            }
+            if (next == END) {
+                close();
+                return false;
+            }
+            if (next instanceof Throwable) {
+                Throwable t = (Throwable) next;
+                close();
+                throw t instanceof IOException ? (IOException) t : new IOException(t);
+            }
+            return true;
+        }
+
+        @Override
+        public FileStatus next() throws IOException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            FileStatus status = (FileStatus) next;
+            next = null;
+            return status;
+        }
+
+        @Override
+        public void close() {
+            finished = true;
+            pool.shutdownNow();
+            queue.clear();
+        }
+    }
+
+    private final class Walk {
+
+        private final ThreadPoolExecutor pool;
+        private final PathFilter filter;
+        private final int maxDepth;
+        private final Sink sink;
+        private final AtomicInteger pending = new AtomicInteger();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Walk(ThreadPoolExecutor pool, PathFilter filter, int maxDepth, Sink sink) {
+            this.pool = pool;
+            this.filter = filter;
+            this.maxDepth = maxDepth <= 0 ? UNLIMITED_DEPTH : maxDepth;
+            this.sink = sink;
+        }
+
+        private void start(Path root) throws IOException, InterruptedException {
+            FileStatus status = api.execute("listFiles", () -> fs.getFileStatus(root));
+            if (status.isDirectory()) {
+                submit(root, 1);
+            } else {
+                // 根路径是文件时只返回文件本身
+                if (filter == null || filter.accept(root)) {
+                    sink.accept(status);
+                }
+                done.complete(null);
+            }
+        }
+
+        private void submit(Path dir, int depth) {
+            pending.incrementAndGet();
+            try {
+                pool.execute(() -> run(dir, depth));
+            } catch (RejectedExecutionException e) {
+                done.completeExceptionally(e);
+                pending.decrementAndGet();
+            }
+        }
+
+        private void run(Path dir, int depth) {
+            try {
+                if (!done.isDone()) {
+                    listOne(dir, depth);
+                }
+            } catch (Throwable t) {
+                done.completeExceptionally(t);
+            } finally {
+                if (pending.decrementAndGet() == 0) {
+                    done.complete(null);
+                }
+            }
+        }
+
+        /**
+         * 每次 execute 取出一页条目，而不是每个条目一次 doAs、重试预算和指标更新。
+         * 只对取页重试，不重试整个目录：已交给 sink 的条目和已提交的子目录不会因重试而重复。
+         * DFS 的列表迭代器在 hasNext 失败时不会前移，重试接着本页已取出的条目继续
+         */
+        private void listOne(Path dir, int depth) throws IOException, InterruptedException {
+            RemoteIterator<FileStatus> it = api.execute("listFiles", () -> fs.listStatusIterator(dir));
+            List<FileStatus> page = new ArrayList<>(Math.min(pageSize, 1024));
+            boolean more = true;
+            while (more && !done.isDone()) {
+                page.clear();
+                more = api.execute("listFiles.page", () -> {
+                    while (page.size() < pageSize && it.hasNext()) {
+                        page.add(it.next());
+                    }
+                    return page.size() >= pageSize;
+                });
+                for (FileStatus status : page) {
+                    if (done.isDone()) {
+                        return;
+                    }
+                    if (filter != null && !filter.accept(status.getPath())) {
+                        continue;
+                    }
+                    sink.accept(status);
+                    if (status.isDirectory() && depth < maxDepth) {
+                        submit(status.getPath(), depth + 1);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.alphagir.bigdata.helper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 可从任意位置重新打开的上传数据源，供 HdfsApi.uploadFileResumable 在中断后从检查点继续上传
+ */
+public interface ResumableSource {
+
+    /**
+     * 数据源的标识，检查点中记录的标识与本次不一致时视为不同的数据，从头上传
+     */
+    String getId();
+
+    /**
+     * 打开从 offset 开始的数据流，由调用方负责关闭
+     */
+    InputStream open(long offset) throws IOException;
+
+    /**
+     * 本地文件数据源，以路径、大小和修改时间作为标识
+     */
+    static ResumableSource of(final File file) {
+        return new ResumableSource() {
+            @Override
+            public String getId() {
+                return file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+            }
+
+            @Override
+            public InputStream open(long offset) throws IOException {
+                FileInputStream in = new FileInputStream(file);
+                try {
+                    in.getChannel().position(offset);
+                } catch (IOException e) {
+                    in.close();
+                    throw e;
+                }
+                return in;
+            }
+        };
+    }
+}
@@ -0,0 +1,32 @@
+package com.alphagir.bigdata.helper;
+
+import lombok.Data;
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * HdfsApi.uploadFileResumable 的可选项
+ */
+@Data
+public class ResumableUploadOptions {
+
+    /** 每写入多少字节刷新一次并记录检查点，中断后最多重传这么多数据 */
+    private long checkpointBytes = HdfsApiConfigKeys.RESUMABLE_CHECKPOINT_BYTES_DEFAULT;
+
+    /** 为 true 时记录检查点前用 hsync 落盘，否则用 hflush 只保证数据已写入所有 DataNode */
+    private boolean sync = HdfsApiConfigKeys.RESUMABLE_SYNC_DEFAULT;
+
+    /** 暂存文件的租约被中断的写入者占用时，等待租约恢复的最长时间（毫秒） */
+    private long leaseRecoveryTimeoutMillis = HdfsApiConfigKeys.RESUMABLE_LEASE_RECOVERY_TIMEOUT_MS_DEFAULT;
+
+    public static ResumableUploadOptions fromConf(Configuration conf) {
+        ResumableUploadOptions options = new ResumableUploadOptions();
+        options.setCheckpointBytes(conf.getLong(HdfsApiConfigKeys.RESUMABLE_CHECKPOINT_BYTES_KEY,
+                HdfsApiConfigKeys.RESUMABLE_CHECKPOINT_BYTES_DEFAULT));
+        options.setSync(conf.getBoolean(HdfsApiConfigKeys.RESUMABLE_SYNC_KEY,
+                HdfsApiConfigKeys.RESUMABLE_SYNC_DEFAULT));
+        options.setLeaseRecoveryTimeoutMillis(conf.getLong(HdfsApiConfigKeys.RESUMABLE_LEASE_RECOVERY_TIMEOUT_MS_KEY,
+                HdfsApiConfigKeys.RESUMABLE_LEASE_RECOVERY_TIMEOUT_MS_DEFAULT));
+        return options;
+    }
+
+}
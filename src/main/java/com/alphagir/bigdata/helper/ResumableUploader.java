@@ -0,0 +1,295 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.HdfsFileStatus;
+import com.alphagir.bigdata.model.TransferPriorityEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.protocol.QuotaExceededException;
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.ipc.RetriableException;
+import org.apache.hadoop.security.AccessControlException;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 可断点续传的流式上传。数据先写入目标旁的暂存文件，每写入 checkpointBytes 字节 hflush 一次，
+ * 并把已提交的偏移量和数据源标识原子地写入检查点文件。中断后先核对暂存文件长度，截掉检查点之后未确认的数据，
+ * 再从检查点用 append 继续写入；全部写完后原子地 rename 为目标文件。
+ * <p>
+ * 同一次调用内只有可重试的失败才会自动续传：NameNode 切换、超时等（见 ExponentialBackoffRetryPolicy.isRetriable），
+ * 以及写入暂存文件时 DataNode 故障、管道中断、租约被收回。数据源的错误、权限和配额等确定性错误直接抛出，
+ * 排除原因后再次调用即可从检查点继续。
+ * <p>
+ * 暂存文件：.目标文件名._UPLOADING_，检查点文件：.目标文件名._UPLOADING_.offset，内容为 "偏移量\t数据源标识"
+ */
+@Slf4j
+class ResumableUploader {
+
+    private static final String STAGING_SUFFIX = "._UPLOADING_";
+    private static final String CHECKPOINT_SUFFIX = ".offset";
+
+    private final HdfsApi api;
+    private final FileSystem fs;
+    private final HdfsCopyEngine copyEngine;
+    private final ResumableUploadOptions options;
+
+    ResumableUploader(HdfsApi api, ResumableUploadOptions options) {
+        this.api = api;
+        this.fs = api.getFs();
+        this.copyEngine = api.getCopyEngine();
+        this.options = options;
+    }
+
+    HdfsFileStatus upload(final ResumableSource source, final Path dPath) throws IOException, InterruptedException {
+        final Path staging = new Path(dPath.getParent(), "." + dPath.getName() + STAGING_SUFFIX);
+        final Path checkpoint = staging.suffix(CHECKPOINT_SUFFIX);
+        final String sourceId = source.getId();
+        long start = System.currentTimeMillis();
+        final long[] sent = new long[1];
+        // 每次尝试（包括重试策略触发的重试）都先根据 HDFS 上的暂存文件和检查点确定续传位置
+        long len = api.execute("uploadFile.resumable", () -> {
+            long offset = prepare(staging, checkpoint, sourceId);
+            long end = transfer(source, staging, checkpoint, sourceId, offset);
+            sent[0] = end - offset;
+            return end;
+        });
+
+        // rename 成功后检查点已无用，删除失败只留下一个小文件，下次上传同一目标时会因数据源不一致被忽略
+        api.executeOnce("uploadFile.resumable.rename", () -> {
+            api.rename(staging, dPath, Options.Rename.OVERWRITE);
+            return null;
+        });
+        try {
+            api.execute("uploadFile.resumable.cleanup", () -> fs.delete(checkpoint, false));
+        } catch (IOException e) {
+            log.warn("删除检查点 " + checkpoint + " 失败：" + e.getMessage());
+        }
+        api.invalidate(staging);
+        api.invalidate(dPath);
+        api.getMetrics().bytesWritten("uploadFile.resumable", sent[0]);
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        log.info(dPath + " 续传写入成功！文件大小：" + len + "，最后一次尝试写入：" + sent[0] + "，吞吐量："
+                + String.format("%.2f", sent[0] / 1024.0 / 1024.0 / (elapsed / 1000.0)) + "MiB/s");
+        return api.execute("uploadFile", () -> api.getOneFileStatus(dPath));
+    }
+
+    /**
+     * 核对暂存文件和检查点，返回续传的起始偏移量；没有可用的暂存文件时返回 0
+     */
+    private long prepare(Path staging, Path checkpoint, String sourceId) throws IOException, InterruptedException {
+        long committed = readCheckpoint(checkpoint, sourceId);
+        FileStatus status = getStatus(staging);
+        if (status == null) {
+            return 0;
+        }
+        if (committed <= 0) {
+            // 删除会同时释放仍被占用的租约，之后才能重新 create
+            fs.delete(staging, false);
+            return 0;
+        }
+        recoverLease(staging);
+        long staged = fs.getFileStatus(staging).getLen();
+        if (staged < committed) {
+            log.warn(staging + " 的长度 " + staged + " 小于检查点 " + committed + "，从头上传");
+            fs.delete(staging, false);
+            return 0;
+        }
+        if (staged > committed) {
+            // 检查点之后写入的数据未经确认，截掉后从检查点继续
+            try {
+                if (!fs.truncate(staging, committed)) {
+                    waitClosed(staging);
+                }
+            } catch (UnsupportedOperationException e) {
+                // 不支持截断的文件系统上已写入的数据仍是数据源的前缀，从暂存文件末尾继续
+                log.info(fs.getScheme() + " 文件系统不支持截断，从暂存文件末尾 " + staged + " 继续上传");
+                return staged;
+            }
+            log.info(staging + " 截掉检查点之后未确认的 " + (staged - committed) + " 字节");
+        }
+        log.info(staging + " 从检查点 " + committed + " 继续上传");
+        return committed;
+    }
+
+    /**
+     * 从 offset 开始写入直到数据源结束，返回暂存文件的最终长度
+     */
+    private long transfer(ResumableSource source, Path staging, Path checkpoint, String sourceId, long offset)
+            throws IOException {
+        ByteBuffer buffer = copyEngine.acquire();
+        try (InputStream in = source.open(offset);
+             FSDataOutputStream raw = offset == 0 ? fs.create(staging, true) : fs.append(staging)) {
+            if (offset == 0) {
+                writeCheckpoint(checkpoint, 0, sourceId);
+            }
+            // 只有写入暂存文件的失败需要区分能否续传，数据源的错误原样抛出
+            OutputStream out = api.throttle(TransferPriorityEnum.BULK).wrap(raw);
+            ReadableByteChannel channel = buffer.hasArray() ? null : Channels.newChannel(in);
+            long position = offset;
+            long unflushed = 0;
+            while (true) {
+                buffer.clear();
+                int n;
+                if (buffer.hasArray()) {
+                    n = in.read(buffer.array(), buffer.arrayOffset(), buffer.capacity());
+                    if (n > 0) {
+                        buffer.position(n);
+                    }
+                } else {
+                    n = channel.read(buffer);
+                }
+                if (n < 0) {
+                    break;
+                }
+                buffer.flip();
+                try {
+                    copyEngine.write(buffer, out);
+                } catch (IOException e) {
+                    throw classify(e);
+                }
+                position += n;
+                unflushed += n;
+                if (unflushed >= options.getCheckpointBytes()) {
+                    commit(raw, checkpoint, position, sourceId);
+                    unflushed = 0;
+                }
+            }
+            commit(raw, checkpoint, position, sourceId);
+            return position;
+        } finally {
+            copyEngine.release(buffer);
+        }
+    }
+
+    /**
+     * 先确保数据已写入 DataNode，再记录检查点，检查点永远不会超过已确认的数据
+     */
+    private void commit(FSDataOutputStream out, Path checkpoint, long position, String sourceId) throws IOException {
+        try {
+            if (options.isSync()) {
+                out.hsync();
+            } else {
+                out.hflush();
+            }
+        } catch (IOException e) {
+            throw classify(e);
+        }
+        writeCheckpoint(checkpoint, position, sourceId);
+    }
+
+    /**
+     * 写入暂存文件失败（DataNode 故障、管道中断、租约被收回）时从检查点续传即可恢复，包装为 RetriableException 交给重试策略；
+     * 权限、配额不足和线程被中断重试也不会成功，原样抛出
+     */
+    private static IOException classify(IOException e) {
+        IOException cause = e;
+        if (e instanceof RemoteException) {
+            cause = ((RemoteException) e).unwrapRemoteException(AccessControlException.class, QuotaExceededException.class);
+        }
+        if (cause instanceof AccessControlException || cause instanceof QuotaExceededException
+                || cause instanceof InterruptedIOException || cause instanceof RetriableException) {
+            return cause;
+        }
+        return new RetriableException(e);
+    }
+
+    /**
+     * 先写临时文件再覆盖 rename，中途失败不会留下不完整的检查点
+     */
+    private void writeCheckpoint(Path checkpoint, long position, String sourceId) throws IOException {
+        Path tmp = checkpoint.suffix(".tmp");
+        try (FSDataOutputStream out = fs.create(tmp, true)) {
+            out.write((position + "\t" + sourceId + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        api.rename(tmp, checkpoint, Options.Rename.OVERWRITE);
+    }
+
+    /**
+     * 读取检查点中的偏移量；检查点不存在、无法解析或数据源标识不一致时返回 -1
+     */
+    private long readCheckpoint(Path checkpoint, String sourceId) throws IOException {
+        String line;
+        try (FSDataInputStream in = fs.open(checkpoint);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            line = reader.readLine();
+        } catch (FileNotFoundException e) {
+            return -1;
+        }
+        if (line == null) {
+            return -1;
+        }
+        int tab = line.indexOf('\t');
+        if (tab < 0 || !sourceId.equals(line.substring(tab + 1))) {
+            log.info("检查点 " + checkpoint + " 与本次上传的数据源不一致，从头上传");
+            return -1;
+        }
+        try {
+            return Long.parseLong(line.substring(0, tab));
+        } catch (NumberFormatException e) {
+            log.warn("忽略无法解析的检查点 " + checkpoint + "：" + line);
+            return -1;
+        }
+    }
+
+    private FileStatus getStatus(Path path) throws IOException {
+        try {
+            return fs.getFileStatus(path);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 上一次写入者中断时暂存文件仍处于打开状态，恢复租约后长度才是最终值，也才能 append
+     */
+    private void recoverLease(Path staging) throws IOException, InterruptedException {
+        if (!(fs instanceof DistributedFileSystem)) {
+            return;
+        }
+        DistributedFileSystem dfs = (DistributedFileSystem) fs;
+        if (dfs.isFileClosed(staging)) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + options.getLeaseRecoveryTimeoutMillis();
+        while (!dfs.recoverLease(staging)) {
+            if (System.currentTimeMillis() >= deadline) {
+                throw new IOException("等待 " + staging + " 的租约恢复超时");
+            }
+            Thread.sleep(1000L);
+        }
+        log.info(staging + " 的租约已恢复");
+    }
+
+    /**
+     * 截断落在块中间时需要 DataNode 做块恢复，完成后文件才会关闭
+     */
+    private void waitClosed(Path staging) throws IOException, InterruptedException {
+        if (!(fs instanceof DistributedFileSystem)) {
+            return;
+        }
+        DistributedFileSystem dfs = (DistributedFileSystem) fs;
+        long deadline = System.currentTimeMillis() + options.getLeaseRecoveryTimeoutMillis();
+        while (!dfs.isFileClosed(staging)) {
+            if (System.currentTimeMillis() >= deadline) {
+                throw new IOException("等待 " + staging + " 截断完成超时");
+            }
+            Thread.sleep(1000L);
+        }
+    }
+}
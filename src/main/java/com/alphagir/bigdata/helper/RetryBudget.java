@@ -0,0 +1,77 @@
+package com.alphagir.bigdata.helper;
+
+/**
+ * 重试预算：每次调用按比例存入额度，每次重试消耗一个额度，另保留每秒最少可重试次数。
+ * 大面积故障时重试次数被限制在正常调用量的固定比例内，避免重试风暴
+ */
+public class RetryBudget {
+
+    private static volatile RetryBudget global;
+
+    private final double ratio;
+    private final int minRetriesPerSecond;
+    private final double maxBalance;
+
+    private double balance;
+    private long windowStart;
+    private int reserveUsed;
+    private long exhausted;
+
+    /**
+     * @param ratio               每次调用存入的额度，0.2 表示重试最多占调用量的20%
+     * @param minRetriesPerSecond 调用量很少时每秒仍允许的重试次数
+     * @param maxBalance          额度上限，防止长时间空闲后积累过多额度
+     */
+    public RetryBudget(double ratio, int minRetriesPerSecond, double maxBalance) {
+        this.ratio = ratio;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.maxBalance = maxBalance;
+    }
+
+    /**
+     * 进程内共享的全局预算
+     */
+    public static RetryBudget global() {
+        if (global == null) {
+            synchronized (RetryBudget.class) {
+                if (global == null) {
+                    global = new RetryBudget(0.2, 10, 1000);
+                }
+            }
+        }
+        return global;
+    }
+
+    public synchronized void deposit() {
+        balance = Math.min(maxBalance, balance + ratio);
+    }
+
+    public synchronized boolean tryWithdraw() {
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= 1000) {
+            windowStart = now;
+            reserveUsed = 0;
+        }
+        if (reserveUsed < minRetriesPerSecond) {
+            reserveUsed++;
+            return true;
+        }
+        if (balance >= 1) {
+            balance -= 1;
+            return true;
+        }
+        exhausted++;
+        return false;
+    }
+
+    public synchronized double getBalance() {
+        return balance;
+    }
+
+    /**
+     * 因预算耗尽而放弃的重试次数
+     */
+    public synchronized long getExhaustedCount() {
+        return exhausted;
+    }
+}
@@ -0,0 +1,38 @@
+package com.alphagir.bigdata.helper;
+
+import lombok.Data;
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * HdfsApi.sync 的可选项
+ */
+@Data
+public class SyncOptions {
+
+    /** 同时比较和上传的文件数 */
+    private int parallelism = HdfsApiConfigKeys.SYNC_PARALLELISM_DEFAULT;
+
+    /** 长度相同但修改时间不同时，再比较 HDFS 校验和与本地计算的校验和，一致则视为未变化 */
+    private boolean compareChecksum;
+
+    /** 删除目标目录中本地不存在的文件和目录 */
+    private boolean deleteExtraneous;
+
+    /** 删除时跳过回收站 */
+    private boolean skipTrash;
+
+    /** 只生成并打印差异计划，不做任何修改 */
+    private boolean dryRun;
+
+    private TransferProgressListener listener;
+
+    public static SyncOptions fromConf(Configuration conf) {
+        SyncOptions options = new SyncOptions();
+        options.setParallelism(conf.getInt(HdfsApiConfigKeys.SYNC_PARALLELISM_KEY,
+                HdfsApiConfigKeys.SYNC_PARALLELISM_DEFAULT));
+        options.setCompareChecksum(conf.getBoolean(HdfsApiConfigKeys.SYNC_COMPARE_CHECKSUM_KEY,
+                HdfsApiConfigKeys.SYNC_COMPARE_CHECKSUM_DEFAULT));
+        return options;
+    }
+
+}
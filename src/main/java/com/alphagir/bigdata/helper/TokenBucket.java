@@ -0,0 +1,83 @@
+package com.alphagir.bigdata.helper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶限流器，速率可在运行时调整。rate 小于等于0表示不限速
+ */
+public class TokenBucket {
+
+    private double rate;
+    private double capacity;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param rate     每秒产生的令牌数
+     * @param capacity 桶容量，即允许的最大突发量
+     */
+    public TokenBucket(double rate, double capacity) {
+        this.rate = rate;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * 获取 permits 个令牌，不足时阻塞等待；请求量大于桶容量时允许透支，由后续请求等待偿还
+     *
+     * @return 实际等待的纳秒数
+     */
+    public long acquire(double permits) throws InterruptedException {
+        long waited = 0;
+        while (true) {
+            long sleepNanos;
+            synchronized (this) {
+                if (rate <= 0) {
+                    return waited;
+                }
+                refill();
+                if (tokens >= Math.min(permits, capacity)) {
+                    tokens -= permits;
+                    return waited;
+                }
+                double missing = Math.min(permits, capacity) - tokens;
+                sleepNanos = (long) (missing / rate * TimeUnit.SECONDS.toNanos(1));
+            }
+            long start = System.nanoTime();
+            TimeUnit.NANOSECONDS.sleep(Math.max(sleepNanos, TimeUnit.MICROSECONDS.toNanos(100)));
+            waited += System.nanoTime() - start;
+        }
+    }
+
+    public synchronized boolean tryAcquire(double permits) {
+        if (rate <= 0) {
+            return true;
+        }
+        refill();
+        if (tokens >= permits) {
+            tokens -= permits;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void setRate(double rate, double capacity) {
+        refill();
+        this.rate = rate;
+        this.capacity = capacity;
+        this.tokens = Math.min(tokens, capacity);
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        if (rate > 0) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * rate / TimeUnit.SECONDS.toNanos(1));
+        }
+        lastRefill = now;
+    }
+}
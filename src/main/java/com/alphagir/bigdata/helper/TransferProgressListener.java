@@ -0,0 +1,11 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.TransferReport;
+
+/**
+ * 批量传输的进度回调，每完成（或跳过、失败）一个文件回调一次，可能被多个线程并发调用
+ */
+public interface TransferProgressListener {
+
+    void onProgress(String path, TransferReport snapshot);
+}
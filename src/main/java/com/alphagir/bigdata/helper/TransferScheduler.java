@@ -0,0 +1,337 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.TransferPriorityEnum;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.lib.Interns;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 进程内所有 HdfsApi 数据传输共用的带宽调度器。
+ * <p>
+ * 每次写出数据前先按用户令牌桶限速，再向全局令牌桶申请：全局带宽不足时各优先级排队，按权重做加权公平分配
+ * （每个优先级维护虚拟时间，每次放行虚拟时间最小的优先级队首），保证批量任务压满带宽时交互式下载仍能按权重获得带宽。
+ * 限速和权重可在运行时调整，速率小于等于0表示不限速。
+ * <p>
+ * 受调度的传输：uploadFile 系列、下载（HTTP、并行、压缩）、目录上传/同步、copy、本地读缓存拉取、
+ * readRanges、readRecords/collectRecords 以及 HdfsAppender 的写出。
+ * open 返回的流不受调度：调用方自行决定读取节奏，且包装后会丢失 ByteBufferReadable 等能力；
+ * 基于 open 的 readFileToString 同样不受调度，它只适合读取小文件
+ */
+public final class TransferScheduler {
+
+    private static volatile TransferScheduler instance;
+
+    private static final class Waiter {
+        private final double bytes;
+
+        private Waiter(double bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class ClassState {
+        private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+        private volatile double weight;
+        private double virtualTime;
+        private final LongAdder grantedBytes = new LongAdder();
+        private final LongAdder grants = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        // 上一次输出指标时的字节数和时间，用于计算实际速率
+        private long lastBytes;
+        private long lastNanos = System.nanoTime();
+
+        private ClassState(double weight) {
+            this.weight = weight;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<TransferPriorityEnum, ClassState> classes = new EnumMap<>(TransferPriorityEnum.class);
+    private final Map<String, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    private final Map<String, Double> userRates = new ConcurrentHashMap<>();
+
+    private volatile double globalRate;
+    private volatile double burst;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+    private double systemVirtualTime;
+    private volatile double defaultUserRate;
+
+    TransferScheduler(Configuration conf) {
+        this.globalRate = conf.getDouble(HdfsApiConfigKeys.TRANSFER_GLOBAL_BYTES_PER_SECOND_KEY,
+                HdfsApiConfigKeys.TRANSFER_GLOBAL_BYTES_PER_SECOND_DEFAULT);
+        this.defaultUserRate = conf.getDouble(HdfsApiConfigKeys.TRANSFER_USER_BYTES_PER_SECOND_KEY,
+                HdfsApiConfigKeys.TRANSFER_USER_BYTES_PER_SECOND_DEFAULT);
+        this.burst = conf.getLong(HdfsApiConfigKeys.TRANSFER_BURST_BYTES_KEY, HdfsApiConfigKeys.TRANSFER_BURST_BYTES_DEFAULT);
+        this.tokens = burst;
+        classes.put(TransferPriorityEnum.INTERACTIVE, new ClassState(conf.getDouble(
+                HdfsApiConfigKeys.TRANSFER_INTERACTIVE_WEIGHT_KEY, HdfsApiConfigKeys.TRANSFER_INTERACTIVE_WEIGHT_DEFAULT)));
+        classes.put(TransferPriorityEnum.BULK, new ClassState(conf.getDouble(
+                HdfsApiConfigKeys.TRANSFER_BULK_WEIGHT_KEY, HdfsApiConfigKeys.TRANSFER_BULK_WEIGHT_DEFAULT)));
+    }
+
+    /**
+     * 进程内共用的调度器。第一次调用时用 conf 中的 hdfs.api.transfer.* 初始化限速和权重（HdfsApi 创建时传入自己的配置），
+     * 之后的调用忽略 conf，只能通过 setter 在运行时调整
+     */
+    public static TransferScheduler get(Configuration conf) {
+        TransferScheduler scheduler = instance;
+        if (scheduler == null) {
+            synchronized (TransferScheduler.class) {
+                scheduler = instance;
+                if (scheduler == null) {
+                    scheduler = new TransferScheduler(conf);
+                    instance = scheduler;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * 进程内共用的调度器，尚未创建时按默认配置（core-site.xml 等）创建
+     */
+    public static TransferScheduler get() {
+        TransferScheduler scheduler = instance;
+        return scheduler != null ? scheduler : get(new Configuration());
+    }
+
+    /**
+     * 已创建的调度器，尚未有传输时返回 null
+     */
+    static TransferScheduler current() {
+        return instance;
+    }
+
+    TransferThrottle throttle(String user, TransferPriorityEnum priority) {
+        return new TransferThrottle(this, user, priority);
+    }
+
+    /**
+     * 申请传输 bytes 个字节，返回排队等待的纳秒数
+     */
+    long acquire(String user, TransferPriorityEnum priority, long bytes) throws InterruptedException {
+        long start = System.nanoTime();
+        TokenBucket userBucket = userBucket(user);
+        if (userBucket != null) {
+            userBucket.acquire(bytes);
+        }
+        ClassState state = classes.get(priority);
+        if (globalRate > 0) {
+            acquireGlobal(state, bytes);
+        }
+        long waited = System.nanoTime() - start;
+        state.grantedBytes.add(bytes);
+        state.grants.increment();
+        state.waitNanos.add(waited);
+        return waited;
+    }
+
+    private void acquireGlobal(ClassState state, double bytes) throws InterruptedException {
+        Waiter waiter = new Waiter(bytes);
+        lock.lockInterruptibly();
+        try {
+            if (state.queue.isEmpty()) {
+                // 空闲后重新排队的优先级不能用积攒下来的虚拟时间插队
+                state.virtualTime = Math.max(state.virtualTime, systemVirtualTime);
+            }
+            state.queue.addLast(waiter);
+            try {
+                while (true) {
+                    double rate = globalRate;
+                    refill(rate);
+                    ClassState next = nextClass();
+                    if (next == state && state.queue.peekFirst() == waiter) {
+                        // 请求量大于突发量时允许透支，由后续请求等待偿还
+                        double need = Math.min(bytes, burst);
+                        if (rate <= 0 || tokens >= need) {
+                            tokens -= rate <= 0 ? 0 : bytes;
+                            state.queue.pollFirst();
+                            systemVirtualTime = state.virtualTime;
+                            state.virtualTime += bytes / Math.max(state.weight, 1e-6);
+                            changed.signalAll();
+                            return;
+                        }
+                        long sleepNanos = (long) ((need - tokens) / rate * TimeUnit.SECONDS.toNanos(1));
+                        changed.awaitNanos(Math.max(sleepNanos, TimeUnit.MICROSECONDS.toNanos(100)));
+                    } else {
+                        changed.await(100, TimeUnit.MILLISECONDS);
+                    }
+                }
+            } catch (InterruptedException e) {
+                state.queue.remove(waiter);
+                changed.signalAll();
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 有排队请求的优先级中虚拟时间最小的一个
+     */
+    private ClassState nextClass() {
+        ClassState next = null;
+        for (ClassState state : classes.values()) {
+            if (!state.queue.isEmpty() && (next == null || state.virtualTime < next.virtualTime)) {
+                next = state;
+            }
+        }
+        return next;
+    }
+
+    private void refill(double rate) {
+        long now = System.nanoTime();
+        if (rate > 0) {
+            tokens = Math.min(burst, tokens + (now - lastRefill) * rate / TimeUnit.SECONDS.toNanos(1));
+        }
+        lastRefill = now;
+    }
+
+    private TokenBucket userBucket(String user) {
+        double rate = userRates.getOrDefault(user, defaultUserRate);
+        if (rate <= 0) {
+            return null;
+        }
+        return userBuckets.computeIfAbsent(user, u -> new TokenBucket(rate, burst));
+    }
+
+    /**
+     * 调整全局带宽（字节/秒）和突发量（字节），立即对排队中的请求生效
+     */
+    public void setGlobalRate(double bytesPerSecond, long burstBytes) {
+        lock.lock();
+        try {
+            refill(globalRate);
+            this.globalRate = bytesPerSecond;
+            this.burst = burstBytes;
+            this.tokens = Math.min(tokens, burst);
+            for (TokenBucket bucket : userBuckets.values()) {
+                bucket.setRate(bucket.getRate(), burst);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void setGlobalRate(double bytesPerSecond) {
+        setGlobalRate(bytesPerSecond, (long) getBurst());
+    }
+
+    /**
+     * 调整未单独设置的用户的默认带宽（字节/秒）
+     */
+    public void setDefaultUserRate(double bytesPerSecond) {
+        this.defaultUserRate = bytesPerSecond;
+        userBuckets.forEach((user, bucket) -> {
+            if (!userRates.containsKey(user)) {
+                bucket.setRate(bytesPerSecond, getBurst());
+            }
+        });
+    }
+
+    /**
+     * 单独设置某个用户的带宽（字节/秒），小于等于0表示该用户不限速
+     */
+    public void setUserRate(String user, double bytesPerSecond) {
+        userRates.put(user, bytesPerSecond);
+        TokenBucket bucket = userBuckets.get(user);
+        if (bucket != null) {
+            bucket.setRate(bytesPerSecond, getBurst());
+        }
+    }
+
+    public void clearUserRate(String user) {
+        userRates.remove(user);
+        TokenBucket bucket = userBuckets.get(user);
+        if (bucket != null) {
+            bucket.setRate(defaultUserRate, getBurst());
+        }
+    }
+
+    /**
+     * 调整优先级的权重，带宽不足时各优先级按权重比例分配
+     */
+    public void setWeight(TransferPriorityEnum priority, double weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("权重必须大于0：" + weight);
+        }
+        classes.get(priority).weight = weight;
+    }
+
+    public double getGlobalRate() {
+        return globalRate;
+    }
+
+    public double getBurst() {
+        return burst;
+    }
+
+    public double getDefaultUserRate() {
+        return defaultUserRate;
+    }
+
+    public double getWeight(TransferPriorityEnum priority) {
+        return classes.get(priority).weight;
+    }
+
+    public long getGrantedBytes(TransferPriorityEnum priority) {
+        return classes.get(priority).grantedBytes.sum();
+    }
+
+    /**
+     * 平均每次申请带宽的排队时间（毫秒），包含用户限速和全局限速的等待
+     */
+    public double getAverageQueueWaitMillis(TransferPriorityEnum priority) {
+        ClassState state = classes.get(priority);
+        long grants = state.grants.sum();
+        return grants == 0 ? 0 : state.waitNanos.sum() / 1e6 / grants;
+    }
+
+    public int getQueueLength(TransferPriorityEnum priority) {
+        lock.lock();
+        try {
+            return classes.get(priority).queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 输出各优先级的传输字节数、排队时间、排队长度以及自上次输出以来的实际速率
+     */
+    void snapshot(MetricsRecordBuilder builder) {
+        long now = System.nanoTime();
+        for (Map.Entry<TransferPriorityEnum, ClassState> e : classes.entrySet()) {
+            String name = "Transfer" + e.getKey().getValue().charAt(0) + e.getKey().getValue().substring(1).toLowerCase();
+            ClassState state = e.getValue();
+            long bytes = state.grantedBytes.sum();
+            double rate;
+            synchronized (state) {
+                double seconds = Math.max(now - state.lastNanos, 1) / 1e9;
+                rate = (bytes - state.lastBytes) / seconds;
+                state.lastBytes = bytes;
+                state.lastNanos = now;
+            }
+            builder.addCounter(Interns.info(name + "Bytes", e.getKey().getName() + "传输的字节数"), bytes)
+                    .addGauge(Interns.info(name + "BytesPerSecond", e.getKey().getName() + "传输的实际速率（字节/秒）"), rate)
+                    .addGauge(Interns.info(name + "QueueWaitAvgMs", e.getKey().getName() + "传输的平均排队时间（毫秒）"),
+                            getAverageQueueWaitMillis(e.getKey()))
+                    .addGauge(Interns.info(name + "QueueLength", e.getKey().getName() + "传输的排队请求数"),
+                            getQueueLength(e.getKey()));
+        }
+        builder.addGauge(Interns.info("TransferGlobalRateLimit", "全局带宽上限（字节/秒），0表示不限速"), globalRate);
+    }
+}
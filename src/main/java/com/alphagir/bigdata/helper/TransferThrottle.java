@@ -0,0 +1,85 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.TransferPriorityEnum;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * 某个用户、某个优先级的一路传输向 TransferScheduler 申请带宽的句柄，由 HdfsApi.throttle 创建
+ */
+class TransferThrottle {
+
+    private final TransferScheduler scheduler;
+    private final String user;
+    private final TransferPriorityEnum priority;
+
+    TransferThrottle(TransferScheduler scheduler, String user, TransferPriorityEnum priority) {
+        this.scheduler = scheduler;
+        this.user = user;
+        this.priority = priority;
+    }
+
+    /**
+     * 传输 bytes 个字节前调用，带宽不足时阻塞等待
+     */
+    void acquire(long bytes) throws InterruptedIOException {
+        if (bytes <= 0) {
+            return;
+        }
+        try {
+            scheduler.acquire(user, priority, bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException iie = new InterruptedIOException("等待传输带宽时被中断");
+            iie.initCause(e);
+            throw iie;
+        }
+    }
+
+    /**
+     * 包装输出流，每次写出前申请带宽；关闭包装流会关闭底层流
+     */
+    OutputStream wrap(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                acquire(1);
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                acquire(len);
+                out.write(b, off, len);
+            }
+        };
+    }
+
+    /**
+     * 包装输入流，每次读取前按请求的长度申请带宽；关闭包装流会关闭底层流
+     */
+    InputStream wrap(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                acquire(1);
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                acquire(len);
+                return in.read(b, off, len);
+            }
+        };
+    }
+
+    TransferPriorityEnum getPriority() {
+        return priority;
+    }
+}
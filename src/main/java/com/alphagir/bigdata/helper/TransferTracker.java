@@ -0,0 +1,86 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.TransferReport;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多线程传输时汇总文件数、字节数和失败原因，并生成 TransferReport
+ */
+@Slf4j
+class TransferTracker {
+
+    private final String operation;
+    private final TransferProgressListener listener;
+    private final long start = System.currentTimeMillis();
+
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong transferred = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final Map<String, String> failures = new ConcurrentHashMap<>();
+
+    TransferTracker(String operation, TransferProgressListener listener) {
+        this.operation = operation;
+        this.listener = listener;
+    }
+
+    void fileFound() {
+        total.incrementAndGet();
+    }
+
+    void bytes(long n) {
+        bytes.addAndGet(n);
+        HdfsApiMetrics.get().bytesWritten(operation, n);
+    }
+
+    void fileTransferred(String path) {
+        transferred.incrementAndGet();
+        notify(path);
+    }
+
+    void fileSkipped(String path) {
+        skipped.incrementAndGet();
+        notify(path);
+    }
+
+    void fileFailed(String path, Throwable cause) {
+        failed.incrementAndGet();
+        failures.put(path, cause.getClass().getSimpleName() + "：" + cause.getMessage());
+        log.error(operation + " " + path + " 失败：" + cause.getMessage());
+        notify(path);
+    }
+
+    TransferReport report() {
+        TransferReport report = new TransferReport();
+        report.setOperation(operation);
+        report.setFilesTotal(total.get());
+        report.setFilesTransferred(transferred.get());
+        report.setFilesSkipped(skipped.get());
+        report.setFilesFailed(failed.get());
+        report.setBytesTransferred(bytes.get());
+        report.setElapsedMillis(System.currentTimeMillis() - start);
+        report.setFailures(new LinkedHashMap<>(failures));
+        return report;
+    }
+
+    TransferReport finish() {
+        TransferReport report = report();
+        log.info(operation + " 完成：共 " + report.getFilesTotal() + " 个文件，传输 " + report.getFilesTransferred()
+                + "，跳过 " + report.getFilesSkipped() + "，失败 " + report.getFilesFailed()
+                + "，" + HdfsApi.getByteToSize(report.getBytesTransferred()) + "，耗时 " + report.getElapsedMillis()
+                + "ms，吞吐量 " + HdfsApi.getByteToSize((long) report.getThroughputBytesPerSecond()) + "/s");
+        return report;
+    }
+
+    private void notify(String path) {
+        if (listener != null) {
+            listener.onProgress(path, report());
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.TransferPriorityEnum;
+import com.alphagir.bigdata.model.TransferReport;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 并行复制目录树：遍历源目录的同时把每个文件作为一个任务提交到文件线程池，
+ * 超过阈值的大文件再按块对齐切分成多个分片，由分片线程池并发复制后通过 concat 合并。
+ * <p>
+ * 单个文件失败不会中断整个复制，失败原因汇总在 TransferReport 中
+ */
+@Slf4j
+class TreeCopier {
+
+    private final HdfsApi api;
+    private final FileSystem fs;
+    private final HdfsCopyEngine copyEngine;
+    private final CopyOptions options;
+
+    TreeCopier(HdfsApi api, CopyOptions options) {
+        this.api = api;
+        this.fs = api.getFs();
+        this.copyEngine = api.getCopyEngine();
+        this.options = options;
+    }
+
+    TransferReport copy(Path sPath, Path dPath) throws IOException, InterruptedException {
+        final TransferTracker tracker = new TransferTracker("copy", options.getListener());
+        FileStatus srcStatus = api.execute("copy", () -> fs.getFileStatus(sPath));
+        // 与 FileUtil.copy 的语义保持一致：目标是已存在的目录时复制到该目录下
+        FileStatus dstStatus = api.lookupStatus(dPath);
+        final Path targetRoot = dstStatus != null && dstStatus.isDirectory() ? new Path(dPath, sPath.getName()) : dPath;
+        if (fs.makeQualified(targetRoot).equals(fs.makeQualified(sPath))) {
+            throw new IOException("源路径与目标路径相同：" + sPath);
+        }
+
+        final String rootPrefix = srcStatus.getPath().toUri().getPath();
+        final int parallelism = Math.max(1, options.getParallelism());
+        final ThreadPoolExecutor filePool = HdfsThreadPools.newBoundedPool("hdfs-copy", parallelism, parallelism * 2);
+        final ThreadPoolExecutor chunkPool = HdfsThreadPools.newBoundedPool("hdfs-copy-chunk", parallelism, parallelism * 2);
+        final Queue<Future<?>> futures = new ConcurrentLinkedQueue<>();
+        final Queue<CopiedDir> dirs = new ConcurrentLinkedQueue<>();
+        try {
+            if (srcStatus.isDirectory()) {
+                mkdir(targetRoot);
+                dirs.add(new CopiedDir(srcStatus, targetRoot));
+            }
+            new RecursiveLister(api, parallelism).list(sPath, null, RecursiveLister.UNLIMITED_DEPTH, status -> {
+                Path target = srcStatus.isDirectory()
+                        ? new Path(targetRoot, relativize(rootPrefix, status.getPath())) : targetRoot;
+                if (status.isDirectory()) {
+                    mkdir(target);
+                    dirs.add(new CopiedDir(status, target));
+                    return;
+                }
+                tracker.fileFound();
+                // 队列满时由遍历线程自己执行复制，遍历速度自然被复制速度限制
+                futures.add(filePool.submit(() -> copyFile(status, target, chunkPool, tracker)));
+            });
+            // copyFile 自己记录失败，这里只需等待全部完成
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            // 目录属性最后设置，避免只读权限导致目录下的文件无法写入
+            for (CopiedDir dir : dirs) {
+                preserve(dir.src, dir.target);
+            }
+        } catch (ExecutionException e) {
+            throw HdfsThreadPools.unwrap(e);
+        } catch (InterruptedException e) {
+            HdfsThreadPools.cancelAll(new ArrayList<>(futures));
+            throw e;
+        } finally {
+            filePool.shutdownNow();
+            chunkPool.shutdownNow();
+            api.invalidateTree(targetRoot);
+        }
+        return tracker.finish();
+    }
+
+    private void copyFile(FileStatus src, Path target, ThreadPoolExecutor chunkPool, TransferTracker tracker) {
+        String name = src.getPath().toUri().getPath();
+        try {
+            if (options.isSkipUnchanged() && isUnchanged(src, target)) {
+                tracker.fileSkipped(name);
+                return;
+            }
+            long threshold = options.getChunkThreshold();
+            if (threshold > 0 && src.getLen() > threshold && src.getLen() > src.getBlockSize()) {
+                copyChunked(src, target, chunkPool, tracker);
+            } else {
+                api.execute("copy.file", () -> {
+                    try (FSDataInputStream in = fs.open(src.getPath());
+                         OutputStream os = api.throttle(TransferPriorityEnum.BULK).wrap(create(target, src))) {
+                        tracker.bytes(copyEngine.copy(in, os));
+                    }
+                    return null;
+                });
+            }
+            preserve(src, target);
+            tracker.fileTransferred(name);
+        } catch (InterruptedException | InterruptedIOException e) {
+            Thread.currentThread().interrupt();
+            tracker.fileFailed(name, e);
+        } catch (Exception e) {
+            tracker.fileFailed(name, e);
+        }
+    }
+
+    /**
+     * 分片大小是源文件块大小的整数倍，分片使用与源文件相同的块大小创建，满足 concat 的要求
+     */
+    private void copyChunked(FileStatus src, Path target, ThreadPoolExecutor chunkPool, TransferTracker tracker)
+            throws IOException, InterruptedException {
+        final long len = src.getLen();
+        final long blockSize = src.getBlockSize();
+        long blocksPerChunk = Math.max(1, options.getChunkThreshold() / blockSize);
+        final long chunkSize = blocksPerChunk * blockSize;
+        int chunkCount = (int) ((len + chunkSize - 1) / chunkSize);
+        List<Path> parts = PartFiles.partPaths(target, chunkCount);
+        List<Future<Long>> futures = new ArrayList<>(chunkCount);
+        try {
+            for (int i = 0; i < chunkCount; i++) {
+                final Path part = parts.get(i);
+                final long offset = i * chunkSize;
+                final long length = Math.min(chunkSize, len - offset);
+                futures.add(chunkPool.submit(() -> api.execute("copy.part", () -> {
+                    try (FSDataInputStream in = fs.open(src.getPath());
+                         OutputStream os = api.throttle(TransferPriorityEnum.BULK).wrap(create(part, src))) {
+                        return copyEngine.copyRange(in, offset, length, os);
+                    }
+                })));
+            }
+            for (Long n : HdfsThreadPools.awaitAll(futures)) {
+                tracker.bytes(n);
+            }
+            api.executeOnce("copy.concat", () -> {
+                PartFiles.stitch(api, parts, target);
+                return null;
+            });
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            HdfsThreadPools.cancelAll(futures);
+            PartFiles.deleteQuietly(fs, parts);
+            throw e;
+        }
+        log.info(target + " 分片复制成功！分片数：" + chunkCount);
+    }
+
+    private FSDataOutputStream create(Path path, FileStatus src) throws IOException {
+        short replication = options.isPreserveReplication() ? src.getReplication() : fs.getDefaultReplication(path);
+        // 使用源文件的块大小，目标文件的 FileChecksum 才能与源文件一致，下次复制时可以跳过
+        return fs.create(path, true, copyEngine.getBufferSize(), replication, src.getBlockSize());
+    }
+
+    /**
+     * 长度一致且 FileChecksum 一致时视为未变化；文件系统不提供校验和时退化为比较修改时间
+     */
+    private boolean isUnchanged(FileStatus src, Path target) throws IOException, InterruptedException {
+        FileStatus dst = api.lookupStatus(target);
+        if (dst == null || dst.isDirectory() || dst.getLen() != src.getLen()) {
+            return false;
+        }
+        FileChecksum srcChecksum = api.execute("copy.checksum", () -> fs.getFileChecksum(src.getPath()));
+        FileChecksum dstChecksum = api.execute("copy.checksum", () -> fs.getFileChecksum(target));
+        if (srcChecksum == null || dstChecksum == null) {
+            return dst.getModificationTime() >= src.getModificationTime();
+        }
+        return Objects.equals(srcChecksum, dstChecksum);
+    }
+
+    private void preserve(FileStatus src, Path target) throws IOException, InterruptedException {
+        if (options.isPreservePermission()) {
+            api.execute("copy.preserve", () -> {
+                fs.setPermission(target, src.getPermission());
+                return null;
+            });
+        }
+        if (options.isPreserveOwner()) {
+            api.execute("copy.preserve", () -> {
+                fs.setOwner(target, src.getOwner(), src.getGroup());
+                return null;
+            });
+        }
+    }
+
+    private void mkdir(Path dir) throws IOException, InterruptedException {
+        api.execute("copy.mkdir", () -> fs.mkdirs(dir));
+    }
+
+    private static String relativize(String rootPrefix, Path path) {
+        String p = path.toUri().getPath();
+        return p.substring(rootPrefix.length()).replaceFirst("^/+", "");
+    }
+
+    private static final class CopiedDir {
+        private final FileStatus src;
+        private final Path target;
+
+        private CopiedDir(FileStatus src, Path target) {
+            this.src = src;
+            this.target = target;
+        }
+    }
+}
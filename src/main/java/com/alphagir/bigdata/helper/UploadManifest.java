@@ -0,0 +1,106 @@
+package com.alphagir.bigdata.helper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 本地目录上传的清单文件，每上传完成一个文件追加一行并立即刷盘，重新上传时据此跳过已完成的文件。
+ * <p>
+ * 格式：第一行为目标目录，之后每行为 "相对路径\t文件大小\t修改时间"。目标目录不一致时清单作废
+ */
+@Slf4j
+class UploadManifest implements Closeable {
+
+    private final File file;
+    private final Map<String, long[]> completed = new HashMap<>();
+    private final BufferedWriter writer;
+
+    UploadManifest(File file, String destination) throws IOException {
+        this.file = file;
+        boolean valid = load(destination);
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, valid),
+                StandardCharsets.UTF_8));
+        if (valid) {
+            // 上次中途退出时最后一行可能没有换行符，先换行再追加
+            writer.newLine();
+        } else {
+            writer.write(destination);
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    /**
+     * 返回清单中是否已记录该文件，且大小和修改时间都没有变化
+     */
+    synchronized boolean isCompleted(String relativePath, long length, long modificationTime) {
+        long[] entry = completed.get(relativePath);
+        return entry != null && entry[0] == length && entry[1] == modificationTime;
+    }
+
+    synchronized void markCompleted(String relativePath, long length, long modificationTime) throws IOException {
+        completed.put(relativePath, new long[]{length, modificationTime});
+        writer.write(relativePath + "\t" + length + "\t" + modificationTime);
+        writer.newLine();
+        writer.flush();
+    }
+
+    synchronized int size() {
+        return completed.size();
+    }
+
+    /**
+     * 全部上传完成后删除清单
+     */
+    void delete() throws IOException {
+        close();
+        if (file.exists() && !file.delete()) {
+            log.warn("删除上传清单 " + file + " 失败");
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private boolean load(String destination) throws IOException {
+        if (!file.isFile()) {
+            return false;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                StandardCharsets.UTF_8))) {
+            if (!destination.equals(reader.readLine())) {
+                log.info("上传清单 " + file + " 的目标目录与本次上传不一致，重新开始上传");
+                return false;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                // 进程中途退出时最后一行可能不完整，直接忽略
+                if (fields.length != 3) {
+                    continue;
+                }
+                try {
+                    completed.put(fields[0], new long[]{Long.parseLong(fields[1]), Long.parseLong(fields[2])});
+                } catch (NumberFormatException e) {
+                    log.warn("忽略上传清单中无法解析的行：" + line);
+                }
+            }
+        }
+        log.info("读取上传清单 " + file + "，已完成 " + completed.size() + " 个文件");
+        return true;
+    }
+}
@@ -0,0 +1,350 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.FileRange;
+import com.alphagir.bigdata.model.TransferPriorityEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.IntFunction;
+
+/**
+ * 一次读取同一文件中的多个区间：先排序并合并间隔较小的相邻区间，再用定位读并发读取合并后的区间，
+ * 最后按调用方传入的顺序返回各区间在合并缓冲区上的切片。
+ * <p>
+ * 打开的输入流按文件缓存，同一文件的重复调用不再重新打开；通过 HdfsApi 修改文件时缓存的流会被关闭，
+ * 其它客户端的修改在复用前比较文件长度和修改时间发现
+ */
+@Slf4j
+class VectoredReader implements Closeable {
+
+    /**
+     * 合并后的一次读取，包含它覆盖的原始区间下标
+     */
+    static final class MergedRange {
+        final long offset;
+        long end;
+        final List<Integer> members = new ArrayList<>();
+
+        MergedRange(long offset, long end) {
+            this.offset = offset;
+            this.end = end;
+        }
+
+        int length() {
+            return (int) (end - offset);
+        }
+    }
+
+    /**
+     * 缓存的输入流，被淘汰时若仍有调用在使用，由最后一个使用者关闭
+     */
+    private static final class CachedStream {
+        final FSDataInputStream in;
+        // 打开前查询到的文件状态，复用时与最新状态比较
+        final long length;
+        final long modificationTime;
+        int refs;
+        boolean evicted;
+
+        CachedStream(FSDataInputStream in, FileStatus status) {
+            this.in = in;
+            this.length = status.getLen();
+            this.modificationTime = status.getModificationTime();
+        }
+
+        boolean matches(FileStatus status) {
+            return status != null && status.getLen() == length && status.getModificationTime() == modificationTime;
+        }
+    }
+
+    private final HdfsApi api;
+    private final FileSystem fs;
+    private final HdfsCopyEngine copyEngine;
+    private final int maxGap;
+    private final int maxMergedSize;
+    private final int maxStreams;
+    private final ThreadPoolExecutor pool;
+    private final LinkedHashMap<Path, CachedStream> streams = new LinkedHashMap<>(16, 0.75f, true);
+
+    VectoredReader(HdfsApi api) {
+        Configuration conf = api.getConf();
+        this.api = api;
+        this.fs = api.getFs();
+        this.copyEngine = api.getCopyEngine();
+        this.maxGap = conf.getInt(HdfsApiConfigKeys.READ_RANGES_MAX_GAP_KEY,
+                HdfsApiConfigKeys.READ_RANGES_MAX_GAP_DEFAULT);
+        this.maxMergedSize = conf.getInt(HdfsApiConfigKeys.READ_RANGES_MAX_MERGED_SIZE_KEY,
+                HdfsApiConfigKeys.READ_RANGES_MAX_MERGED_SIZE_DEFAULT);
+        this.maxStreams = Math.max(1, conf.getInt(HdfsApiConfigKeys.READ_RANGES_STREAM_CACHE_SIZE_KEY,
+                HdfsApiConfigKeys.READ_RANGES_STREAM_CACHE_SIZE_DEFAULT));
+        this.pool = HdfsThreadPools.newFixedPool("hdfs-read-ranges",
+                Math.max(1, conf.getInt(HdfsApiConfigKeys.READ_RANGES_PARALLELISM_KEY,
+                        HdfsApiConfigKeys.READ_RANGES_PARALLELISM_DEFAULT)));
+    }
+
+    /**
+     * @param allocate 按合并后的长度分配缓冲区，返回的切片共享这些缓冲区
+     * @return 与 ranges 顺序一致的只读切片
+     */
+    List<ByteBuffer> read(final Path path, List<FileRange> ranges, final IntFunction<ByteBuffer> allocate)
+            throws IOException, InterruptedException {
+        List<MergedRange> merged = merge(ranges);
+        ByteBuffer[] results = new ByteBuffer[ranges.size()];
+        if (merged.isEmpty()) {
+            return toList(results);
+        }
+        CachedStream stream = acquire(path);
+        List<Future<ByteBuffer>> futures = new ArrayList<>(merged.size());
+        try {
+            List<ByteBuffer> buffers;
+            if (merged.size() == 1) {
+                // 只有一次读取时直接在调用线程执行，省去线程切换
+                buffers = new ArrayList<>(1);
+                buffers.add(readMerged(path, stream.in, merged.get(0), allocate));
+            } else {
+                for (final MergedRange range : merged) {
+                    futures.add(pool.submit(() -> readMerged(path, stream.in, range, allocate)));
+                }
+                buffers = HdfsThreadPools.awaitAll(futures);
+            }
+            for (int i = 0; i < merged.size(); i++) {
+                MergedRange range = merged.get(i);
+                ByteBuffer buffer = buffers.get(i);
+                for (int index : range.members) {
+                    FileRange member = ranges.get(index);
+                    ByteBuffer slice = buffer.duplicate();
+                    int start = buffer.position() + (int) (member.getOffset() - range.offset);
+                    slice.limit(start + member.getLength());
+                    slice.position(start);
+                    results[index] = slice.slice().asReadOnlyBuffer();
+                }
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            HdfsThreadPools.cancelAll(futures);
+            // 出错的流可能已处于异常状态，不再复用
+            invalidate(path);
+            throw e;
+        } finally {
+            release(stream);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("读取 " + path + " 的 " + ranges.size() + " 个区间，合并为 " + merged.size() + " 次读取");
+        }
+        return toList(results);
+    }
+
+    /**
+     * 按偏移排序后合并：与上一段的间隔不超过 maxGap 且合并后不超过 maxMergedSize 时合并，重叠的区间总是合并
+     */
+    List<MergedRange> merge(List<FileRange> ranges) {
+        List<Integer> order = new ArrayList<>(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            FileRange range = ranges.get(i);
+            if (range.getOffset() < 0 || range.getLength() < 0) {
+                throw new IllegalArgumentException("非法的区间：" + range);
+            }
+            if (range.getLength() > 0) {
+                order.add(i);
+            }
+        }
+        order.sort(Comparator.comparingLong(i -> ranges.get(i).getOffset()));
+
+        List<MergedRange> merged = new ArrayList<>();
+        MergedRange current = null;
+        for (int index : order) {
+            FileRange range = ranges.get(index);
+            if (current != null) {
+                long end = Math.max(current.end, range.getEnd());
+                boolean overlaps = range.getOffset() < current.end;
+                boolean near = range.getOffset() - current.end <= maxGap && end - current.offset <= maxMergedSize;
+                if ((overlaps || near) && end - current.offset <= Integer.MAX_VALUE) {
+                    current.end = end;
+                    current.members.add(index);
+                    continue;
+                }
+            }
+            current = new MergedRange(range.getOffset(), range.getEnd());
+            current.members.add(index);
+            merged.add(current);
+        }
+        return merged;
+    }
+
+    private ByteBuffer readMerged(Path path, final FSDataInputStream in, final MergedRange range,
+                                  IntFunction<ByteBuffer> allocate) throws IOException, InterruptedException {
+        final ByteBuffer buffer = allocate.apply(range.length());
+        if (buffer.remaining() < range.length()) {
+            throw new IllegalStateException("分配的缓冲区剩余 " + buffer.remaining() + " 字节，小于需要的 " + range.length());
+        }
+        // 定位读的流是共用的，不能包装，按合并后的长度一次申请带宽
+        api.throttle(TransferPriorityEnum.INTERACTIVE).acquire(range.length());
+        api.execute("readRanges", () -> {
+            if (buffer.hasArray()) {
+                in.readFully(range.offset, buffer.array(), buffer.arrayOffset() + buffer.position(), range.length());
+            } else {
+                readFullyDirect(in, range, buffer.duplicate());
+            }
+            return null;
+        });
+        api.getMetrics().bytesRead("readRanges", range.length());
+        ByteBuffer result = buffer.duplicate();
+        result.limit(result.position() + range.length());
+        return result;
+    }
+
+    /**
+     * 直接内存缓冲区没有底层数组，借用池中的堆缓冲区做定位读后再拷贝过去
+     */
+    private void readFullyDirect(FSDataInputStream in, MergedRange range, ByteBuffer target) throws IOException {
+        ByteBuffer pooled = copyEngine.acquire();
+        try {
+            byte[] scratch = pooled.hasArray() ? pooled.array() : new byte[copyEngine.getBufferSize()];
+            int base = pooled.hasArray() ? pooled.arrayOffset() : 0;
+            int chunk = pooled.hasArray() ? pooled.capacity() : scratch.length;
+            long position = range.offset;
+            while (position < range.end) {
+                int n = (int) Math.min(chunk, range.end - position);
+                in.readFully(position, scratch, base, n);
+                target.put(scratch, base, n);
+                position += n;
+            }
+        } finally {
+            copyEngine.release(pooled);
+        }
+    }
+
+    private CachedStream acquire(final Path path) throws IOException, InterruptedException {
+        // 文件可能被其它客户端覆盖或追加，流只能在文件状态不变时复用；启用元数据缓存时这里不产生 RPC
+        FileStatus status = api.execute("readRanges.stat", () -> api.lookupStatus(path));
+        if (status == null) {
+            invalidate(path);
+            throw new FileNotFoundException("File does not exist: " + path);
+        }
+        synchronized (streams) {
+            CachedStream cached = streams.get(path);
+            if (cached != null && cached.matches(status)) {
+                cached.refs++;
+                return cached;
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(path + " 不在缓存中或已被修改，重新打开");
+        }
+        invalidate(path);
+        // 打开文件是一次 RPC，不在锁内执行；状态在打开之前查询，期间文件被替换时下次复用会发现不一致
+        CachedStream opened = new CachedStream(api.execute("readRanges.open", () -> fs.open(path)), status);
+        List<CachedStream> toClose = new ArrayList<>();
+        CachedStream result;
+        synchronized (streams) {
+            CachedStream cached = streams.get(path);
+            if (cached != null && cached.matches(status)) {
+                toClose.add(opened);
+                result = cached;
+            } else {
+                CachedStream replaced = streams.put(path, opened);
+                if (replaced != null) {
+                    evict(replaced, toClose);
+                }
+                result = opened;
+                Iterator<CachedStream> it = streams.values().iterator();
+                while (streams.size() > maxStreams && it.hasNext()) {
+                    CachedStream eldest = it.next();
+                    it.remove();
+                    evict(eldest, toClose);
+                }
+            }
+            result.refs++;
+        }
+        closeQuietly(toClose);
+        return result;
+    }
+
+    private void release(CachedStream stream) {
+        boolean close;
+        synchronized (streams) {
+            stream.refs--;
+            close = stream.evicted && stream.refs == 0;
+        }
+        if (close) {
+            closeQuietly(stream);
+        }
+    }
+
+    /**
+     * 文件被修改或删除后关闭对应的缓存流，path 为目录时关闭其下所有文件的流
+     */
+    void invalidate(Path path) {
+        String prefix = path.toString() + Path.SEPARATOR;
+        List<CachedStream> toClose = new ArrayList<>();
+        synchronized (streams) {
+            Iterator<Map.Entry<Path, CachedStream>> it = streams.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Path, CachedStream> entry = it.next();
+                String key = entry.getKey().toString();
+                if (key.equals(path.toString()) || key.startsWith(prefix)) {
+                    it.remove();
+                    evict(entry.getValue(), toClose);
+                }
+            }
+        }
+        closeQuietly(toClose);
+    }
+
+    private static void evict(CachedStream stream, List<CachedStream> toClose) {
+        stream.evicted = true;
+        if (stream.refs == 0) {
+            toClose.add(stream);
+        }
+    }
+
+    @Override
+    public void close() {
+        List<CachedStream> toClose = new ArrayList<>();
+        synchronized (streams) {
+            for (CachedStream stream : streams.values()) {
+                evict(stream, toClose);
+            }
+            streams.clear();
+        }
+        closeQuietly(toClose);
+        pool.shutdownNow();
+    }
+
+    private static void closeQuietly(List<CachedStream> streams) {
+        for (CachedStream stream : streams) {
+            closeQuietly(stream);
+        }
+    }
+
+    private static void closeQuietly(CachedStream stream) {
+        try {
+            stream.in.close();
+        } catch (IOException e) {
+            log.warn("关闭输入流失败：" + e.getMessage());
+        }
+    }
+
+    private static List<ByteBuffer> toList(ByteBuffer[] results) {
+        List<ByteBuffer> list = new ArrayList<>(results.length);
+        for (ByteBuffer result : results) {
+            list.add(result == null ? ByteBuffer.allocate(0) : result);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,27 @@
+package com.alphagir.bigdata.model;
+
+import lombok.Data;
+
+@Data
+public class BatchItemResult {
+
+    private String path;
+
+    /** 重命名的目标路径，其它操作为空 */
+    private String target;
+
+    private Boolean success;
+
+    private String message;
+
+    private transient Throwable cause;
+
+    public BatchItemResult() {
+    }
+
+    public BatchItemResult(String path, String target) {
+        this.path = path;
+        this.target = target;
+    }
+
+}
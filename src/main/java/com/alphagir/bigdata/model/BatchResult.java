@@ -0,0 +1,29 @@
+package com.alphagir.bigdata.model;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Data
+public class BatchResult {
+
+    private String operation;
+
+    private List<BatchItemResult> items;
+
+    private Long elapsedMillis;
+
+    public long getSuccessCount() {
+        return items.stream().filter(i -> Boolean.TRUE.equals(i.getSuccess())).count();
+    }
+
+    public long getFailureCount() {
+        return items.size() - getSuccessCount();
+    }
+
+    public List<BatchItemResult> getFailures() {
+        return items.stream().filter(i -> !Boolean.TRUE.equals(i.getSuccess())).collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.alphagir.bigdata.model;
+
+import lombok.Data;
+
+/**
+ * 文件中的一段字节区间
+ */
+@Data
+public class FileRange {
+
+    private long offset;
+
+    private int length;
+
+    public FileRange() {
+    }
+
+    public FileRange(long offset, int length) {
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public long getEnd() {
+        return offset + length;
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.alphagir.bigdata.model;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 列表接口可按需返回的 HdfsFileStatus 字段
+ */
+public enum HdfsFileStatusField {
+
+    PATH,
+    REPLICATION,
+    IS_DIRECTORY,
+    LEN,
+    SIZE,
+    OWNER,
+    GROUP,
+    PERMISSION,
+    CREATED_AT,
+    UPDATED_AT,
+    BLOCK_SIZE,
+    /** readAccess / writeAccess / executeAccess */
+    ACCESS;
+
+    /** 机器消费者最常用的字段：路径、长度、修改时间 */
+    public static final Set<HdfsFileStatusField> BASIC =
+            Collections.unmodifiableSet(EnumSet.of(PATH, IS_DIRECTORY, LEN, UPDATED_AT));
+
+    public static final Set<HdfsFileStatusField> ALL =
+            Collections.unmodifiableSet(EnumSet.allOf(HdfsFileStatusField.class));
+}
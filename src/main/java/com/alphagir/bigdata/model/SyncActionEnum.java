@@ -0,0 +1,25 @@
+package com.alphagir.bigdata.model;
+
+public enum SyncActionEnum {
+
+    ADD("新增", "ADD"),
+    UPDATE("更新", "UPDATE"),
+    DELETE("删除", "DELETE"),
+    SKIP("未变化", "SKIP");
+
+    private final String name;
+    private final String value;
+
+    SyncActionEnum(String name, String value) {
+        this.value = value;
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,29 @@
+package com.alphagir.bigdata.model;
+
+import lombok.Data;
+
+@Data
+public class SyncPlanItem {
+
+    /** 相对于同步根目录的路径 */
+    private String path;
+
+    private SyncActionEnum action;
+
+    /** 判定为该动作的原因 */
+    private String reason;
+
+    /** 本地文件长度，删除时为目标文件长度 */
+    private Long length;
+
+    public SyncPlanItem() {
+    }
+
+    public SyncPlanItem(String path, SyncActionEnum action, String reason, Long length) {
+        this.path = path;
+        this.action = action;
+        this.reason = reason;
+        this.length = length;
+    }
+
+}
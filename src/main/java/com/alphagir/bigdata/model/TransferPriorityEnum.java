@@ -0,0 +1,23 @@
+package com.alphagir.bigdata.model;
+
+public enum TransferPriorityEnum {
+
+    INTERACTIVE("交互", "INTERACTIVE"),
+    BULK("批量", "BULK");
+
+    private final String name;
+    private final String value;
+
+    TransferPriorityEnum(String name, String value) {
+        this.value = value;
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,42 @@
+package com.alphagir.bigdata.model;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class TransferReport {
+
+    private String operation;
+
+    private Long filesTotal;
+
+    private Long filesTransferred;
+
+    private Long filesSkipped;
+
+    private Long filesFailed;
+
+    private Long bytesTransferred;
+
+    private Long elapsedMillis;
+
+    /** sync 删除的目标文件和目录数，其他操作为空 */
+    private Long filesDeleted;
+
+    /** sync 的差异计划（不含未变化的文件），其他操作为空 */
+    private List<SyncPlanItem> plan;
+
+    /** 失败的路径及原因 */
+    private Map<String, String> failures;
+
+    public double getThroughputBytesPerSecond() {
+        return elapsedMillis == null || elapsedMillis <= 0 ? 0 : bytesTransferred * 1000.0 / elapsedMillis;
+    }
+
+    public boolean isSuccess() {
+        return filesFailed == null || filesFailed == 0;
+    }
+
+}
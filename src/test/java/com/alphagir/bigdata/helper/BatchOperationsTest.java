@@ -0,0 +1,123 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.BatchItemResult;
+import com.alphagir.bigdata.model.BatchResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * BatchOperations 的删除覆盖折叠和逐项重命名，使用本地文件系统
+ */
+public class BatchOperationsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+    private HdfsApi api;
+
+    @Before
+    public void setUp() throws Exception {
+        root = folder.newFolder("fs");
+        api = new HdfsApi("file://" + root.getAbsolutePath(), null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        api.close();
+    }
+
+    @Test
+    public void pathsUnderDeletedDirectoryAreCovered() throws Exception {
+        touch("a/x");
+        touch("a/y");
+        touch("b");
+
+        BatchResult result = api.batch().delete(Arrays.asList("a/y", "b", "a", "a/x"), true, true);
+
+        assertEquals(4, result.getSuccessCount());
+        assertFalse(new File(root, "a").exists());
+        assertFalse(new File(root, "b").exists());
+        BatchItemResult covered = item(result, "a/x");
+        assertTrue(covered.getSuccess());
+        assertTrue(covered.getMessage().contains("已由上级目录"));
+    }
+
+    @Test
+    public void coveredPathsFailWithTheirDirectory() throws Exception {
+        BatchResult result = api.batch().delete(Arrays.asList("missing", "missing/x"), true, true);
+
+        assertEquals(0, result.getSuccessCount());
+        assertEquals(2, result.getFailureCount());
+        assertTrue(item(result, "missing/x").getMessage().contains("删除失败"));
+    }
+
+    @Test
+    public void nonRecursiveDeleteDoesNotCover() throws Exception {
+        touch("c/x");
+
+        BatchResult result = api.batch().delete(Arrays.asList("c/x", "c"), false, true);
+
+        assertTrue(item(result, "c/x").getSuccess());
+        assertFalse(new File(root, "c/x").exists());
+    }
+
+    @Test
+    public void renameMovesEachItemAndKeepsSourceDirectory() throws Exception {
+        touch("src/x");
+        touch("src/y");
+        assertTrue(new File(root, "dst").mkdirs());
+        Map<String, String> renames = new LinkedHashMap<>();
+        renames.put("src/x", "dst/x");
+        renames.put("src/y", "dst/y");
+
+        BatchResult result = api.batch().rename(renames);
+
+        assertEquals(2, result.getSuccessCount());
+        assertTrue(new File(root, "dst/x").isFile());
+        assertTrue(new File(root, "dst/y").isFile());
+        assertTrue(new File(root, "src").isDirectory());
+        assertEquals(0, new File(root, "src").list().length);
+    }
+
+    @Test
+    public void failedRenameIsReportedPerItem() throws Exception {
+        touch("src/x");
+        assertTrue(new File(root, "dst").mkdirs());
+        Map<String, String> renames = new LinkedHashMap<>();
+        renames.put("src/x", "dst/x");
+        renames.put("src/missing", "dst/missing");
+
+        BatchResult result = api.batch().rename(renames);
+
+        assertTrue(item(result, "src/x").getSuccess());
+        assertFalse(item(result, "src/missing").getSuccess());
+    }
+
+    private void touch(String path) throws Exception {
+        File file = new File(root, path);
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        assertTrue(file.createNewFile());
+    }
+
+    private static BatchItemResult item(BatchResult result, String path) {
+        for (BatchItemResult item : result.getItems()) {
+            if (item.getPath().equals(path)) {
+                return item;
+            }
+        }
+        throw new AssertionError("结果中没有 " + path);
+    }
+}
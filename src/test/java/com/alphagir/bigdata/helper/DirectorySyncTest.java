@@ -0,0 +1,177 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.SyncActionEnum;
+import com.alphagir.bigdata.model.SyncPlanItem;
+import com.alphagir.bigdata.model.TransferReport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * DirectorySync 的差异计划、未变化文件的跳过、多余条目的删除和 dryRun，使用本地文件系统
+ */
+public class DirectorySyncTest {
+
+    private static final String DEST = "dest";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File local;
+    private File dest;
+    private HdfsApi api;
+    private SyncOptions options;
+
+    @Before
+    public void setUp() throws Exception {
+        local = folder.newFolder("local");
+        File root = folder.newFolder("fs");
+        dest = new File(root, DEST);
+        api = new HdfsApi("file://" + root.getAbsolutePath(), null);
+        options = new SyncOptions();
+        options.setParallelism(2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        api.close();
+    }
+
+    @Test
+    public void missingFilesAreAdded() throws Exception {
+        write(local, "a.txt", "aa");
+        write(local, "sub/b.txt", "bbb");
+
+        TransferReport report = api.sync(local, DEST, options);
+
+        assertTrue(report.isSuccess());
+        assertEquals(2L, (long) report.getFilesTransferred());
+        assertEquals(2, report.getPlan().size());
+        assertEquals(SyncActionEnum.ADD, item(report, "a.txt").getAction());
+        assertEquals(SyncActionEnum.ADD, item(report, "sub/b.txt").getAction());
+        assertEquals("aa", read(dest, "a.txt"));
+        assertEquals("bbb", read(dest, "sub/b.txt"));
+        // 目标的修改时间与本地一致，下次同步只需比较元数据
+        assertEquals(new File(local, "a.txt").lastModified(), new File(dest, "a.txt").lastModified());
+    }
+
+    @Test
+    public void unchangedFilesAreSkipped() throws Exception {
+        write(local, "a.txt", "aa");
+        write(local, "sub/b.txt", "bbb");
+        api.sync(local, DEST, options);
+
+        TransferReport report = api.sync(local, DEST, options);
+
+        assertTrue(report.isSuccess());
+        assertEquals(0L, (long) report.getFilesTransferred());
+        assertEquals(2L, (long) report.getFilesSkipped());
+        assertTrue(report.getPlan().isEmpty());
+    }
+
+    @Test
+    public void changedFilesAreUpdated() throws Exception {
+        File a = write(local, "a.txt", "aa");
+        File b = write(local, "b.txt", "bb");
+        api.sync(local, DEST, options);
+
+        write(local, "a.txt", "aaaa");
+        assertTrue(a.setLastModified(a.lastModified() - 60_000L));
+        // 长度不变，只有修改时间不同
+        write(local, "b.txt", "BB");
+        assertTrue(b.setLastModified(b.lastModified() + 60_000L));
+
+        TransferReport report = api.sync(local, DEST, options);
+
+        assertTrue(report.isSuccess());
+        assertEquals(2L, (long) report.getFilesTransferred());
+        SyncPlanItem lengthChanged = item(report, "a.txt");
+        assertEquals(SyncActionEnum.UPDATE, lengthChanged.getAction());
+        assertTrue(lengthChanged.getReason().startsWith("长度不同"));
+        SyncPlanItem timeChanged = item(report, "b.txt");
+        assertEquals(SyncActionEnum.UPDATE, timeChanged.getAction());
+        assertEquals("修改时间不同", timeChanged.getReason());
+        assertEquals("aaaa", read(dest, "a.txt"));
+        assertEquals("BB", read(dest, "b.txt"));
+    }
+
+    @Test
+    public void extraneousEntriesAreKeptByDefault() throws Exception {
+        write(local, "a.txt", "aa");
+        write(dest, "stale.txt", "s");
+
+        TransferReport report = api.sync(local, DEST, options);
+
+        assertNull(item(report, "stale.txt"));
+        assertTrue(new File(dest, "stale.txt").isFile());
+    }
+
+    @Test
+    public void extraneousDirectoryIsDeletedOnce() throws Exception {
+        write(local, "a.txt", "aa");
+        write(dest, "stale.txt", "s");
+        write(dest, "extra/x", "x");
+        write(dest, "extra/y", "y");
+        options.setDeleteExtraneous(true);
+
+        TransferReport report = api.sync(local, DEST, options);
+
+        assertTrue(report.isSuccess());
+        assertEquals(2L, (long) report.getFilesDeleted());
+        assertEquals(SyncActionEnum.DELETE, item(report, "stale.txt").getAction());
+        assertEquals(SyncActionEnum.DELETE, item(report, "extra").getAction());
+        // 目录下的子项随目录一起删除，不单独出现在计划中
+        assertNull(item(report, "extra/x"));
+        assertFalse(new File(dest, "stale.txt").exists());
+        assertFalse(new File(dest, "extra").exists());
+        assertTrue(new File(dest, "a.txt").isFile());
+    }
+
+    @Test
+    public void dryRunOnlyReportsPlan() throws Exception {
+        write(local, "a.txt", "aa");
+        write(dest, "stale.txt", "s");
+        options.setDeleteExtraneous(true);
+        options.setDryRun(true);
+
+        TransferReport report = api.sync(local, DEST, options);
+
+        assertEquals(1L, (long) report.getFilesTransferred());
+        assertEquals(1L, (long) report.getFilesDeleted());
+        assertEquals(SyncActionEnum.ADD, item(report, "a.txt").getAction());
+        assertEquals(SyncActionEnum.DELETE, item(report, "stale.txt").getAction());
+        assertFalse(new File(dest, "a.txt").exists());
+        assertTrue(new File(dest, "stale.txt").isFile());
+    }
+
+    private static File write(File dir, String path, String content) throws Exception {
+        File file = new File(dir, path);
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String read(File dir, String path) throws Exception {
+        return new String(Files.readAllBytes(new File(dir, path).toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static SyncPlanItem item(TransferReport report, String path) {
+        for (SyncPlanItem item : report.getPlan()) {
+            if (item.getPath().equals(path)) {
+                return item;
+            }
+        }
+        return null;
+    }
+}
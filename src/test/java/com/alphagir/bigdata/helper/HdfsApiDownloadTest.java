@@ -0,0 +1,207 @@
+package com.alphagir.bigdata.helper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * downloadFile(String, HttpServletRequest, HttpServletResponse) 的 Range / 条件请求处理，使用本地文件系统
+ */
+public class HdfsApiDownloadTest {
+
+    private static final String FILE = "data.bin";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HdfsApi api;
+    private byte[] content;
+    private String etag;
+
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private ByteArrayOutputStream body;
+
+    @Before
+    public void setUp() throws Exception {
+        File root = folder.newFolder("fs");
+        content = new byte[100];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        Files.write(new File(root, FILE).toPath(), content);
+        api = new HdfsApi("file://" + root.getAbsolutePath(), null);
+        etag = HttpByteRanges.etag(api.getFs().getFileStatus(api.resolvePath(FILE)));
+
+        request = mock(HttpServletRequest.class);
+        when(request.getDateHeader(anyString())).thenReturn(-1L);
+        response = mock(HttpServletResponse.class);
+        body = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        api.close();
+    }
+
+    @Test
+    public void fullFileWithoutRange() throws Exception {
+        api.downloadFile(FILE, request, response);
+
+        verify(response, never()).setStatus(anyInt());
+        verify(response).setContentLengthLong(100);
+        verify(response).setHeader("ETag", etag);
+        assertArrayEquals(content, body.toByteArray());
+    }
+
+    @Test
+    public void singleRangeReturns206() throws Exception {
+        when(request.getHeader("Range")).thenReturn("bytes=10-19");
+
+        api.downloadFile(FILE, request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(response).setHeader("Content-Range", "bytes 10-19/100");
+        verify(response).setContentLengthLong(10);
+        assertArrayEquals(Arrays.copyOfRange(content, 10, 20), body.toByteArray());
+    }
+
+    @Test
+    public void suffixRangeReturnsTail() throws Exception {
+        when(request.getHeader("Range")).thenReturn("bytes=-5");
+
+        api.downloadFile(FILE, request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(response).setHeader("Content-Range", "bytes 95-99/100");
+        assertArrayEquals(Arrays.copyOfRange(content, 95, 100), body.toByteArray());
+    }
+
+    @Test
+    public void unsatisfiableRangeReturns416() throws Exception {
+        when(request.getHeader("Range")).thenReturn("bytes=200-300");
+
+        api.downloadFile(FILE, request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        verify(response).setHeader("Content-Range", "bytes */100");
+        assertEquals(0, body.size());
+    }
+
+    @Test
+    public void matchingIfNoneMatchReturns304() throws Exception {
+        when(request.getHeader("If-None-Match")).thenReturn(etag);
+
+        api.downloadFile(FILE, request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        assertEquals(0, body.size());
+    }
+
+    @Test
+    public void weakIfNoneMatchUsesWeakComparison() throws Exception {
+        when(request.getHeader("If-None-Match")).thenReturn("\"other\", W/" + etag);
+
+        api.downloadFile(FILE, request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    }
+
+    @Test
+    public void matchingIfRangeHonoursRange() throws Exception {
+        when(request.getHeader("Range")).thenReturn("bytes=0-9");
+        when(request.getHeader("If-Range")).thenReturn(etag);
+
+        api.downloadFile(FILE, request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        assertArrayEquals(Arrays.copyOfRange(content, 0, 10), body.toByteArray());
+    }
+
+    @Test
+    public void staleIfRangeReturnsFullFile() throws Exception {
+        when(request.getHeader("Range")).thenReturn("bytes=0-9");
+        when(request.getHeader("If-Range")).thenReturn("\"stale\"");
+
+        api.downloadFile(FILE, request, response);
+
+        verify(response, never()).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        assertArrayEquals(content, body.toByteArray());
+    }
+
+    @Test
+    public void weakIfRangeNeverMatches() throws Exception {
+        when(request.getHeader("Range")).thenReturn("bytes=0-9");
+        when(request.getHeader("If-Range")).thenReturn("W/" + etag);
+
+        api.downloadFile(FILE, request, response);
+
+        verify(response, never()).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        assertArrayEquals(content, body.toByteArray());
+    }
+
+    @Test
+    public void multipleRangesReturnMultipartByteranges() throws Exception {
+        when(request.getHeader("Range")).thenReturn("bytes=0-4,50-54");
+
+        api.downloadFile(FILE, request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(response).setContentType(startsWith("multipart/byteranges; boundary="));
+        String text = new String(body.toByteArray(), StandardCharsets.ISO_8859_1);
+        assertTrue(text.contains("Content-Range: bytes 0-4/100\r\n\r\n"
+                + new String(Arrays.copyOfRange(content, 0, 5), StandardCharsets.ISO_8859_1)));
+        assertTrue(text.contains("Content-Range: bytes 50-54/100\r\n\r\n"
+                + new String(Arrays.copyOfRange(content, 50, 55), StandardCharsets.ISO_8859_1)));
+        assertTrue(text.trim().endsWith("--"));
+    }
+
+    @Test
+    public void overlappingRangesAreMerged() throws Exception {
+        when(request.getHeader("Range")).thenReturn("bytes=0-9,5-14");
+
+        api.downloadFile(FILE, request, response);
+
+        verify(response).setHeader(eq("Content-Range"), eq("bytes 0-14/100"));
+        assertArrayEquals(Arrays.copyOfRange(content, 0, 15), body.toByteArray());
+    }
+}
@@ -0,0 +1,203 @@
+package com.alphagir.bigdata.helper;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * HdfsAppender 的批量写出、各种刷新触发条件、滚动以及租约冲突处理，使用单 DataNode 的 MiniDFSCluster
+ */
+public class HdfsAppenderTest {
+
+    private static final String FILE = "appender/app.log";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MiniDFSCluster cluster;
+    private HdfsApi api;
+    private Path path;
+    private AppenderOptions options;
+
+    @Before
+    public void setUp() throws Exception {
+        Configuration conf = new Configuration();
+        conf.set(MiniDFSCluster.HDFS_MINIDFS_BASEDIR, folder.newFolder("dfs").getAbsolutePath());
+        cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+        cluster.waitActive();
+        api = new HdfsApi(cluster.getURI().toString(), System.getProperty("user.name"));
+        api.mkdir("appender");
+        path = cluster.getFileSystem().makeQualified(api.resolvePath(FILE));
+
+        options = new AppenderOptions();
+        // 默认只在显式 flush 时刷新，各个用例按需打开其它触发条件
+        options.setFlushBytes(Long.MAX_VALUE);
+        options.setFlushIntervalMillis(3600_000L);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            if (api != null) {
+                api.close();
+            }
+        } finally {
+            if (cluster != null) {
+                cluster.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void recordsAreBatchedIntoOneFlush() throws Exception {
+        StringBuilder expected = new StringBuilder();
+        try (HdfsAppender appender = api.openAppender(FILE, options)) {
+            for (int i = 0; i < 1000; i++) {
+                String record = "record-" + i + "\n";
+                appender.append(record);
+                expected.append(record);
+            }
+            appender.flush();
+
+            assertEquals(expected.toString(), read(path));
+            assertEquals(1, appender.getFlushCount());
+            assertEquals(1000, appender.getRecordsWritten());
+            assertEquals(expected.length(), appender.getBytesWritten());
+        }
+        assertEquals(expected.toString(), read(path));
+    }
+
+    @Test
+    public void flushBytesTriggersFlush() throws Exception {
+        options.setFlushBytes(10);
+        try (HdfsAppender appender = api.openAppender(FILE, options)) {
+            appender.append("0123456789\n");
+
+            await(() -> appender.getFlushCount() >= 1);
+            assertEquals("0123456789\n", read(path));
+        }
+    }
+
+    @Test
+    public void flushIntervalTriggersFlush() throws Exception {
+        options.setFlushIntervalMillis(200);
+        try (HdfsAppender appender = api.openAppender(FILE, options)) {
+            appender.append("late\n");
+
+            await(() -> appender.getFlushCount() >= 1);
+            assertEquals("late\n", read(path));
+        }
+    }
+
+    @Test
+    public void appendsToExistingFile() throws Exception {
+        try (HdfsAppender appender = api.openAppender(FILE, options)) {
+            appender.append("first\n");
+        }
+        try (HdfsAppender appender = api.openAppender(FILE, options)) {
+            appender.append("second\n");
+        }
+        assertEquals("first\nsecond\n", read(path));
+    }
+
+    @Test
+    public void rollRenamesFullFile() throws Exception {
+        options.setRollBytes(100);
+        String r1 = fill('a', 60);
+        String r2 = fill('b', 60);
+        String r3 = fill('c', 60);
+        try (HdfsAppender appender = api.openAppender(FILE, options)) {
+            appender.append(r1);
+            appender.flush();
+            appender.append(r2);
+            // 超过 rollBytes 后在本批写出之后滚动，flush 返回时滚动已经完成
+            appender.flush();
+            appender.append(r3);
+            appender.flush();
+            assertEquals(1, appender.getRollCount());
+        }
+
+        FileStatus[] rolled = cluster.getFileSystem().listStatus(path.getParent(),
+                p -> p.getName().startsWith(path.getName() + "."));
+        assertEquals(1, rolled.length);
+        assertEquals(r1 + r2, read(rolled[0].getPath()));
+        assertEquals(r3, read(path));
+    }
+
+    @Test
+    public void leaseHeldByLiveWriterIsNotRecoveredByDefault() throws Exception {
+        try (DistributedFileSystem other = (DistributedFileSystem) FileSystem.newInstance(cluster.getURI(),
+                cluster.getConfiguration(0))) {
+            FSDataOutputStream held = other.create(path);
+            try {
+                held.write("x\n".getBytes(StandardCharsets.UTF_8));
+                held.hflush();
+
+                try {
+                    api.openAppender(FILE, options);
+                    fail("租约被占用时默认不应收回");
+                } catch (IOException expected) {
+                    // 预期
+                }
+                // 另一个写入者的输出流不受影响
+                held.write("x\n".getBytes(StandardCharsets.UTF_8));
+                held.hflush();
+                assertEquals("x\nx\n", read(path));
+
+                options.setRecoverLease(true);
+                try (HdfsAppender appender = api.openAppender(FILE, options)) {
+                    appender.append("y\n");
+                }
+                assertEquals("x\nx\ny\n", read(path));
+            } finally {
+                // 租约已被收回，关闭会失败
+                IOUtils.closeStream(held);
+            }
+        }
+    }
+
+    private String read(Path file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FSDataInputStream in = cluster.getFileSystem().open(file)) {
+            IOUtils.copyBytes(in, out, 4096, false);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String fill(char c, int length) {
+        char[] chars = new char[length - 1];
+        Arrays.fill(chars, c);
+        return new String(chars) + "\n";
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000L;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() >= deadline) {
+                fail("等待超时");
+            }
+            Thread.sleep(20L);
+        }
+    }
+}
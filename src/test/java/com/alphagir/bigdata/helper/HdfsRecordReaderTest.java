@@ -0,0 +1,145 @@
+package com.alphagir.bigdata.helper;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * collectRecords 按块切分后每条记录恰好读取一次：分隔符分别完整落在块边界之前、恰好在边界结束、
+ * 跨越边界和从边界开始，使用小块大小的单 DataNode MiniDFSCluster
+ */
+public class HdfsRecordReaderTest {
+
+    private static final int BLOCK_SIZE = 1024;
+    private static final int RECORDS = 150;
+    private static final String CHARS = "abcdefghijklmnopqrstuvwxyz0123456789 记录分片边界";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MiniDFSCluster cluster;
+    private HdfsApi api;
+    private int files;
+
+    @Before
+    public void setUp() throws Exception {
+        Configuration conf = new Configuration();
+        conf.set(MiniDFSCluster.HDFS_MINIDFS_BASEDIR, folder.newFolder("dfs").getAbsolutePath());
+        conf.setLong(DFSConfigKeys.DFS_NAMENODE_MIN_BLOCK_SIZE_KEY, 0);
+        cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+        cluster.waitActive();
+        api = new HdfsApi(cluster.getURI().toString(), System.getProperty("user.name"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            if (api != null) {
+                api.close();
+            }
+        } finally {
+            if (cluster != null) {
+                cluster.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void defaultLineEndingsAreReadOnce() throws Exception {
+        assertReadOnce(null, "\n", "\r\n", "\r");
+    }
+
+    @Test
+    public void crLfDelimiterIsReadOnce() throws Exception {
+        assertReadOnce("\r\n", "\r\n");
+    }
+
+    @Test
+    public void multiByteDelimiterIsReadOnce() throws Exception {
+        assertReadOnce("<EOR>", "<EOR>");
+    }
+
+    @Test
+    public void multiByteCharacterDelimiterIsReadOnce() throws Exception {
+        assertReadOnce("〡", "〡");
+    }
+
+    /**
+     * 对每种分隔符，让第一个分隔符在第一个块边界附近逐字节移动，其余记录随机混用各种分隔符，
+     * 其中部分记录比整个块还长，使某些分片内没有任何记录的起点
+     */
+    private void assertReadOnce(String delimiter, String... separators) throws Exception {
+        RecordReadOptions options = new RecordReadOptions();
+        options.setDelimiter(delimiter);
+        for (String separator : separators) {
+            int length = separator.getBytes(StandardCharsets.UTF_8).length;
+            for (int shift = -1; shift <= length; shift++) {
+                Random random = new Random(shift);
+                List<String> records = new ArrayList<>();
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                // 第一个分隔符在 BLOCK_SIZE + shift 处结束
+                char[] first = new char[BLOCK_SIZE + shift - length];
+                Arrays.fill(first, 'x');
+                append(records, content, new String(first), separator);
+                for (int i = 1; i < RECORDS; i++) {
+                    append(records, content, record(random, i % 15 == 0 ? 2500 : 1 + random.nextInt(120)),
+                            separators[random.nextInt(separators.length)]);
+                }
+
+                String file = "records/" + files++;
+                write(file, content.toByteArray());
+                List<String> actual = api.collectRecords(file, options, ArrayList::new, List::add, (a, b) -> {
+                    a.addAll(b);
+                    return a;
+                });
+
+                assertEquals("分隔符 " + Arrays.toString(separator.getBytes(StandardCharsets.UTF_8))
+                        + "，偏移 " + shift, records, actual);
+            }
+        }
+    }
+
+    private void write(String file, byte[] content) throws Exception {
+        DistributedFileSystem dfs = cluster.getFileSystem();
+        Path path = api.resolvePath(file);
+        try (FSDataOutputStream out = dfs.create(path, true, 4096, (short) 1, BLOCK_SIZE)) {
+            out.write(content);
+        }
+        FileStatus status = dfs.getFileStatus(path);
+        assertTrue(dfs.getFileBlockLocations(status, 0, status.getLen()).length > 10);
+    }
+
+    private static void append(List<String> records, ByteArrayOutputStream content, String record, String separator)
+            throws Exception {
+        records.add(record);
+        content.write(record.getBytes(StandardCharsets.UTF_8));
+        content.write(separator.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String record(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(CHARS.charAt(random.nextInt(CHARS.length())));
+        }
+        return builder.toString();
+    }
+}
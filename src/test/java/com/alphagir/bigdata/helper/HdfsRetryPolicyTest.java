@@ -0,0 +1,213 @@
+package com.alphagir.bigdata.helper;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.ipc.RetriableException;
+import org.apache.hadoop.ipc.StandbyException;
+import org.apache.hadoop.security.AccessControlException;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * HdfsApi.execute 的重试行为：由注入故障的 FileSystem 按顺序抛出预设的异常
+ */
+public class HdfsRetryPolicyTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FaultInjectingFileSystem fs;
+    private HdfsApi api;
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        File root = folder.newFolder("fs");
+        File local = new File(root, "data.txt");
+        assertTrue(local.createNewFile());
+        file = new Path(local.toURI());
+
+        Configuration conf = new Configuration();
+        fs = new FaultInjectingFileSystem();
+        fs.initialize(root.toURI(), conf);
+        UserGroupInformation ugi = UserGroupInformation.getCurrentUser();
+        api = new HdfsApi("file://" + root.getAbsolutePath(), conf, ugi, fs, new HdfsCopyEngine(conf), null,
+                HdfsApi.newAccessEvaluator(ugi, conf), null);
+        api.setRetryPolicy(new ExponentialBackoffRetryPolicy(5, 1, 4, new RetryBudget(0.2, 100, 1000)));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        api.close();
+    }
+
+    @Test
+    public void retriableFailuresAreRetried() throws Exception {
+        fs.fail(new RetriableException("NameNode 繁忙"), new SocketTimeoutException("超时"),
+                new RemoteException(StandbyException.class.getName(), "Operation category READ is not supported"));
+
+        assertNotNull(getStatus());
+        assertEquals(4, fs.statusCalls.get());
+    }
+
+    @Test
+    public void deterministicFailuresAreNotRetried() throws Exception {
+        assertNotRetried(new FileNotFoundException("不存在"));
+        assertNotRetried(new AccessControlException("权限不足"));
+        assertNotRetried(new RemoteException(AccessControlException.class.getName(), "权限不足"));
+    }
+
+    @Test
+    public void nonIdempotentOperationIsNotRetried() throws Exception {
+        Path target = new Path(file.getParent(), "renamed.txt");
+        RetriableException failure = new RetriableException("NameNode 繁忙");
+        fs.fail(failure);
+
+        try {
+            api.executeOnce("rename", () -> fs.rename(file, target));
+            fail("非幂等操作不应重试");
+        } catch (IOException e) {
+            assertSame(failure, e);
+        }
+        assertEquals(1, fs.renameCalls.get());
+        assertTrue(fs.exists(file));
+    }
+
+    @Test
+    public void explicitPolicyOverridesNonIdempotentDefault() throws Exception {
+        Path target = new Path(file.getParent(), "renamed.txt");
+        api.setRetryPolicy("rename", new ExponentialBackoffRetryPolicy(3, 1, 4, null));
+        fs.fail(new RetriableException("NameNode 繁忙"));
+
+        assertTrue(api.executeOnce("rename", () -> fs.rename(file, target)));
+        assertEquals(2, fs.renameCalls.get());
+    }
+
+    @Test
+    public void stopsAfterMaxAttempts() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            fs.fail(new RetriableException("NameNode 繁忙"));
+        }
+
+        try {
+            getStatus();
+            fail("超过最大尝试次数后应抛出异常");
+        } catch (RetriableException expected) {
+            // 预期
+        }
+        assertEquals(5, fs.statusCalls.get());
+    }
+
+    @Test
+    public void delayIsCappedAndJittered() {
+        ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy(20, 100, 250, null);
+        IOException e = new RetriableException("NameNode 繁忙");
+        boolean belowCeiling = false;
+        for (int attempt = 1; attempt < 20; attempt++) {
+            long ceiling = Math.min(250, 100L << (attempt - 1));
+            for (int i = 0; i < 50; i++) {
+                long delay = policy.nextDelayMillis("getFileStatus", e, attempt, false);
+                assertTrue("第 " + attempt + " 次尝试的等待时间 " + delay, delay >= 0 && delay <= ceiling);
+                belowCeiling |= delay < ceiling;
+            }
+        }
+        assertTrue(belowCeiling);
+        assertEquals(HdfsRetryPolicy.NO_RETRY, policy.nextDelayMillis("getFileStatus", e, 20, false));
+        assertEquals(HdfsRetryPolicy.NO_RETRY,
+                policy.nextDelayMillis("getFileStatus", new FileNotFoundException("不存在"), 1, false));
+        assertFalse(policy.nextDelayMillis("getFileStatus", new FileNotFoundException("不存在"), 1, true) < 0);
+    }
+
+    @Test
+    public void exhaustedBudgetStopsRetrying() throws Exception {
+        // 不按调用量存入额度，每秒只保留2次重试
+        RetryBudget budget = new RetryBudget(0, 2, 10);
+        api.setRetryPolicy(new ExponentialBackoffRetryPolicy(10, 1, 4, budget));
+        for (int i = 0; i < 10; i++) {
+            fs.fail(new RetriableException("NameNode 繁忙"));
+        }
+
+        try {
+            getStatus();
+            fail("预算耗尽后应抛出异常");
+        } catch (RetriableException expected) {
+            // 预期
+        }
+        assertEquals(3, fs.statusCalls.get());
+        assertEquals(1, budget.getExhaustedCount());
+    }
+
+    private void assertNotRetried(IOException failure) throws Exception {
+        fs.statusCalls.set(0);
+        fs.fail(failure);
+        try {
+            getStatus();
+            fail("确定性错误不应重试");
+        } catch (IOException e) {
+            assertSame(failure, e);
+        }
+        assertEquals(1, fs.statusCalls.get());
+    }
+
+    private FileStatus getStatus() throws Exception {
+        return api.execute("getFileStatus", () -> fs.getFileStatus(file));
+    }
+
+    /**
+     * getFileStatus 和 rename 每次调用先取出一个预设的异常抛出，没有预设异常时正常执行
+     */
+    private static class FaultInjectingFileSystem extends RawLocalFileSystem {
+        private final Deque<IOException> failures = new ArrayDeque<>();
+        private final AtomicInteger statusCalls = new AtomicInteger();
+        private final AtomicInteger renameCalls = new AtomicInteger();
+
+        synchronized void fail(IOException... exceptions) {
+            for (IOException e : exceptions) {
+                failures.add(e);
+            }
+        }
+
+        private synchronized void inject() throws IOException {
+            IOException e = failures.poll();
+            if (e != null) {
+                throw e;
+            }
+        }
+
+        @Override
+        public FileStatus getFileStatus(Path f) throws IOException {
+            statusCalls.incrementAndGet();
+            inject();
+            return super.getFileStatus(f);
+        }
+
+        @Override
+        public boolean rename(Path src, Path dst) throws IOException {
+            renameCalls.incrementAndGet();
+            inject();
+            return super.rename(src, dst);
+        }
+    }
+}
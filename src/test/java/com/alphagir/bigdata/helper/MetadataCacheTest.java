@@ -0,0 +1,110 @@
+package com.alphagir.bigdata.helper;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MetadataCache 的命中、失效，以及加载期间并发失效时不会写回过时的结果
+ */
+public class MetadataCacheTest {
+
+    private static final Path DIR = new Path("hdfs://nn/user/test/dir");
+    private static final Path FILE = new Path(DIR, "file");
+
+    private MetadataCache cache;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        cache = new MetadataCache(100, TimeUnit.MINUTES.toMillis(10));
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void cachesStatusAndNegativeResult() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        FileStatus status = status(FILE);
+
+        assertSame(status, cache.get(FILE, p -> {
+            loads.incrementAndGet();
+            return status;
+        }));
+        assertSame(status, cache.get(FILE, p -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertNull(cache.get(DIR, p -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertNull(cache.get(DIR, p -> {
+            loads.incrementAndGet();
+            return status(DIR);
+        }));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void invalidateDuringLoadIsNotOverwritten() throws Exception {
+        assertStaleResultDiscarded(() -> cache.invalidate(FILE));
+    }
+
+    @Test
+    public void invalidateTreeDuringLoadIsNotOverwritten() throws Exception {
+        assertStaleResultDiscarded(() -> cache.invalidateTree(DIR));
+    }
+
+    @Test
+    public void clearDuringLoadIsNotOverwritten() throws Exception {
+        assertStaleResultDiscarded(() -> cache.clear());
+    }
+
+    /**
+     * 加载线程读到路径不存在后阻塞，此时路径被创建并执行 invalidation；加载返回后缓存中不能留下“不存在”
+     */
+    private void assertStaleResultDiscarded(Runnable invalidation) throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<FileStatus> stale = executor.submit(() -> cache.get(FILE, p -> {
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+        invalidation.run();
+        release.countDown();
+        assertNull(stale.get(10, TimeUnit.SECONDS));
+
+        FileStatus created = status(FILE);
+        assertSame(created, cache.get(FILE, p -> created));
+    }
+
+    private static FileStatus status(Path path) {
+        return new FileStatus(0, false, 1, 128L * 1024 * 1024, 0, path);
+    }
+}
@@ -0,0 +1,176 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.HdfsFileStatus;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * uploadFileResumable 在数据源中断和暂存文件输出流被破坏后的续传，使用单 DataNode 的 MiniDFSCluster
+ */
+public class ResumableUploaderTest {
+
+    private static final String FILE = "resumable/data.bin";
+    // 与复制缓冲区（128 KiB）对齐，每次读取正好填满缓冲区，未提交的数据不会超过一个检查点间隔
+    private static final long CHECKPOINT_BYTES = 512 * 1024;
+    private static final int SIZE = 4 * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MiniDFSCluster cluster;
+    private HdfsApi api;
+    private byte[] content;
+    private ResumableUploadOptions options;
+
+    @Before
+    public void setUp() throws Exception {
+        Configuration conf = new Configuration();
+        conf.set(MiniDFSCluster.HDFS_MINIDFS_BASEDIR, folder.newFolder("dfs").getAbsolutePath());
+        cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+        cluster.waitActive();
+        api = new HdfsApi(cluster.getURI().toString(), System.getProperty("user.name"));
+
+        content = new byte[SIZE];
+        new Random(42).nextBytes(content);
+        options = new ResumableUploadOptions();
+        options.setCheckpointBytes(CHECKPOINT_BYTES);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            if (api != null) {
+                api.close();
+            }
+        } finally {
+            if (cluster != null) {
+                cluster.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void sourceFailureResumesFromCheckpointOnNextCall() throws Exception {
+        TestSource source = new TestSource(1300 * 1024, () -> {
+            throw new IOException("数据源读取失败");
+        });
+
+        try {
+            api.uploadFileResumable(source, FILE, options);
+            fail("数据源的错误不应被重试");
+        } catch (IOException e) {
+            assertEquals("数据源读取失败", e.getMessage());
+        }
+        HdfsFileStatus status = api.uploadFileResumable(source, FILE, options);
+
+        assertEquals(SIZE, status.getLen());
+        assertUploaded(source);
+    }
+
+    @Test
+    public void brokenOutputStreamResumesWithinCall() throws Exception {
+        Path staging = new Path(api.resolvePath(FILE).getParent(), ".data.bin._UPLOADING_");
+        try (DistributedFileSystem other = (DistributedFileSystem) FileSystem.newInstance(cluster.getURI(),
+                cluster.getConfiguration(0))) {
+            // 另一个客户端收回暂存文件的租约，上传者的输出流随后写入失败
+            TestSource source = new TestSource(1300 * 1024, () -> other.recoverLease(staging));
+
+            HdfsFileStatus status = api.uploadFileResumable(source, FILE, options);
+
+            assertEquals(SIZE, status.getLen());
+            assertUploaded(source);
+        }
+    }
+
+    private void assertUploaded(TestSource source) throws IOException {
+        assertTrue(source.fired.get());
+        DistributedFileSystem dfs = cluster.getFileSystem();
+        Path target = api.resolvePath(FILE);
+        byte[] actual = new byte[SIZE];
+        try (FSDataInputStream in = dfs.open(target)) {
+            IOUtils.readFully(in, actual, 0, actual.length);
+            assertEquals(-1, in.read());
+        }
+        assertArrayEquals(content, actual);
+
+        long resent = source.served.get() - SIZE;
+        assertTrue("重传了 " + resent + " 字节", resent > 0 && resent <= CHECKPOINT_BYTES);
+        assertFalse(dfs.exists(new Path(target.getParent(), ".data.bin._UPLOADING_")));
+        assertFalse(dfs.exists(new Path(target.getParent(), ".data.bin._UPLOADING_.offset")));
+    }
+
+    private interface Interruption {
+        void run() throws IOException;
+    }
+
+    /**
+     * 读到 interruptAt 时执行一次 interruption，并统计所有打开的流一共读出的字节数
+     */
+    private class TestSource implements ResumableSource {
+        private final long interruptAt;
+        private final Interruption interruption;
+        private final AtomicBoolean fired = new AtomicBoolean();
+        private final AtomicLong served = new AtomicLong();
+
+        TestSource(long interruptAt, Interruption interruption) {
+            this.interruptAt = interruptAt;
+            this.interruption = interruption;
+        }
+
+        @Override
+        public String getId() {
+            return "test-source";
+        }
+
+        @Override
+        public InputStream open(long offset) {
+            return new InputStream() {
+                private long position = offset;
+
+                @Override
+                public int read() throws IOException {
+                    byte[] b = new byte[1];
+                    int n = read(b, 0, 1);
+                    return n < 0 ? -1 : b[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (position >= content.length) {
+                        return -1;
+                    }
+                    if (position >= interruptAt && fired.compareAndSet(false, true)) {
+                        interruption.run();
+                    }
+                    int n = (int) Math.min(len, content.length - position);
+                    System.arraycopy(content, (int) position, b, off, n);
+                    position += n;
+                    served.addAndGet(n);
+                    return n;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.alphagir.bigdata.helper;
+
+import com.alphagir.bigdata.model.FileRange;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * VectoredReader 的区间合并以及切片在合并缓冲区上的偏移，分别使用堆缓冲区和直接内存缓冲区，使用本地文件系统
+ */
+public class VectoredReaderTest {
+
+    private static final String FILE = "data.bin";
+    // 大于复制缓冲区，直接内存缓冲区需要分多次拷贝
+    private static final int SIZE = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HdfsApi api;
+    private VectoredReader reader;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws Exception {
+        File root = folder.newFolder("fs");
+        content = new byte[SIZE];
+        new Random(42).nextBytes(content);
+        Files.write(new File(root, FILE).toPath(), content);
+        api = new HdfsApi("file://" + root.getAbsolutePath(), null);
+        // 默认不合并有间隔的区间，各个用例按需放宽
+        api.getConf().setInt(HdfsApiConfigKeys.READ_RANGES_MAX_GAP_KEY, 0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            if (reader != null) {
+                reader.close();
+            }
+        } finally {
+            api.close();
+        }
+    }
+
+    @Test
+    public void overlappingAndAdjacentRangesAreMerged() {
+        List<VectoredReader.MergedRange> merged = merge(
+                new FileRange(300, 10),
+                new FileRange(120, 50),
+                new FileRange(0, 0),
+                new FileRange(100, 50),
+                new FileRange(170, 10),
+                new FileRange(130, 5));
+
+        assertEquals(2, merged.size());
+        assertMerged(merged.get(0), 100, 180, 3, 1, 5, 4);
+        assertMerged(merged.get(1), 300, 310, 0);
+    }
+
+    @Test
+    public void nearRangesAreMergedWithinGapAndSize() {
+        api.getConf().setInt(HdfsApiConfigKeys.READ_RANGES_MAX_GAP_KEY, 16);
+        api.getConf().setInt(HdfsApiConfigKeys.READ_RANGES_MAX_MERGED_SIZE_KEY, 40);
+
+        List<VectoredReader.MergedRange> merged = merge(
+                new FileRange(200, 10),
+                new FileRange(20, 10),
+                new FileRange(0, 10),
+                new FileRange(45, 10),
+                new FileRange(50, 60));
+
+        // 0 和 20 间隔 10，合并；45 会超过合并上限，单独读取；50 与 45 重叠，即使超过上限也合并；200 间隔过大
+        assertEquals(3, merged.size());
+        assertMerged(merged.get(0), 0, 30, 2, 1);
+        assertMerged(merged.get(1), 45, 110, 3, 4);
+        assertMerged(merged.get(2), 200, 210, 0);
+    }
+
+    @Test
+    public void invalidRangeIsRejected() {
+        try {
+            merge(new FileRange(0, 10), new FileRange(-1, 10));
+            fail("负的偏移应被拒绝");
+        } catch (IllegalArgumentException expected) {
+            // 预期
+        }
+    }
+
+    @Test
+    public void slicesMatchRangesWithHeapBuffers() throws Exception {
+        assertSlices(ByteBuffer::allocate);
+    }
+
+    @Test
+    public void slicesMatchRangesWithDirectBuffers() throws Exception {
+        assertSlices(ByteBuffer::allocateDirect);
+    }
+
+    @Test
+    public void slicesHonourAllocatedBufferPosition() throws Exception {
+        assertSlices(n -> positioned(ByteBuffer.allocate(n + 7)));
+        assertSlices(n -> positioned(ByteBuffer.allocateDirect(n + 7)));
+    }
+
+    /**
+     * 乱序、重叠、相邻、零长度以及跨越多个复制缓冲区的区间，结果按传入顺序返回且内容与文件一致
+     */
+    private void assertSlices(IntFunction<ByteBuffer> allocate) throws Exception {
+        List<FileRange> ranges = Arrays.asList(
+                new FileRange(500_000, 300_000),
+                new FileRange(1000, 100),
+                new FileRange(1050, 100),
+                new FileRange(2000, 0),
+                new FileRange(1150, 20),
+                new FileRange(SIZE - 10, 10),
+                new FileRange(1060, 10),
+                new FileRange(0, 1));
+
+        List<ByteBuffer> slices = api.readRanges(FILE, ranges, allocate);
+
+        assertEquals(ranges.size(), slices.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            FileRange range = ranges.get(i);
+            ByteBuffer slice = slices.get(i);
+            assertTrue(slice.isReadOnly() || range.getLength() == 0);
+            assertEquals("区间 " + range, range.getLength(), slice.remaining());
+            byte[] actual = new byte[slice.remaining()];
+            slice.duplicate().get(actual);
+            assertArrayEquals("区间 " + range, Arrays.copyOfRange(content, (int) range.getOffset(),
+                    (int) range.getEnd()), actual);
+        }
+    }
+
+    private List<VectoredReader.MergedRange> merge(FileRange... ranges) {
+        reader = new VectoredReader(api);
+        return reader.merge(Arrays.asList(ranges));
+    }
+
+    private static void assertMerged(VectoredReader.MergedRange range, long offset, long end, Integer... members) {
+        assertEquals(offset, range.offset);
+        assertEquals(end, range.end);
+        assertEquals(Arrays.asList(members), range.members);
+    }
+
+    private static ByteBuffer positioned(ByteBuffer buffer) {
+        buffer.position(7);
+        return buffer;
+    }
+}